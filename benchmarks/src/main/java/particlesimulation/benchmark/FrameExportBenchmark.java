@@ -0,0 +1,53 @@
+package particlesimulation.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import particlesimulation.model.World;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the export of the world to the int array the View draws.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FrameExportBenchmark {
+    @Param({"1000", "10000", "50000", "200000"})
+    private int particles;
+
+    @Param({"1200x900", "4000x3000"})
+    private String worldSize;
+
+    private World world;
+
+    /**
+     * Creates the world.
+     */
+    @Setup
+    public void setup() {
+        world = Worlds.create(worldSize, particles, 90);
+    }
+
+    /**
+     * Exports the world.
+     *
+     * @return the exported world, so it doesn't get optimized away
+     */
+    @Benchmark
+    public int[][] particleArrayToIntArray() {
+        return world.particleArrayToIntArray();
+    }
+}
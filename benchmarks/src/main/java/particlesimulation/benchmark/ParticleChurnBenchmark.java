@@ -0,0 +1,70 @@
+package particlesimulation.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import particlesimulation.model.World;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures adding and removing particles on a populated world, like the add and remove buttons do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParticleChurnBenchmark {
+    @Param({"1000", "10000", "50000", "200000", "1000000"})
+    private int particles;
+
+    @Param({"1200x900", "4000x3000"})
+    private String worldSize;
+
+    @Param({"50", "5000", "20000"})
+    private int batch;
+
+    private World world;
+
+    /**
+     * Creates the world.
+     */
+    @Setup
+    public void setup() {
+        world = Worlds.create(worldSize, particles, 90);
+    }
+
+    /**
+     * Adds a batch of particles of every type, then removes it again so the world keeps its size.
+     */
+    @Benchmark
+    public void addParticles() {
+        for (int i = 0; i < 5; i++)
+            world.addParticles(i, batch);
+
+        for (int i = 0; i < 5; i++)
+            world.removeParticles(i, batch);
+    }
+
+    /**
+     * Removes a batch of particles of every type, then adds it again so the world keeps its size.
+     */
+    @Benchmark
+    public void removeParticles() {
+        for (int i = 0; i < 5; i++)
+            world.removeParticles(i, batch);
+
+        for (int i = 0; i < 5; i++)
+            world.addParticles(i, batch);
+    }
+}
@@ -0,0 +1,90 @@
+package particlesimulation.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import particlesimulation.model.BarnesHutTree;
+import particlesimulation.model.ForceKernel;
+import particlesimulation.model.InteractionTable;
+import particlesimulation.model.ForceBuffers;
+import particlesimulation.model.NeighborSearch;
+import particlesimulation.model.ParticleStore;
+import particlesimulation.model.ParticleType;
+import particlesimulation.model.Rule;
+import particlesimulation.model.SpatialGrid;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a single Rule on one thread, without the scheduler and the movement of a tick.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class RuleBenchmark {
+    @Param({"1000", "10000", "50000", "200000"})
+    private int particles;
+
+    @Param({"1200x900", "4000x3000"})
+    private String worldSize;
+
+    @Param({"30", "90", "250"})
+    private int range;
+
+    @Param({"UNIFORM_GRID", "BARNES_HUT", "BRUTE_FORCE"})
+    private NeighborSearch neighborSearch;
+
+    @Param({"true", "false"})
+    private boolean vectorKernel;
+
+    private Rule rule;
+
+    /**
+     * Places half of the particles as affected type and half as focus type and creates the rule between them.
+     */
+    @Setup
+    public void setup() {
+        int[] dimension = Worlds.parseSize(worldSize);
+        SplittableRandom random = new SplittableRandom(42);
+
+        ParticleType typeA = new ParticleType(1, 5, 0, range);
+        ParticleType typeB = new ParticleType(2, 5, 0, range);
+        ParticleStore store = new ParticleStore(particles);
+        for (int i = 0; i < particles; i++)
+            store.add(i % 2, random.nextInt(dimension[0]), random.nextInt(dimension[1]));
+
+        SpatialGrid grid = new SpatialGrid(dimension[0], dimension[1], 2);
+        grid.rebuild(store, range);
+
+        BarnesHutTree tree = new BarnesHutTree(dimension[0], dimension[1]);
+        tree.rebuild(store, 1);
+
+        ForceBuffers forces = new ForceBuffers(2);
+        forces.ensureCapacity(particles);
+
+        rule = new Rule(store, typeA, typeB, dimension[0], dimension[1], grid, tree, forces);
+        rule.setInteractionTable(new InteractionTable(new ParticleType[]{typeA, typeB}, new float[]{0, 0.06F, 0, 0}));
+        rule.setNeighborSearch(neighborSearch);
+        rule.setForceKernel(ForceKernel.create(dimension[0], dimension[1], vectorKernel));
+    }
+
+    /**
+     * Runs the rule over all particles.
+     */
+    @Benchmark
+    public void run() {
+        rule.run();
+    }
+}
@@ -0,0 +1,62 @@
+package particlesimulation.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import particlesimulation.model.NeighborSearch;
+import particlesimulation.model.World;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a full World.tick(): force phase, integration and movement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WorldTickBenchmark {
+    @Param({"1000", "10000", "50000", "200000"})
+    private int particles;
+
+    @Param({"1200x900", "4000x3000"})
+    private String worldSize;
+
+    @Param({"30", "90", "250"})
+    private int range;
+
+    @Param({"UNIFORM_GRID", "FUSED_GRID"})
+    private NeighborSearch neighborSearch;
+
+    @Param({"5", "16", "64"})
+    private int types;
+
+    private World world;
+
+    /**
+     * Creates the world.
+     */
+    @Setup
+    public void setup() {
+        world = Worlds.create(worldSize, particles, range, types);
+        world.setNeighborSearch(neighborSearch);
+    }
+
+    /**
+     * Computes one tick.
+     */
+    @Benchmark
+    public void tick() {
+        world.tick();
+    }
+}
@@ -0,0 +1,73 @@
+package particlesimulation.benchmark;
+
+import particlesimulation.model.World;
+
+import java.util.SplittableRandom;
+
+/**
+ * Creates the worlds the benchmarks run on, so all benchmarks use the same setup.
+ */
+final class Worlds {
+    /**
+     * Rule strengths as they would be entered in the View, row by row.
+     */
+    static final int[] RULES = {
+            12, -30, 9, -4, -5,
+            -20, 15, -10, 8, 3,
+            6, -12, 10, -18, 7,
+            -3, 9, -8, 14, -11,
+            5, -6, 11, -9, 16
+    };
+
+    private Worlds() {
+    }
+
+    /**
+     * Parses a world size like "1200x900".
+     *
+     * @param size the world size
+     * @return     array containing the width and the height
+     */
+    static int[] parseSize(String size) {
+        String[] parts = size.split("x");
+        return new int[]{Integer.parseInt(parts[0]), Integer.parseInt(parts[1])};
+    }
+
+    /**
+     * Creates a world with the same amount of particles of every type and the benchmark rules.
+     *
+     * @param size      the world size, like "1200x900"
+     * @param particles the amount of particles of all types together
+     * @param range     the maximum range of every type
+     * @return          the world
+     */
+    static World create(String size, int particles, int range) {
+        return create(size, particles, range, World.DEFAULT_TYPES);
+    }
+
+    /**
+     * Creates a world with the same amount of particles of every type. Five types use the benchmark rules, other
+     * amounts get rules from a fixed seed.
+     *
+     * @param size      the world size, like "1200x900"
+     * @param particles the amount of particles of all types together
+     * @param range     the maximum range of every type
+     * @param types     the amount of particle types
+     * @return          the world
+     */
+    static World create(String size, int particles, int range, int types) {
+        int[] dimension = parseSize(size);
+        World world = new World(dimension[0], dimension[1], Runtime.getRuntime().availableProcessors(), types);
+        SplittableRandom random = new SplittableRandom(42);
+
+        for (int i = 0; i < types * types; i++)
+            world.changeRule(i, types == World.DEFAULT_TYPES ? RULES[i] : random.nextInt(-30, 31));
+
+        for (int i = 0; i < types; i++) {
+            world.changeRange(i, range);
+            world.addParticles(i, particles / types);
+        }
+
+        return world;
+    }
+}
@@ -0,0 +1,208 @@
+package particlesimulation.controller;
+
+import particlesimulation.model.NeighborSearch;
+import particlesimulation.model.SimulationConfig;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Parses command-line arguments of the form "--name value". Lists are comma separated.
+ * Every program names the arguments it reads, any other name is refused, so a typo doesn't silently run with the
+ * default value.
+ */
+public class Arguments {
+    private static final List<String> WORLD_OPTIONS = List.of("width", "height", "types", "particles", "rules",
+            "ranges", "caps", "seed", "workers", "search", "theta", "radius", "integrator", "friction", "dt",
+            "adaptive", "max-dt", "max-step", "kernel", "deterministic");
+
+    private final Map<String, String> values;
+
+    /**
+     * Parses the command-line arguments.
+     *
+     * @param args                      the command-line arguments
+     * @param known                     the names of the arguments the program reads, without "--"
+     * @throws IllegalArgumentException if an argument doesn't start with "--" or isn't known
+     */
+    public Arguments(String[] args, Set<String> known) {
+        values = new HashMap<>();
+
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--"))
+                throw new IllegalArgumentException("unexpected argument " + args[i]);
+
+            String name = args[i].substring(2);
+            if (!known.contains(name))
+                throw new IllegalArgumentException("unknown argument " + args[i]);
+            if (i + 1 < args.length && !args[i + 1].startsWith("--"))
+                values.put(name, args[++i]);
+            else
+                values.put(name, "");
+        }
+    }
+
+    /**
+     * Returns the names of the world arguments read by toConfig() together with the names of a program.
+     *
+     * @param names the names of the arguments of the program, without "--"
+     * @return      all names
+     */
+    public static Set<String> withWorldOptions(String... names) {
+        Set<String> known = new HashSet<>(WORLD_OPTIONS);
+        known.addAll(List.of(names));
+
+        return known;
+    }
+
+    /**
+     * Returns if an argument was given.
+     *
+     * @param name the name of the argument, without "--"
+     * @return     true if the argument was given, false otherwise
+     */
+    public boolean has(String name) {
+        return values.containsKey(name);
+    }
+
+    /**
+     * Returns the value of an argument.
+     *
+     * @param name         the name of the argument, without "--"
+     * @param defaultValue the value used if the argument wasn't given
+     * @return             the value
+     */
+    public String getString(String name, String defaultValue) {
+        return values.getOrDefault(name, defaultValue);
+    }
+
+    /**
+     * Returns the value of an argument as int.
+     *
+     * @param name         the name of the argument, without "--"
+     * @param defaultValue the value used if the argument wasn't given
+     * @return             the value
+     */
+    public int getInt(String name, int defaultValue) {
+        return has(name) ? Integer.parseInt(values.get(name)) : defaultValue;
+    }
+
+    /**
+     * Returns the value of an argument as long.
+     *
+     * @param name         the name of the argument, without "--"
+     * @param defaultValue the value used if the argument wasn't given
+     * @return             the value
+     */
+    public long getLong(String name, long defaultValue) {
+        return has(name) ? Long.parseLong(values.get(name)) : defaultValue;
+    }
+
+    /**
+     * Returns the value of an argument as int array. A single value is used for every element.
+     *
+     * @param name         the name of the argument, without "--"
+     * @param length       the expected amount of values
+     * @param defaultValue the value used if the argument wasn't given
+     * @return             the values
+     */
+    public int[] getInts(String name, int length, int[] defaultValue) {
+        if (!has(name))
+            return defaultValue;
+
+        String[] parts = values.get(name).split(",");
+        int[] result = new int[length];
+
+        if (parts.length == 1) {
+            Arrays.fill(result, Integer.parseInt(parts[0].trim()));
+            return result;
+        }
+        if (parts.length != length)
+            throw new IllegalArgumentException("--" + name + " needs 1 or " + length + " values, got " + parts.length);
+
+        for (int i = 0; i < length; i++)
+            result[i] = Integer.parseInt(parts[i].trim());
+
+        return result;
+    }
+
+    /**
+     * Creates a SimulationConfig from the world arguments. Arguments that weren't given keep the default values.
+     *
+     * @return the SimulationConfig
+     */
+    public SimulationConfig toConfig() {
+        SimulationConfig config = new SimulationConfig();
+
+        config.setWidth(getInt("width", config.getWidth()));
+        config.setHeight(getInt("height", config.getHeight()));
+        config.setTypes(getInt("types", config.getTypes()));
+
+        int types = config.getTypes();
+        config.setParticles(getInts("particles", types, config.getParticles()));
+        config.setRules(getInts("rules", types * types, config.getRules()));
+        config.setRanges(getInts("ranges", types, config.getRanges()));
+        config.setVelocityCaps(getInts("caps", types, config.getVelocityCaps()));
+        config.setSeed(getLong("seed", config.getSeed()));
+        config.setWorkers(getInt("workers", config.getWorkers()));
+        config.setNeighborSearch(NeighborSearch.valueOf(getString("search", config.getNeighborSearch().name())
+                .toUpperCase()));
+        config.setOpeningAngle(Float.parseFloat(getString("theta", String.valueOf(config.getOpeningAngle()))));
+        config.setCollisionRadius(Float.parseFloat(getString("radius", String.valueOf(config.getCollisionRadius()))));
+        config.setIntegrator(getString("integrator", config.getIntegrator()));
+        config.setFriction(Float.parseFloat(getString("friction", String.valueOf(config.getFriction()))));
+        config.setTimeStep(Float.parseFloat(getString("dt", String.valueOf(config.getTimeStep()))));
+        config.setAdaptive(has("adaptive") || config.isAdaptive());
+        config.setMaxTimeStep(Float.parseFloat(getString("max-dt", String.valueOf(config.getMaxTimeStep()))));
+        config.setMaxStep(Float.parseFloat(getString("max-step", String.valueOf(config.getMaxStep()))));
+
+        String kernel = getString("kernel", config.isVectorKernel() ? "vector" : "scalar");
+        if (!kernel.equals("vector") && !kernel.equals("scalar"))
+            throw new IllegalArgumentException("--kernel must be vector or scalar, got " + kernel);
+        config.setVectorKernel(kernel.equals("vector"));
+        config.setDeterministic(has("deterministic") || config.isDeterministic());
+
+        return config;
+    }
+
+    /**
+     * Returns the description of the world arguments, used in the usage messages.
+     *
+     * @return the description
+     */
+    public static String worldUsage() {
+        return """
+                  --width <n>          width of the world (1200)
+                  --height <n>         height of the world (900)
+                  --types <n>          amount of particle types, 1 to 127 (5)
+                  --particles <n,..>   particles per type, 1 value or 1 per type (500)
+                  --rules <n,..>       rule strengths row by row like in the window, 1 value or
+                                       types * types values (0)
+                  --ranges <n,..>      gravity range per type, 1 value or 1 per type (90)
+                  --caps <n,..>        velocity cap per type, -1 means no cap, 1 value or 1 per type (5)
+                  --seed <n>           seed used to place the particles (random)
+                  --workers <n>        threads used to compute a tick (available processors)
+                  --search <name>      brute_force, uniform_grid, barnes_hut or fused_grid, fused_grid is
+                                       the fastest with many types (uniform_grid)
+                  --theta <f>          opening angle of barnes_hut, 0 is exact (0.5)
+                  --radius <f>         collision radius, above 0 gives float positions and no memory per
+                                       pixel, 0 is one particle per pixel (0)
+                  --integrator <name>  relaxation, euler or verlet; relaxation is the original scheme
+                                       (relaxation)
+                  --friction <f>       factor the velocity keeps after a step of length 1 (0.9)
+                  --dt <f>             length of a step, 1 is a tick of the original scheme (1)
+                  --adaptive           steps get longer while the particles are calm and shorter when
+                                       they get fast, --dt is the first step (off)
+                  --max-dt <f>         longest adaptive step (4)
+                  --max-step <f>       furthest a particle moves in one adaptive step, in pixels (5)
+                  --kernel <name>      vector or scalar force kernel of uniform_grid, vector needs
+                                       --add-modules jdk.incubator.vector (vector)
+                  --deterministic      bit-identical results for the same seed on every machine,
+                                       uses the scalar kernel (off)
+                """;
+    }
+}
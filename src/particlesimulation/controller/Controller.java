@@ -1,18 +1,31 @@
 package particlesimulation.controller;
 
 import particlesimulation.model.Model;
+import particlesimulation.model.NeighborSearch;
+import particlesimulation.model.TrajectoryRecorder;
+import particlesimulation.model.TrajectoryReplay;
+import particlesimulation.model.World;
 import particlesimulation.view.View;
 
 import javax.swing.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
 
 /**
  * Servers as intermediate point between model and view.
  */
-public class Controller implements WorldUpdateListener {
+public class Controller {
     private Model model;
     private View view;
     private double lastTime;
-    private boolean isWaitingForWorld;
+    private int width;
+    private int height;
+    private TrajectoryRecorder recorder;
+    private TrajectoryReplay replay;
+    private int replayFramesPerSecond;
+    private int replayStartFrame;
+    private long replayStartNanos;
 
     /**
      * Initializes a new Controller.
@@ -21,22 +34,26 @@ public class Controller implements WorldUpdateListener {
      * @param width            width of the panel where the particles will be displayed
      * @param height           height of the panel where the particles will be displayed
      * @param particleDiameter diameter used to display particles
+     * @param types            the amount of particle types
      */
-    public Controller(String windowTitle, int width, int height, int particleDiameter) {
-        model = new Model(width, height);
-        view = new View(this, windowTitle, width, height, particleDiameter);
+    public Controller(String windowTitle, int width, int height, int particleDiameter, int types) {
+        this.width = width;
+        this.height = height;
+        replayFramesPerSecond = 24;
+        model = new Model(width, height, types);
+        if (types > World.DEFAULT_TYPES)
+            model.setNeighborSearch(NeighborSearch.FUSED_GRID);    // one rule per pair gets slow with many types
+        view = new View(this, windowTitle, width, height, particleDiameter, types);
 
         initController();
         initView();
     }
 
     /**
-     * Sets the isWaitingForWorld to false so a new world computation will get requested and ads a listener that will be
-     * used to inform when a new computation of the world is available.
+     * Starts the simulation thread, the View takes the frames it publishes.
      */
     private void initController() {
-        isWaitingForWorld = false;
-        model.addListener(this);
+        model.start();
     }
 
     private void initView() {
@@ -44,15 +61,38 @@ public class Controller implements WorldUpdateListener {
     }
 
     /**
-     * When not already waiting for the computation of a new world state, it will tell the model to start computing one.
+     * Sends the latest frame of the simulation thread to the View. Does nothing if there is no new frame yet.
+     * Called on the event dispatch thread.
      */
     public void requestWorld() {
         // int fps = (int) Math.round(1000000000 / -(lastTime - (lastTime = System.nanoTime())));
         // System.out.println(fps + " " + System.nanoTime());
-        if (!isWaitingForWorld) {
-            model.compute();
-            isWaitingForWorld = true;
+        if (replay != null) {
+            requestReplayFrame();
+            return;
         }
+
+        int[][] world = model.takeFrame();
+        if (world != null)
+            view.updateWorld(world);
+    }
+
+    /**
+     * Changes how many ticks are computed per second.
+     *
+     * @param value the ticks per second, 0 means as fast as possible
+     */
+    public void changeTicksPerSecond(int value) {
+        model.setTicksPerSecond(value);
+    }
+
+    /**
+     * Changes how many ticks are computed per displayed frame.
+     *
+     * @param value the ticks per frame
+     */
+    public void changeTicksPerFrame(int value) {
+        model.setTicksPerFrame(value);
     }
 
 
@@ -97,7 +137,7 @@ public class Controller implements WorldUpdateListener {
     public void removeParticles() {
         int amount = 50;
 
-        for (int i = 0; i < 5; i++)
+        for (int i = 0; i < model.getTypes(); i++)
             removeParticles(i, amount);
     }
 
@@ -117,18 +157,233 @@ public class Controller implements WorldUpdateListener {
     public void addParticles() {
         int amount = 50;
 
-        for (int i = 0; i < 5; i++)
+        for (int i = 0; i < model.getTypes(); i++)
             addParticles(i, amount);
     }
 
     /**
-     * Gets called after receiving a world update from Model, then sends updated world to View.
+     * Saves the world to a snapshot file.
+     *
+     * @param file the file
+     */
+    public void saveSnapshot(File file) {
+        try {
+            model.save(file.toPath());
+        } catch (IOException e) {
+            view.showError("Could not save the snapshot: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Replaces the world with a snapshot file and shows its settings in the View.
+     *
+     * @param file the file
+     */
+    public void loadSnapshot(File file) {
+        try {
+            model.restore(file.toPath());
+        } catch (IOException e) {
+            view.showError("Could not load the snapshot: " + e.getMessage());
+            return;
+        }
+
+        int types = model.getTypes();
+        int[] rules = new int[types * types];
+        int[] ranges = new int[types];
+        int[] velocityCaps = new int[types];
+        for (int i = 0; i < rules.length; i++)
+            rules[i] = model.getRule(i);
+        for (int i = 0; i < ranges.length; i++) {
+            ranges[i] = model.getRange(i);
+            velocityCaps[i] = model.getVelocityCap(i);
+        }
+
+        view.showSettings(rules, ranges, velocityCaps);
+    }
+
+    /**
+     * Starts recording the frames of the world to a trajectory file.
+     *
+     * @param file the file
+     */
+    public void startRecording(File file) {
+        stopRecording();
+
+        try {
+            recorder = new TrajectoryRecorder(file.toPath(), width, height);
+        } catch (IOException e) {
+            view.showError("Could not record: " + e.getMessage());
+            view.showRecording(false);
+            return;
+        }
+        recorder.setMetrics(model.getMetrics());
+        model.addDeltaListener(recorder);
+    }
+
+    /**
+     * Stops recording and closes the trajectory file.
+     */
+    public void stopRecording() {
+        if (recorder == null)
+            return;
+
+        model.removeDeltaListener(recorder);
+        try {
+            recorder.close();
+        } catch (IOException e) {
+            view.showError("Could not write the recording: " + e.getMessage());
+        }
+        recorder = null;
+        view.showRecording(false);
+    }
+
+    /**
+     * Returns a short text about the running recording or replay, shown in the View.
+     *
+     * @return the text, empty if nothing is recorded or replayed
+     */
+    public String getRecordingStatus() {
+        if (replay != null)
+            return "replay: " + (replay.getPosition() + 1) + " / " + replay.getFrameCount();
+        if (recorder != null)
+            return "recorded: " + recorder.getRecordedFrames() + ", dropped: " + recorder.getDroppedFrames();
+
+        return "";
+    }
+
+    /**
+     * Turns recording the metrics on or off. They can also be read and turned on with JMX.
+     *
+     * @param enabled true to record
+     */
+    public void setMetricsEnabled(boolean enabled) {
+        model.setMetricsEnabled(enabled);
+    }
+
+    /**
+     * Records how long the View took to paint a frame.
+     *
+     * @param nanos the time in nanoseconds
+     */
+    public void recordPaintTime(long nanos) {
+        model.recordPaintTime(nanos);
+    }
+
+    /**
+     * Returns the metrics as text, one line per timer and counter, shown in the View.
+     *
+     * @return the lines
+     */
+    public List<String> getMetricsSummary() {
+        return model.getMetricsSummary();
+    }
+
+    /**
+     * Stops the simulation and shows the frames of a trajectory file instead.
+     *
+     * @param file the file
+     */
+    public void startReplay(File file) {
+        TrajectoryReplay opened;
+        try {
+            opened = new TrajectoryReplay(file.toPath());
+        } catch (IOException e) {
+            view.showError("Could not replay: " + e.getMessage());
+            return;
+        }
+
+        if (opened.getWidth() != width || opened.getHeight() != height || opened.getFrameCount() == 0) {
+            view.showError("The recording is " + opened.getWidth() + "x" + opened.getHeight() + " with "
+                    + opened.getFrameCount() + " frames, the world is " + width + "x" + height);
+            closeReplay(opened);
+            return;
+        }
+
+        stopRecording();
+        stopReplay();
+        model.stop();
+        replay = opened;
+        seekReplay(0);
+    }
+
+    /**
+     * Stops the replay and continues the simulation.
+     */
+    public void stopReplay() {
+        if (replay == null)
+            return;
+
+        closeReplay(replay);
+        replay = null;
+        model.start();
+    }
+
+    /**
+     * Closes a replay, errors are ignored because nothing was written.
+     *
+     * @param toClose the replay
+     */
+    private void closeReplay(TrajectoryReplay toClose) {
+        try {
+            toClose.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Jumps to the keyframe before a position of the replay.
+     *
+     * @param permille the position, from 0 at the start to 1000 at the end
+     */
+    public void seekReplay(int permille) {
+        if (replay == null)
+            return;
+
+        try {
+            replay.seekKeyframe((int) ((long) (replay.getFrameCount() - 1) * permille / 1000));
+        } catch (IOException e) {
+            view.showError("Could not replay: " + e.getMessage());
+            stopReplay();
+            return;
+        }
+
+        replayStartFrame = replay.getPosition();
+        replayStartNanos = System.nanoTime();
+        view.updateWorld(replay.getFrame());
+    }
+
+    /**
+     * Changes how many recorded frames are shown per second.
      *
-     * @param world the updated world
+     * @param value the frames per second
+     */
+    public void changeReplaySpeed(int value) {
+        if (replay != null) {
+            replayStartFrame = replay.getPosition();
+            replayStartNanos = System.nanoTime();
+        }
+        replayFramesPerSecond = value;
+    }
+
+    /**
+     * Sends the replay frame that is due by now to the View. Stays on the last frame at the end.
      */
-    @Override
-    public void worldUpdated(int[][] world) {
-        view.updateWorld(world);
-        isWaitingForWorld = false;
+    private void requestReplayFrame() {
+        long elapsed = System.nanoTime() - replayStartNanos;
+        int target = replayStartFrame + (int) (elapsed * replayFramesPerSecond / 1_000_000_000L);
+        target = Math.min(target, replay.getFrameCount() - 1);
+
+        if (target == replay.getPosition())
+            return;
+
+        try {
+            replay.seek(target);
+        } catch (IOException e) {
+            view.showError("Could not replay: " + e.getMessage());
+            stopReplay();
+            return;
+        }
+        view.updateWorld(replay.getFrame());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,76 @@
+package particlesimulation.controller;
+
+import particlesimulation.model.SimulationConfig;
+import particlesimulation.model.World;
+
+/**
+ * Checks that a World in deterministic mode takes the same trajectory with one worker and with many workers.
+ * Both worlds are created from the same settings and seed, after every tick their state hashes are compared.
+ */
+public class DeterminismCheck {
+
+    /**
+     * Runs the check. Exits with 1 at the first tick where the worlds differ.
+     *
+     * @param args an array of command-line arguments, see the usage message
+     */
+    public static void main(String[] args) {
+        SimulationConfig config;
+        int ticks;
+        int workers;
+        try {
+            Arguments arguments = new Arguments(args, Arguments.withWorldOptions("help", "ticks"));
+            if (arguments.has("help")) {
+                System.out.println(usage());
+                return;
+            }
+
+            config = arguments.toConfig();
+            ticks = arguments.getInt("ticks", 500);
+            workers = arguments.getInt("workers", 4);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(usage());
+            System.exit(2);
+            return;
+        }
+
+        config.setDeterministic(true);
+
+        config.setWorkers(1);
+        World serial = config.createWorld();
+        config.setWorkers(workers);
+        World parallel = config.createWorld();
+
+        for (int tick = 0; tick <= ticks; tick++) {
+            if (tick > 0) {
+                serial.tick();
+                parallel.tick();
+            }
+
+            long serialHash = serial.stateHash();
+            long parallelHash = parallel.stateHash();
+            if (serialHash != parallelHash) {
+                System.out.printf("tick %d differs: 1 worker %016x, %d workers %016x%n", tick, serialHash, workers,
+                        parallelHash);
+                System.exit(1);
+            }
+        }
+
+        System.out.printf("%d ticks identical with 1 and %d workers, state hash %016x%n", ticks, workers,
+                serial.stateHash());
+    }
+
+    /**
+     * Returns the usage message.
+     *
+     * @return the usage message
+     */
+    private static String usage() {
+        return "usage: DeterminismCheck [options]\n"
+                + Arguments.worldUsage()
+                + "  --ticks <n>          amount of ticks to compare (500)\n"
+                + "  --help               print this message\n"
+                + "--workers sets the workers of the parallel world (4), --deterministic is always on\n";
+    }
+}
@@ -0,0 +1,157 @@
+package particlesimulation.controller;
+
+import particlesimulation.model.SimulationConfig;
+import particlesimulation.model.StripCoordinator;
+import particlesimulation.model.World;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs a world split into strips over worker processes. By default the workers are started as JVMs on this machine,
+ * with --remote the runner waits for workers started by hand, for example on other machines.
+ * With --check the trajectory is compared with a single node World after every tick.
+ */
+public class DistributedRunner {
+
+    /**
+     * Starts the coordinator and the workers, runs the ticks and prints the report.
+     *
+     * @param args an array of command-line arguments, see the usage message
+     */
+    public static void main(String[] args) {
+        Arguments arguments;
+        SimulationConfig config;
+        int strips;
+        int ticks;
+        int port;
+        try {
+            arguments = new Arguments(args, Arguments.withWorldOptions("help", "strips", "ticks", "port", "remote",
+                    "check", "hash"));
+            if (arguments.has("help")) {
+                System.out.println(usage());
+                return;
+            }
+
+            config = arguments.toConfig();
+            strips = arguments.getInt("strips", 2);
+            ticks = arguments.getInt("ticks", 1000);
+            port = arguments.getInt("port", 0);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(usage());
+            System.exit(2);
+            return;
+        }
+
+        boolean check = arguments.has("check");
+        if (check)
+            config.setDeterministic(true);
+
+        List<Process> processes = new ArrayList<>();
+        try (StripCoordinator coordinator = new StripCoordinator(config, strips, port)) {
+            if (arguments.has("remote"))
+                System.out.printf("waiting for %d workers on port %d%n", strips, coordinator.getPort());
+            else
+                for (int i = 0; i < strips; i++)
+                    processes.add(startWorker(coordinator.getPort(), config.getWorkers()));
+
+            coordinator.connect();
+            World reference = check ? config.createWorld() : null;
+            long start = System.nanoTime();
+
+            for (int tick = 1; tick <= ticks; tick++) {
+                coordinator.tick();
+
+                if (reference != null) {
+                    reference.tick();
+
+                    long hash = coordinator.stateHash();
+                    if (hash != reference.stateHash()) {
+                        System.out.printf("tick %d differs: 1 node %016x, %d strips %016x%n", tick,
+                                reference.stateHash(), strips, hash);
+                        stop(processes);
+                        System.exit(1);
+                    }
+                }
+            }
+
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d ticks in %.3f s, %.1f ticks/s, %d strips%n", ticks, seconds, ticks / seconds,
+                    strips);
+
+            if (check)
+                System.out.printf("%d ticks identical with 1 node and %d strips%n", ticks, strips);
+            if (check || arguments.has("hash"))
+                System.out.printf("state hash %016x%n", coordinator.stateHash());
+        } catch (IOException | IllegalStateException | IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            stop(processes);
+            System.exit(1);
+        }
+
+        for (var process : processes) {
+            try {
+                process.waitFor();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Starts a worker JVM on this machine with the same Java and the same JVM options as this one.
+     *
+     * @param port         the port of the coordinator
+     * @param workers      the threads of the worker
+     * @return             the worker process
+     * @throws IOException if the JVM can't be started
+     */
+    private static Process startWorker(int port, int workers) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(ProcessHandle.current().info().command().orElse("java"));
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());    // --add-modules and the like
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(DistributedWorker.class.getName());
+        command.add("--coordinator");
+        command.add("127.0.0.1:" + port);
+        command.add("--workers");
+        command.add(String.valueOf(workers));
+
+        return new ProcessBuilder(command).inheritIO().start();
+    }
+
+    /**
+     * Kills the worker processes.
+     *
+     * @param processes the worker processes
+     */
+    private static void stop(List<Process> processes) {
+        for (var process : processes)
+            process.destroy();
+    }
+
+    /**
+     * Returns the usage message.
+     *
+     * @return the usage message
+     */
+    private static String usage() {
+        return "usage: DistributedRunner [options]\n"
+                + Arguments.worldUsage()
+                + "  --strips <n>         amount of strips, one worker each (2)\n"
+                + "  --ticks <n>          amount of ticks to compute (1000)\n"
+                + "  --port <n>           port the workers connect to (any free port)\n"
+                + "  --remote             wait for workers started with DistributedWorker instead of starting\n"
+                + "                       them on this machine\n"
+                + "  --check              compare the state hash with a single node world after every tick,\n"
+                + "                       implies --deterministic\n"
+                + "  --hash               print the state hash after the last tick\n"
+                + "  --help               print this message\n"
+                + "--workers sets the threads of every worker, barnes_hut is not supported\n";
+    }
+}
@@ -0,0 +1,64 @@
+package particlesimulation.controller;
+
+import particlesimulation.model.StripWorker;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Set;
+
+/**
+ * Runs one strip of a distributed world until the coordinator stops it. Started by DistributedRunner, or by hand on
+ * other machines when the runner waits for remote workers.
+ */
+public class DistributedWorker {
+
+    /**
+     * Connects to the coordinator and runs the strip it gives.
+     *
+     * @param args an array of command-line arguments, see the usage message
+     */
+    public static void main(String[] args) {
+        InetSocketAddress coordinator;
+        int workers;
+        try {
+            Arguments arguments = new Arguments(args, Set.of("help", "coordinator", "workers"));
+            if (arguments.has("help")) {
+                System.out.println(usage());
+                return;
+            }
+
+            String address = arguments.getString("coordinator", "");
+            int colon = address.lastIndexOf(':');
+            if (colon < 0)
+                throw new IllegalArgumentException("--coordinator needs host:port, got " + address);
+
+            coordinator = new InetSocketAddress(address.substring(0, colon),
+                    Integer.parseInt(address.substring(colon + 1)));
+            workers = arguments.getInt("workers", Runtime.getRuntime().availableProcessors());
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(usage());
+            System.exit(2);
+            return;
+        }
+
+        try (StripWorker worker = new StripWorker(coordinator, workers)) {
+            worker.run();
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Returns the usage message.
+     *
+     * @return the usage message
+     */
+    private static String usage() {
+        return "usage: DistributedWorker --coordinator <host:port> [options]\n"
+                + "  --coordinator <a>    host and port of the DistributedRunner\n"
+                + "  --workers <n>        threads used to compute the strip (available processors)\n"
+                + "  --help               print this message\n";
+    }
+}
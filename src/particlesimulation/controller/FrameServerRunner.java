@@ -0,0 +1,166 @@
+package particlesimulation.controller;
+
+import particlesimulation.model.FrameClient;
+import particlesimulation.model.FrameServer;
+import particlesimulation.model.SimulationConfig;
+import particlesimulation.model.World;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a simulation without window and streams its frames to remote viewers through a FrameServer. With --viewers
+ * it also connects viewers of its own, to see what many viewers cost the simulation.
+ */
+public class FrameServerRunner {
+
+    /**
+     * Creates the world and the server from the command-line arguments and runs the ticks.
+     *
+     * @param args an array of command-line arguments, see the usage message
+     */
+    public static void main(String[] args) {
+        SimulationConfig config;
+        int port;
+        int ticksPerSecond;
+        int ticks;
+        int viewers;
+        int slowViewers;
+        try {
+            Arguments arguments = new Arguments(args, Arguments.withWorldOptions("help", "port", "tps", "ticks",
+                    "viewers", "slow"));
+            if (arguments.has("help")) {
+                System.out.println(usage());
+                return;
+            }
+
+            config = arguments.toConfig();
+            port = arguments.getInt("port", 7600);
+            ticksPerSecond = arguments.getInt("tps", 60);
+            ticks = arguments.getInt("ticks", 0);
+            viewers = arguments.getInt("viewers", 0);
+            slowViewers = arguments.getInt("slow", 0);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(usage());
+            System.exit(2);
+            return;
+        }
+
+        World world = config.createWorld();
+        try (FrameServer server = new FrameServer(world, port)) {
+            System.out.printf("serving frames on port %d%n", server.getPort());
+
+            for (int i = 0; i < viewers; i++)
+                startViewer(server.getPort(), i < slowViewers);
+
+            run(world, server, ticksPerSecond, ticks);
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Ticks the world and publishes a frame after every tick. Prints a report every 5 seconds and at the end.
+     *
+     * @param world          the world
+     * @param server         the server
+     * @param ticksPerSecond the ticks per second, 0 means as fast as possible
+     * @param ticks          the amount of ticks, 0 means until the process is stopped
+     */
+    private static void run(World world, FrameServer server, int ticksPerSecond, int ticks) {
+        long tickNanos = 0;
+        long publishNanos = 0;
+        long reported = System.nanoTime();
+        long deadline = reported;
+        int done = 0;
+
+        for (int tick = 1; ticks == 0 || tick <= ticks; tick++) {
+            long start = System.nanoTime();
+            world.tick();
+            long ticked = System.nanoTime();
+            server.publish();
+            long published = System.nanoTime();
+
+            tickNanos += ticked - start;
+            publishNanos += published - ticked;
+            done++;
+
+            if (published - reported >= 5_000_000_000L || tick == ticks) {
+                report(server, done, tickNanos, publishNanos, published - reported);
+                tickNanos = 0;
+                publishNanos = 0;
+                done = 0;
+                reported = published;
+            }
+
+            if (ticksPerSecond > 0) {
+                deadline += 1_000_000_000L / ticksPerSecond;
+                long wait = deadline - System.nanoTime();
+
+                if (wait > 0)
+                    LockSupport.parkNanos(wait);
+                else
+                    deadline = System.nanoTime();    // too slow for the rate, don't try to catch up
+            }
+        }
+    }
+
+    /**
+     * Prints the ticks per second, how long ticks and publishing took and what the viewers got.
+     *
+     * @param server       the server
+     * @param ticks        the ticks since the last report
+     * @param tickNanos    the time of these ticks, in nanoseconds
+     * @param publishNanos the time spent publishing their frames, in nanoseconds
+     * @param nanos        the time since the last report, in nanoseconds
+     */
+    private static void report(FrameServer server, int ticks, long tickNanos, long publishNanos, long nanos) {
+        System.out.printf("%.1f ticks/s, tick %.3f ms, publish %.3f ms, %d viewers, %d frames sent, %d skipped, "
+                        + "%d dropped%n", ticks / (nanos / 1e9), tickNanos / 1e6 / ticks, publishNanos / 1e6 / ticks,
+                server.getClients(), server.getSentFrames(), server.getSkippedFrames(), server.getDroppedFrames());
+    }
+
+    /**
+     * Connects a viewer that reads frames on its own thread until the server goes away.
+     *
+     * @param port the port of the server
+     * @param slow true to wait 100 ms after every frame, like a viewer on a slow connection
+     */
+    private static void startViewer(int port, boolean slow) {
+        Thread thread = new Thread(() -> {
+            try (FrameClient client = new FrameClient(new InetSocketAddress("127.0.0.1", port))) {
+                // the frames are not decoded, real viewers do that on their own machine
+                while (true) {
+                    client.readFrame(null);
+                    if (slow)
+                        Thread.sleep(100);
+                }
+            } catch (IOException e) {
+                // the server is closed
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "viewer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Returns the usage message.
+     *
+     * @return the usage message
+     */
+    private static String usage() {
+        return "usage: FrameServerRunner [options]\n"
+                + Arguments.worldUsage()
+                + "  --port <n>           port the viewers connect to (7600)\n"
+                + "  --tps <n>            ticks per second, 0 is as fast as possible (60)\n"
+                + "  --ticks <n>          amount of ticks, 0 runs until stopped (0)\n"
+                + "  --viewers <n>        viewers to connect from this process, to measure the cost (0)\n"
+                + "  --slow <n>           how many of these viewers take 100 ms per frame (0)\n"
+                + "  --help               print this message\n";
+    }
+}
@@ -0,0 +1,185 @@
+package particlesimulation.controller;
+
+import particlesimulation.model.NeighborSearch;
+import particlesimulation.model.SimulationConfig;
+import particlesimulation.model.TickPhase;
+import particlesimulation.model.TrajectoryRecorder;
+import particlesimulation.model.World;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Runs a simulation without window as fast as possible and reports how long it took.
+ */
+public class HeadlessRunner {
+
+    /**
+     * Creates the world from the command-line arguments, runs the ticks and prints the report.
+     *
+     * @param args an array of command-line arguments, see the usage message
+     */
+    public static void main(String[] args) {
+        Arguments arguments;
+        try {
+            arguments = new Arguments(args, Arguments.withWorldOptions("help", "ticks", "load", "save", "record",
+                    "hash", "metrics", "force-error"));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(usage());
+            System.exit(2);
+            return;
+        }
+
+        if (arguments.has("help")) {
+            System.out.println(usage());
+            return;
+        }
+
+        SimulationConfig config;
+        int ticks;
+        try {
+            config = arguments.toConfig();
+            ticks = arguments.getInt("ticks", 1000);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(usage());
+            System.exit(2);
+            return;
+        }
+
+        World world;
+        try {
+            world = arguments.has("load") ? load(arguments.getString("load", ""), config) : config.createWorld();
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        TrajectoryRecorder recorder = null;
+        if (arguments.has("record")) {
+            try {
+                recorder = new TrajectoryRecorder(Path.of(arguments.getString("record", "")), world.getWidth(),
+                        world.getHeight());
+            } catch (IOException e) {
+                System.err.println(e.getMessage());
+                System.exit(1);
+                return;
+            }
+            recorder.setMetrics(world.getMetrics());
+            world.setRecordChanges(true);
+        }
+
+        world.getMetrics().setEnabled(arguments.has("metrics"));
+        long start = System.nanoTime();
+
+        for (int i = 0; i < ticks; i++) {
+            world.tick();
+
+            if (recorder != null)
+                recorder.worldChanged(world.getChanges());
+        }
+
+        long nanos = System.nanoTime() - start;
+        report(world, ticks, nanos);
+
+        if (arguments.has("metrics"))
+            for (var line : world.getMetrics().summary())
+                System.out.println("  " + line);
+
+        if (arguments.has("hash"))
+            System.out.printf("state hash %016x%n", world.stateHash());
+
+        if (recorder != null) {
+            try {
+                recorder.close();
+            } catch (IOException e) {
+                System.err.println(e.getMessage());
+                System.exit(1);
+            }
+            System.out.printf("recorded %d frames, dropped %d, %.1f KiB%n", recorder.getRecordedFrames(),
+                    recorder.getDroppedFrames(), recorder.getBytesWritten() / 1024.0);
+        }
+
+        if (arguments.has("save")) {
+            try {
+                world.save(Path.of(arguments.getString("save", "")));
+            } catch (IOException e) {
+                System.err.println(e.getMessage());
+                System.exit(1);
+            }
+        }
+
+        if (arguments.has("force-error")) {
+            String reference = arguments.getString("force-error", "");
+            NeighborSearch search = reference.isEmpty() ? NeighborSearch.UNIFORM_GRID
+                    : NeighborSearch.valueOf(reference.toUpperCase());
+
+            System.out.printf("force error against %s: %.4f %%%n", search.name().toLowerCase(),
+                    100 * world.measureForceError(search));
+        }
+    }
+
+    /**
+     * Loads a world from a snapshot file. The world arguments are ignored, except the ones that choose how a tick is
+     * computed.
+     *
+     * @param file         the snapshot file
+     * @param config       the settings from the command-line arguments
+     * @return             the loaded world
+     * @throws IOException if the snapshot can't be loaded
+     */
+    private static World load(String file, SimulationConfig config) throws IOException {
+        World world = World.load(Path.of(file), config.getWorkers());
+        world.setSeed(config.getSeed());
+        world.setNeighborSearch(config.getNeighborSearch());
+        world.setOpeningAngle(config.getOpeningAngle());
+        world.setVectorKernel(config.isVectorKernel());
+        world.setDeterministic(config.isDeterministic());
+        config.applyTickSettings(world);
+
+        return world;
+    }
+
+    /**
+     * Prints ticks per second, the simulated time and how the time was split between the phases of a tick.
+     *
+     * @param world the world
+     * @param ticks the amount of ticks
+     * @param nanos the time all ticks took, in nanoseconds
+     */
+    private static void report(World world, int ticks, long nanos) {
+        double seconds = nanos / 1e9;
+
+        System.out.printf("%d ticks in %.3f s, %.1f ticks/s, %s kernel%n", ticks, seconds, ticks / seconds,
+                world.isVectorKernel() ? "vector" : "scalar");
+        System.out.printf("simulated time %.1f, %.1f per s, %s integrator, next step %.3f%n", world.getSimulatedTime(),
+                world.getSimulatedTime() / seconds, world.getIntegrator().getName(), world.getTimeStep());
+
+        for (var phase : TickPhase.values()) {
+            long phaseNanos = world.getPhaseNanos(phase);
+            System.out.printf("  %-12s %10.1f ms %6.1f %%%n", phase.name().toLowerCase(), phaseNanos / 1e6,
+                    nanos == 0 ? 0 : 100.0 * phaseNanos / nanos);
+        }
+    }
+
+    /**
+     * Returns the usage message.
+     *
+     * @return the usage message
+     */
+    private static String usage() {
+        return "usage: HeadlessRunner [options]\n"
+                + Arguments.worldUsage()
+                + "  --ticks <n>          amount of ticks to compute (1000)\n"
+                + "  --load <file>        start from a snapshot instead of placing particles\n"
+                + "  --save <file>        save a snapshot after the last tick\n"
+                + "  --record <file>      record every tick to a trajectory file\n"
+                + "  --hash               print the state hash after the last tick\n"
+                + "  --metrics            record the metrics and print p50/p99 of every timer and the counters\n"
+                + "  --force-error [name] compare the forces of the last tick with the forces of another search\n"
+                + "                       (uniform_grid)\n"
+                + "  --help               print this message\n";
+    }
+}
@@ -1,5 +1,9 @@
 package particlesimulation.controller;
 
+import particlesimulation.model.World;
+
+import java.util.Set;
+
 /**
  * Main class, starts the Thread of the main window.
  */
@@ -8,7 +12,7 @@ public class Runner {
     /**
      * New controller object gets created here to start the program.
      *
-     * @param args an array of command-line arguments for the application, not used
+     * @param args an array of command-line arguments for the application, only "--types n" is used
      */
     public static void main(String[] args) {
         String windowTitle = "ParticleSimulation";
@@ -16,6 +20,18 @@ public class Runner {
         int width = 1200;
         int height = 900;
 
-        new Controller(windowTitle, width, height, particleDiameter);
+        int types;
+        try {
+            types = new Arguments(args, Set.of("types")).getInt("types", World.DEFAULT_TYPES);
+            if (types < 1 || types > World.MAX_TYPES)
+                throw new IllegalArgumentException("--types must be between 1 and " + World.MAX_TYPES);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("usage: Runner [--types <n>]");
+            System.exit(2);
+            return;
+        }
+
+        new Controller(windowTitle, width, height, particleDiameter, types);
     }
 }
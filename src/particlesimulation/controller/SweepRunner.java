@@ -0,0 +1,167 @@
+package particlesimulation.controller;
+
+import particlesimulation.model.SimulationConfig;
+import particlesimulation.model.SweepEngine;
+import particlesimulation.model.SweepResult;
+import particlesimulation.model.SweepSpace;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Runs a parameter sweep and writes one CSV row per run. The world arguments are the base settings of every run,
+ * --grid or --samples choose what changes between the runs.
+ */
+public class SweepRunner {
+
+    /**
+     * Creates the runs from the command-line arguments, runs them and writes the results.
+     *
+     * @param args an array of command-line arguments, see the usage message
+     */
+    public static void main(String[] args) {
+        Arguments arguments;
+        List<SimulationConfig> configs;
+        int ticks;
+        int threads;
+        int maxWorlds;
+        try {
+            arguments = new Arguments(args, Arguments.withWorldOptions("help", "grid", "samples", "sample-seed",
+                    "rule-bounds", "range-bounds", "cap-bounds", "repeats", "ticks", "threads", "max-worlds", "out"));
+            if (arguments.has("help")) {
+                System.out.println(usage());
+                return;
+            }
+
+            SimulationConfig base = arguments.toConfig();
+            if (!arguments.has("seed"))
+                base.setSeed(1);    // the same placement for every run, so only the parameters differ
+
+            if (arguments.has("grid"))
+                configs = grid(base, arguments.getString("grid", ""));
+            else
+                configs = SweepSpace.random(base, arguments.getInt("samples", 100),
+                        arguments.getLong("sample-seed", 1),
+                        bounds(arguments, "rule-bounds", new int[]{-100, 100}),
+                        bounds(arguments, "range-bounds", new int[]{20, 120}),
+                        bounds(arguments, "cap-bounds", new int[]{1, 10}));
+
+            configs = SweepSpace.repeat(configs, arguments.getInt("repeats", 1));
+            ticks = arguments.getInt("ticks", 300);
+            threads = arguments.getInt("threads", Runtime.getRuntime().availableProcessors());
+            maxWorlds = arguments.getInt("max-worlds", 4 * threads);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(usage());
+            System.exit(2);
+            return;
+        }
+
+        int types = configs.isEmpty() ? 0 : configs.get(0).getTypes();
+        long start = System.nanoTime();
+
+        try (Writer out = arguments.has("out")
+                ? Files.newBufferedWriter(Path.of(arguments.getString("out", "")), StandardCharsets.UTF_8)
+                : new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+             SweepEngine engine = new SweepEngine(threads, maxWorlds)) {
+            System.err.printf("%d runs of %d ticks on %d threads, %s threads per run%n", configs.size(), ticks,
+                    threads, engine.isVirtual() ? "virtual" : "platform");
+
+            out.write(SweepResult.csvHeader(types));
+            out.write('\n');
+            engine.run(configs, ticks, result -> {
+                try {
+                    out.write(result.toCsv());
+                    out.write('\n');
+                    out.flush();    // streamed, so an aborted sweep keeps its results
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException | ExecutionException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.exit(1);
+        }
+
+        System.err.printf("done in %.1f s%n", (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Creates the runs of a grid like "rule:1=-50,0,50;range=40,90".
+     *
+     * @param base the base settings
+     * @param spec the parameters and their values
+     * @return     the settings of the runs
+     */
+    private static List<SimulationConfig> grid(SimulationConfig base, String spec) {
+        List<String> names = new ArrayList<>();
+        List<int[]> values = new ArrayList<>();
+
+        for (String axis : spec.split(";")) {
+            int equals = axis.indexOf('=');
+            if (equals < 0)
+                throw new IllegalArgumentException("--grid needs name=values, got " + axis);
+
+            names.add(axis.substring(0, equals).trim());
+            String[] parts = axis.substring(equals + 1).split(",");
+            int[] axisValues = new int[parts.length];
+            for (int i = 0; i < parts.length; i++)
+                axisValues[i] = Integer.parseInt(parts[i].trim());
+            values.add(axisValues);
+        }
+
+        return SweepSpace.grid(base, names, values);
+    }
+
+    /**
+     * Returns the smallest and biggest value of an argument like "-100,100".
+     *
+     * @param arguments    the arguments
+     * @param name         the name of the argument
+     * @param defaultValue the bounds used if the argument wasn't given
+     * @return             the bounds
+     */
+    private static int[] bounds(Arguments arguments, String name, int[] defaultValue) {
+        int[] bounds = arguments.getInts(name, 2, defaultValue);
+        if (bounds[0] > bounds[1])
+            throw new IllegalArgumentException("--" + name + " needs min,max, got " + bounds[0] + "," + bounds[1]);
+
+        return bounds;
+    }
+
+    /**
+     * Returns the usage message.
+     *
+     * @return the usage message
+     */
+    private static String usage() {
+        return "usage: SweepRunner [options]\n"
+                + Arguments.worldUsage()
+                + "  --grid <spec>        runs every combination, like \"rule:1=-50,0,50;range=40,90\", a name\n"
+                + "                       is rule, range or cap, with :index for a single one\n"
+                + "  --samples <n>        without --grid: runs with random rules, ranges and caps (100)\n"
+                + "  --sample-seed <n>    seed of the random parameters (1)\n"
+                + "  --rule-bounds <a,b>  smallest and biggest random rule (-100,100)\n"
+                + "  --range-bounds <a,b> smallest and biggest random range (20,120)\n"
+                + "  --cap-bounds <a,b>   smallest and biggest random velocity cap (1,10)\n"
+                + "  --repeats <n>        runs every setting with seeds seed to seed + n - 1 (1)\n"
+                + "  --ticks <n>          ticks per run (300)\n"
+                + "  --threads <n>        threads that compute ticks (available processors)\n"
+                + "  --max-worlds <n>     most runs that have a world at the same time (4 * threads)\n"
+                + "  --out <file>         CSV file, standard output if not given\n"
+                + "  --help               print this message\n"
+                + "--seed defaults to 1, so every run starts from the same placement; --workers is ignored\n";
+    }
+}
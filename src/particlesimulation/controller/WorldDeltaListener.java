@@ -0,0 +1,10 @@
+package particlesimulation.controller;
+
+import particlesimulation.model.FrameDelta;
+
+/**
+ * Interface for listener that gets called with the cells that changed when a new world update is available.
+ */
+public interface WorldDeltaListener {
+    void worldChanged(FrameDelta delta);
+}
@@ -0,0 +1,287 @@
+package particlesimulation.model;
+
+import java.util.Arrays;
+
+/**
+ * Quadtree over the particles of one type, used to approximate the force of far away particles (Barnes-Hut).
+ * A node whose box lies completely inside the range annulus and looks small enough from the particle, judged by the
+ * opening angle, acts as if all its particles were at its center of mass. Distances are measured around the world,
+ * the same way Rule does it.
+ */
+public class BarnesHutTree {
+    private static final int LEAF_SIZE = 8;
+    private static final int MAX_DEPTH = 20;
+
+    /**
+     * The size of the stack force() needs.
+     */
+    public static final int STACK_SIZE = MAX_DEPTH * 3 + 4;
+
+    private final int width;
+    private final int height;
+    private int[] items;
+    private int[] scratch;
+    private int nodeCount;
+    private float[] boxX;
+    private float[] boxY;
+    private float[] halfWidth;
+    private float[] halfHeight;
+    private float[] comX;
+    private float[] comY;
+    private int[] count;
+    private int[] child;
+    private int[] start;
+
+    /**
+     * Initializes a new, empty BarnesHutTree.
+     *
+     * @param width  the width of the world
+     * @param height the height of the world
+     */
+    public BarnesHutTree(int width, int height) {
+        this.width = width;
+        this.height = height;
+        items = new int[0];
+        scratch = new int[0];
+        boxX = new float[0];
+        boxY = new float[0];
+        halfWidth = new float[0];
+        halfHeight = new float[0];
+        comX = new float[0];
+        comY = new float[0];
+        count = new int[0];
+        child = new int[0];
+        start = new int[0];
+        allocateNodes(64);
+    }
+
+    /**
+     * Builds the tree from the particles of a type.
+     *
+     * @param particles the particles
+     * @param type      the index of the particle type
+     */
+    public void rebuild(ParticleStore particles, int type) {
+        int size = particles.size();
+        byte[] types = particles.getType();
+
+        if (items.length < size) {
+            items = new int[particles.getX().length];
+            scratch = new int[particles.getX().length];
+        }
+
+        int n = 0;
+        for (int i = 0; i < size; i++)
+            if (types[i] == type)
+                items[n++] = i;
+
+        nodeCount = 1;
+        build(0, particles.getX(), particles.getY(), 0, n, width / 2F, height / 2F, width / 2F, height / 2F, 0);
+    }
+
+    /**
+     * Fills a node for a range of items and builds its children.
+     *
+     * @param node    the index of the node
+     * @param x       the x coordinates of all particles
+     * @param y       the y coordinates of all particles
+     * @param from    the first item
+     * @param to      the item after the last item
+     * @param centerX x coordinate of the center of the box
+     * @param centerY y coordinate of the center of the box
+     * @param halfW   half the width of the box
+     * @param halfH   half the height of the box
+     * @param depth   the depth of the node
+     */
+    private void build(int node, float[] x, float[] y, int from, int to, float centerX, float centerY, float halfW,
+                       float halfH, int depth) {
+        boxX[node] = centerX;
+        boxY[node] = centerY;
+        halfWidth[node] = halfW;
+        halfHeight[node] = halfH;
+        count[node] = to - from;
+        start[node] = from;
+        child[node] = -1;
+
+        float sumX = 0;
+        float sumY = 0;
+        for (int i = from; i < to; i++) {
+            sumX += x[items[i]];
+            sumY += y[items[i]];
+        }
+        comX[node] = to > from ? sumX / (to - from) : centerX;
+        comY[node] = to > from ? sumY / (to - from) : centerY;
+
+        if (to - from <= LEAF_SIZE || depth == MAX_DEPTH)
+            return;
+
+        // sort the items into the four quadrants, in the order of the children
+        int count0 = 0;
+        int count1 = 0;
+        int count2 = 0;
+        for (int i = from; i < to; i++) {
+            switch (quadrant(x[items[i]], y[items[i]], centerX, centerY)) {
+                case 0 -> count0++;
+                case 1 -> count1++;
+                case 2 -> count2++;
+                default -> { }
+            }
+        }
+
+        int start1 = from + count0;
+        int start2 = start1 + count1;
+        int start3 = start2 + count2;
+        int write0 = from;
+        int write1 = start1;
+        int write2 = start2;
+        int write3 = start3;
+        for (int i = from; i < to; i++) {
+            switch (quadrant(x[items[i]], y[items[i]], centerX, centerY)) {
+                case 0 -> scratch[write0++] = items[i];
+                case 1 -> scratch[write1++] = items[i];
+                case 2 -> scratch[write2++] = items[i];
+                default -> scratch[write3++] = items[i];
+            }
+        }
+        System.arraycopy(scratch, from, items, from, to - from);
+
+        // the four children are stored next to each other
+        if (nodeCount + 4 > count.length)
+            allocateNodes(Math.max(count.length * 2, nodeCount + 4));
+
+        int first = nodeCount;
+        nodeCount += 4;
+        child[node] = first;
+
+        float quarterW = halfW / 2;
+        float quarterH = halfH / 2;
+        build(first, x, y, from, start1, centerX - quarterW, centerY - quarterH, quarterW, quarterH, depth + 1);
+        build(first + 1, x, y, start1, start2, centerX + quarterW, centerY - quarterH, quarterW, quarterH, depth + 1);
+        build(first + 2, x, y, start2, start3, centerX - quarterW, centerY + quarterH, quarterW, quarterH, depth + 1);
+        build(first + 3, x, y, start3, to, centerX + quarterW, centerY + quarterH, quarterW, quarterH, depth + 1);
+    }
+
+    /**
+     * Returns the quadrant of a coordinate: 0 top left, 1 top right, 2 bottom left, 3 bottom right.
+     *
+     * @param x       the x coordinate
+     * @param y       the y coordinate
+     * @param centerX x coordinate of the center of the box
+     * @param centerY y coordinate of the center of the box
+     * @return        the quadrant
+     */
+    private static int quadrant(float x, float y, float centerX, float centerY) {
+        return (x < centerX ? 0 : 1) | (y < centerY ? 0 : 2);
+    }
+
+    /**
+     * Grows the node arrays.
+     *
+     * @param capacity the new amount of nodes
+     */
+    private void allocateNodes(int capacity) {
+        boxX = Arrays.copyOf(boxX, capacity);
+        boxY = Arrays.copyOf(boxY, capacity);
+        halfWidth = Arrays.copyOf(halfWidth, capacity);
+        halfHeight = Arrays.copyOf(halfHeight, capacity);
+        comX = Arrays.copyOf(comX, capacity);
+        comY = Arrays.copyOf(comY, capacity);
+        count = Arrays.copyOf(count, capacity);
+        child = Arrays.copyOf(child, capacity);
+        start = Arrays.copyOf(start, capacity);
+    }
+
+    /**
+     * Approximates the force all particles of the tree cause on a position. Only particles with a distance between
+     * rangeMin and rangeMax count, every one of them adds a unit vector pointing towards it.
+     *
+     * @param x        x coordinate of the position
+     * @param y        y coordinate of the position
+     * @param rangeMin the minimum range, exclusive
+     * @param rangeMax the maximum range, exclusive
+     * @param theta    the opening angle, 0 computes the exact force
+     * @param px       the x coordinates of all particles
+     * @param py       the y coordinates of all particles
+     * @param stack    array with a length of at least STACK_SIZE
+     * @param force    array the force gets added to
+     */
+    public void force(float x, float y, float rangeMin, float rangeMax, float theta, float[] px, float[] py,
+                      int[] stack, float[] force) {
+        if (nodeCount == 0 || count[0] == 0)
+            return;
+
+        float halfWorldW = width / 2F;
+        float halfWorldH = height / 2F;
+        int top = 0;
+        stack[top++] = 0;
+
+        while (top > 0) {
+            int node = stack[--top];
+            if (count[node] == 0)
+                continue;
+
+            float dx = Math.abs(wrap(boxX[node] - x, width));
+            float dy = Math.abs(wrap(boxY[node] - y, height));
+
+            // only if the whole box lies on one side of the wrap, distances to it are the same for all its particles
+            boolean unambiguous = dx + halfWidth[node] <= halfWorldW && dy + halfHeight[node] <= halfWorldH;
+
+            if (unambiguous) {
+                float nearX = Math.max(0, dx - halfWidth[node]);
+                float nearY = Math.max(0, dy - halfHeight[node]);
+                float farX = dx + halfWidth[node];
+                float farY = dy + halfHeight[node];
+                float near = (float) Math.sqrt(nearX * nearX + nearY * nearY);
+                float far = (float) Math.sqrt(farX * farX + farY * farY);
+
+                if (near >= rangeMax || far <= rangeMin)
+                    continue;
+
+                if (near > rangeMin && far < rangeMax) {
+                    float cx = wrap(comX[node] - x, width);
+                    float cy = wrap(comY[node] - y, height);
+                    float distance = (float) Math.sqrt(cx * cx + cy * cy);
+                    float size = 2 * Math.max(halfWidth[node], halfHeight[node]);
+
+                    if (distance > 0 && size < theta * distance) {
+                        force[0] += count[node] * cx / distance;
+                        force[1] += count[node] * cy / distance;
+                        continue;
+                    }
+                }
+            }
+
+            if (child[node] == -1) {
+                for (int i = start[node]; i < start[node] + count[node]; i++) {
+                    float ex = wrap(px[items[i]] - x, width);
+                    float ey = wrap(py[items[i]] - y, height);
+                    float distance = (float) Math.sqrt(ex * ex + ey * ey);
+
+                    if (distance > rangeMin && distance < rangeMax) {
+                        force[0] += ex / distance;
+                        force[1] += ey / distance;
+                    }
+                }
+            } else {
+                for (int c = 0; c < 4; c++)
+                    stack[top++] = child[node] + c;
+            }
+        }
+    }
+
+    /**
+     * Wraps a difference of coordinates to the shortest way around the world.
+     *
+     * @param delta   the difference
+     * @param mapSize the size of the world in that dimension
+     * @return        the wrapped difference, bigger than -mapSize / 2 and at most mapSize / 2 like in Rule
+     */
+    private static float wrap(float delta, int mapSize) {
+        if (delta > mapSize / 2F)
+            return delta - mapSize;
+        if (delta <= -mapSize / 2F)
+            return delta + mapSize;
+
+        return delta;
+    }
+}
@@ -0,0 +1,319 @@
+package particlesimulation.model;
+
+import java.util.Arrays;
+
+/**
+ * Finds out if a position is free in the continuous mode of a World, where particles have float positions and
+ * collide when they are closer than the collision radius. The world is split into cells that are at least as big
+ * as the radius, so only the 3 x 3 cells around a position can hold a particle that is too close. Only occupied
+ * cells are stored, in a hash table from the cell to a list of its particles, so the memory grows with the amount of
+ * particles and not with the size of the world. Distances wrap around the world like the forces do.
+ * The lists are linked through an array indexed by slot. A cell whose list got empty keeps its entry until the
+ * table gets full, then the table is rebuilt with the occupied cells only.
+ */
+final class CollisionGrid {
+    private static final int MIN_CAPACITY = 16;
+
+    private final int width;
+    private final int height;
+    private final float radiusSquared;
+    private final int cellsX;
+    private final int cellsY;
+    private final float cellWidth;
+    private final float cellHeight;
+    private long[] keys;    // cell + 1, 0 marks an unused entry
+    private int[] heads;
+    private int used;
+    private int[] next;
+
+    /**
+     * Initializes a new, empty CollisionGrid.
+     *
+     * @param width  the width of the world
+     * @param height the height of the world
+     * @param radius the collision radius, at most a third of the width and the height
+     */
+    CollisionGrid(int width, int height, float radius) {
+        if (!(radius > 0) || radius * 3 > Math.min(width, height))
+            throw new IllegalArgumentException("the collision radius must be between 0 and a third of the world "
+                    + "size, got " + radius);
+
+        this.width = width;
+        this.height = height;
+        radiusSquared = radius * radius;
+        cellsX = (int) (width / radius);
+        cellsY = (int) (height / radius);
+        cellWidth = (float) width / cellsX;
+        cellHeight = (float) height / cellsY;
+        keys = new long[MIN_CAPACITY];
+        heads = new int[MIN_CAPACITY];
+        next = new int[0];
+    }
+
+    /**
+     * Replaces the content with all particles.
+     *
+     * @param particles the particles
+     */
+    void rebuild(ParticleStore particles) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < particles.size() * 2)
+            capacity <<= 1;
+
+        keys = new long[capacity];
+        heads = new int[capacity];
+        used = 0;
+
+        for (int i = 0; i < particles.size(); i++)
+            insert(i, particles.getX()[i], particles.getY()[i]);
+    }
+
+    /**
+     * Adds a particle.
+     *
+     * @param slot the slot of the particle
+     * @param x    the x coordinate
+     * @param y    the y coordinate
+     */
+    void insert(int slot, float x, float y) {
+        if (slot >= next.length)
+            next = Arrays.copyOf(next, Math.max(slot + 1, next.length * 2));
+
+        int entry = entryFor(cell(x, y));
+        next[slot] = heads[entry];
+        heads[entry] = slot;
+    }
+
+    /**
+     * Removes a particle.
+     *
+     * @param slot the slot of the particle
+     * @param x    the x coordinate the particle was added with
+     * @param y    the y coordinate the particle was added with
+     */
+    void remove(int slot, float x, float y) {
+        int entry = find(cell(x, y));
+
+        if (heads[entry] == slot) {
+            heads[entry] = next[slot];
+            return;
+        }
+
+        int previous = heads[entry];
+        while (next[previous] != slot)
+            previous = next[previous];
+        next[previous] = next[slot];
+    }
+
+    /**
+     * Moves a particle, which only changes the lists if it leaves its cell.
+     *
+     * @param slot  the slot of the particle
+     * @param fromX the old x coordinate
+     * @param fromY the old y coordinate
+     * @param toX   the new x coordinate
+     * @param toY   the new y coordinate
+     */
+    void move(int slot, float fromX, float fromY, float toX, float toY) {
+        if (cell(fromX, fromY) == cell(toX, toY))
+            return;
+
+        remove(slot, fromX, fromY);
+        insert(slot, toX, toY);
+    }
+
+    /**
+     * Changes the slot of a particle, after ParticleStore.remove() moved the last particle into a freed slot.
+     *
+     * @param from the old slot
+     * @param to   the new slot
+     * @param x    the x coordinate of the particle
+     * @param y    the y coordinate of the particle
+     */
+    void renumber(int from, int to, float x, float y) {
+        int entry = find(cell(x, y));
+        next[to] = next[from];
+
+        if (heads[entry] == from) {
+            heads[entry] = to;
+            return;
+        }
+
+        int previous = heads[entry];
+        while (next[previous] != from)
+            previous = next[previous];
+        next[previous] = to;
+    }
+
+    /**
+     * Returns if no other particle is closer to a position than the collision radius.
+     *
+     * @param x         the x coordinate
+     * @param y         the y coordinate
+     * @param self      the slot of the particle that wants to go there, it doesn't count
+     * @param particles the particles
+     * @return          true if the position is free
+     */
+    boolean isFree(float x, float y, int self, ParticleStore particles) {
+        int cellX = cellX(x);
+        int cellY = cellY(y);
+        float[] px = particles.getX();
+        float[] py = particles.getY();
+
+        for (int dy = -1; dy <= 1; dy++) {
+            long row = (long) Math.floorMod(cellY + dy, cellsY) * cellsX;
+
+            for (int dx = -1; dx <= 1; dx++) {
+                int entry = find(row + Math.floorMod(cellX + dx, cellsX));
+                if (entry < 0)
+                    continue;
+
+                for (int other = heads[entry]; other != -1; other = next[other]) {
+                    if (other == self)
+                        continue;
+
+                    float distanceX = wrap(px[other] - x, width);
+                    float distanceY = wrap(py[other] - y, height);
+                    if (distanceX * distanceX + distanceY * distanceY < radiusSquared)
+                        return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the shortest distance on a wrapped axis.
+     *
+     * @param distance the distance, between -size and size
+     * @param size     the size of the axis
+     * @return         the distance between -size / 2 and size / 2
+     */
+    private static float wrap(float distance, int size) {
+        if (distance > size / 2F) return distance - size;
+        if (distance < -size / 2F) return distance + size;
+
+        return distance;
+    }
+
+    /**
+     * Returns the cell of a position.
+     *
+     * @param x the x coordinate
+     * @param y the y coordinate
+     * @return  the cell
+     */
+    private long cell(float x, float y) {
+        return (long) cellY(y) * cellsX + cellX(x);
+    }
+
+    /**
+     * Returns the column of the cell of an x coordinate.
+     *
+     * @param x the x coordinate
+     * @return  the column
+     */
+    private int cellX(float x) {
+        return Math.min((int) (x / cellWidth), cellsX - 1);
+    }
+
+    /**
+     * Returns the row of the cell of a y coordinate.
+     *
+     * @param y the y coordinate
+     * @return  the row
+     */
+    private int cellY(float y) {
+        return Math.min((int) (y / cellHeight), cellsY - 1);
+    }
+
+    /**
+     * Finds the entry of a cell.
+     *
+     * @param cell the cell
+     * @return     the entry, -1 if the cell has none
+     */
+    private int find(long cell) {
+        int mask = keys.length - 1;
+
+        for (int entry = hash(cell) & mask; keys[entry] != 0; entry = (entry + 1) & mask)
+            if (keys[entry] == cell + 1)
+                return entry;
+
+        return -1;
+    }
+
+    /**
+     * Finds the entry of a cell or adds one with an empty list.
+     *
+     * @param cell the cell
+     * @return     the entry
+     */
+    private int entryFor(long cell) {
+        int entry = find(cell);
+        if (entry >= 0)
+            return entry;
+
+        if ((used + 1) * 2 > keys.length)
+            compact();
+
+        int mask = keys.length - 1;
+        entry = hash(cell) & mask;
+        while (keys[entry] != 0)
+            entry = (entry + 1) & mask;
+
+        keys[entry] = cell + 1;
+        heads[entry] = -1;
+        used++;
+
+        return entry;
+    }
+
+    /**
+     * Rebuilds the table with the cells that still have particles, growing it if they fill more than a quarter.
+     */
+    private void compact() {
+        long[] oldKeys = keys;
+        int[] oldHeads = heads;
+
+        int occupied = 0;
+        for (int entry = 0; entry < oldKeys.length; entry++)
+            if (oldKeys[entry] != 0 && oldHeads[entry] != -1)
+                occupied++;
+
+        int capacity = MIN_CAPACITY;
+        while (capacity < occupied * 4)
+            capacity <<= 1;
+
+        keys = new long[capacity];
+        heads = new int[capacity];
+        used = 0;
+
+        int mask = capacity - 1;
+        for (int old = 0; old < oldKeys.length; old++) {
+            if (oldKeys[old] == 0 || oldHeads[old] == -1)
+                continue;
+
+            int entry = hash(oldKeys[old] - 1) & mask;
+            while (keys[entry] != 0)
+                entry = (entry + 1) & mask;
+
+            keys[entry] = oldKeys[old];
+            heads[entry] = oldHeads[old];
+            used++;
+        }
+    }
+
+    /**
+     * Spreads the bits of a cell over the hash.
+     *
+     * @param cell the cell
+     * @return     the hash
+     */
+    private static int hash(long cell) {
+        long hash = cell * 0x9E3779B97F4A7C15L;
+
+        return (int) (hash ^ (hash >>> 32));
+    }
+}
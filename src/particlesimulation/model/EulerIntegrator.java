@@ -0,0 +1,55 @@
+package particlesimulation.model;
+
+/**
+ * Semi-implicit Euler: the force is an acceleration, the velocity is updated first and the particle moves with the
+ * new velocity. Cheap and stable for the short range forces of the rules.
+ */
+public class EulerIntegrator implements Integrator {
+    /**
+     * The name of the integrator.
+     */
+    public static final String NAME = "euler";
+
+    private float dt;
+
+    /**
+     * Prepares a step.
+     *
+     * @param dt         the length of the step
+     * @param previousDt the length of the step before, 0 for the first step
+     */
+    @Override
+    public void prepare(float dt, float previousDt) {
+        this.dt = dt;
+    }
+
+    /**
+     * Applies the force to the velocity and moves the tendency by the velocity.
+     *
+     * @param particles   the particles
+     * @param slot        the slot of the particle
+     * @param fx          the force x
+     * @param fy          the force y
+     * @param velocityCap the velocity cap of the particle type, -1 means no cap
+     */
+    @Override
+    public void integrate(ParticleStore particles, int slot, float fx, float fy, float velocityCap) {
+        float[] velocityX = particles.getVelocityX();
+        float[] velocityY = particles.getVelocityY();
+        velocityX[slot] = ParticleStore.capVelocity(velocityX[slot] + fx * dt, velocityCap);
+        velocityY[slot] = ParticleStore.capVelocity(velocityY[slot] + fy * dt, velocityCap);
+
+        particles.getTendencyX()[slot] += velocityX[slot] * dt;
+        particles.getTendencyY()[slot] += velocityY[slot] * dt;
+    }
+
+    /**
+     * Returns the name, which Integrator.forName() turns back into an integrator.
+     *
+     * @return the name
+     */
+    @Override
+    public String getName() {
+        return NAME;
+    }
+}
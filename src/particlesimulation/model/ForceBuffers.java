@@ -0,0 +1,103 @@
+package particlesimulation.model;
+
+/**
+ * Holds the forces the rules cause during a tick, one buffer per focus type. A rule only writes the slots of its
+ * affected type into the buffer of its focus type, so no two rules ever write the same element and no locking is
+ * needed.
+ */
+public class ForceBuffers {
+    private float[][] forceX;
+    private float[][] forceY;
+    private int active;
+
+    /**
+     * Initializes new ForceBuffers.
+     *
+     * @param types the amount of particle types
+     */
+    public ForceBuffers(int types) {
+        forceX = new float[types][0];
+        forceY = new float[types][0];
+        active = types;
+    }
+
+    /**
+     * Makes sure every buffer can hold a certain amount of particles.
+     *
+     * @param capacity the amount of particles
+     */
+    public void ensureCapacity(int capacity) {
+        ensureCapacity(capacity, forceX.length);
+    }
+
+    /**
+     * Makes sure the first buffers can hold a certain amount of particles, only these get summed. The other buffers
+     * are released, a fused pass writes all forces to the first buffer and doesn't need them.
+     *
+     * @param capacity the amount of particles
+     * @param buffers  the amount of buffers in use
+     */
+    public void ensureCapacity(int capacity, int buffers) {
+        active = buffers;
+
+        for (int i = 0; i < forceX.length; i++) {
+            if (i >= buffers) {
+                forceX[i] = new float[0];
+                forceY[i] = new float[0];
+            } else if (forceX[i].length < capacity) {
+                forceX[i] = new float[capacity];
+                forceY[i] = new float[capacity];
+            }
+        }
+    }
+
+    /**
+     * Returns the x forces caused by a focus type.
+     *
+     * @param type the index of the focus type
+     * @return     the x forces, indexed by slot
+     */
+    public float[] getForceX(int type) {
+        return forceX[type];
+    }
+
+    /**
+     * Returns the y forces caused by a focus type.
+     *
+     * @param type the index of the focus type
+     * @return     the y forces, indexed by slot
+     */
+    public float[] getForceY(int type) {
+        return forceY[type];
+    }
+
+    /**
+     * Sums the x forces of the buffers in use, always in the same order.
+     *
+     * @param slot the slot of the particle
+     * @return     the summed x force
+     */
+    public float sumX(int slot) {
+        float sum = 0;
+
+        for (int i = 0; i < active; i++)
+            sum += forceX[i][slot];
+
+        return sum;
+    }
+
+    /**
+     * Sums the y forces of the buffers in use, always in the same order.
+     *
+     * @param slot the slot of the particle
+     * @return     the summed y force
+     */
+    public float sumY(int slot) {
+        float sum = 0;
+
+        for (int i = 0; i < active; i++)
+            sum += forceY[i][slot];
+
+        return sum;
+    }
+}
@@ -0,0 +1,74 @@
+package particlesimulation.model;
+
+/**
+ * Adds up the force a contiguous run of particles causes on a position. Every particle with a distance between
+ * rangeMin and rangeMax adds a unit vector pointing towards it, distances are measured around the world. The ranges
+ * are given squared, so particles out of range are rejected before the square root.
+ */
+public interface ForceKernel {
+    /**
+     * Adds the force of the particles from index from to index to to the force array.
+     *
+     * @param x               x coordinate of the position
+     * @param y               y coordinate of the position
+     * @param xs              x coordinates of the particles
+     * @param ys              y coordinates of the particles
+     * @param from            the first index
+     * @param to              the index after the last index
+     * @param rangeMinSquared the squared minimum range, exclusive
+     * @param rangeMaxSquared the squared maximum range, exclusive
+     * @param force           array the force gets added to
+     */
+    void accumulate(float x, float y, float[] xs, float[] ys, int from, int to, float rangeMinSquared,
+                    float rangeMaxSquared, float[] force);
+
+    /**
+     * Adds the force like accumulate() and counts the particles in range, used while the metrics are recorded.
+     *
+     * @param x               x coordinate of the position
+     * @param y               y coordinate of the position
+     * @param xs              x coordinates of the particles
+     * @param ys              y coordinates of the particles
+     * @param from            the first index
+     * @param to              the index after the last index
+     * @param rangeMinSquared the squared minimum range, exclusive
+     * @param rangeMaxSquared the squared maximum range, exclusive
+     * @param force           array the force gets added to
+     * @return                the amount of particles in range
+     */
+    int accumulateCounting(float x, float y, float[] xs, float[] ys, int from, int to, float rangeMinSquared,
+                           float rangeMaxSquared, float[] force);
+
+    /**
+     * Returns if the SIMD kernel can be used, which needs the jdk.incubator.vector module
+     * (java --add-modules jdk.incubator.vector).
+     *
+     * @return true if the SIMD kernel is available, false otherwise
+     */
+    static boolean isVectorAvailable() {
+        return ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+    }
+
+    /**
+     * Creates a kernel. The SIMD kernel is only loaded if it is available, otherwise the scalar kernel is used.
+     *
+     * @param width  the width of the world
+     * @param height the height of the world
+     * @param vector true to use the SIMD kernel if possible
+     * @return       the kernel
+     */
+    static ForceKernel create(int width, int height, boolean vector) {
+        if (vector && isVectorAvailable()) {
+            try {
+                // loaded by name, so the scalar kernel works without the module
+                return (ForceKernel) Class.forName("particlesimulation.model.VectorForceKernel")
+                        .getDeclaredConstructor(int.class, int.class)
+                        .newInstance(width, height);
+            } catch (ReflectiveOperationException | LinkageError e) {
+                System.err.println("SIMD kernel not available, using the scalar kernel: " + e);
+            }
+        }
+
+        return new ScalarForceKernel(width, height);
+    }
+}
@@ -0,0 +1,166 @@
+package particlesimulation.model;
+
+/**
+ * A full frame of the world that can be filled again and again. Filling it only clears the cells written by the
+ * last fill, so it doesn't have to allocate and clear a new int[height][width].
+ * A crowded world is copied from its occupancy bitmap in cell order, skipping 64 empty cells at a time, so the frame
+ * is written from front to back. A sparse world is copied particle by particle, which is faster than looking at
+ * every word of the bitmap.
+ */
+public class Frame {
+    private final int width;
+    private final int cellCount;
+    private final int[][] cells;
+    private final long[] written;
+    private int[] writtenCells;
+    private int writtenCount;
+    private boolean writtenListed;
+    private long publishedNanos;
+
+    /**
+     * Initializes a new, empty Frame.
+     *
+     * @param width  the width of the world
+     * @param height the height of the world
+     */
+    public Frame(int width, int height) {
+        this.width = width;
+        cellCount = width * height;
+        cells = new int[height][width];
+        written = new long[(cellCount + 63) / 64];
+        writtenCells = new int[0];
+        writtenListed = true;
+    }
+
+    /**
+     * Replaces the content with the particles.
+     *
+     * @param occupancy     the occupied cells of the world, null for a continuous world
+     * @param slots         the slot of the particle in every cell, -1 if empty, null for a continuous world
+     * @param particles     the particles
+     * @param particleTypes the particle types
+     */
+    void fill(FreeCells occupancy, int[] slots, ParticleStore particles, ParticleType[] particleTypes) {
+        if (occupancy == null || particles.size() * 16L < cellCount)
+            fillSparse(particles, particleTypes);
+        else
+            fillCrowded(occupancy.getOccupied(), slots, particles.getType(), particleTypes);
+    }
+
+    /**
+     * Clears the cells of the last fill and writes every particle.
+     *
+     * @param particles     the particles
+     * @param particleTypes the particle types
+     */
+    private void fillSparse(ParticleStore particles, ParticleType[] particleTypes) {
+        clear();
+
+        int size = particles.size();
+        if (writtenCells.length < size)
+            writtenCells = new int[particles.getX().length];
+
+        float[] x = particles.getX();
+        float[] y = particles.getY();
+        byte[] type = particles.getType();
+
+        for (int i = 0; i < size; i++) {
+            int cell = (int) y[i] * width + (int) x[i];
+            cells[(int) y[i]][(int) x[i]] = particleTypes[type[i]].getType();
+            written[cell >>> 6] |= 1L << cell;
+            writtenCells[i] = cell;
+        }
+        writtenCount = size;
+        writtenListed = true;
+    }
+
+    /**
+     * Walks the occupancy bitmap and the bitmap of the last fill word by word. Cells that got empty are cleared,
+     * occupied cells are written, words that are empty in both are skipped.
+     *
+     * @param occupied      the occupancy bitmap of the world
+     * @param slots         the slot of the particle in every cell, -1 if empty
+     * @param type          the type of every particle
+     * @param particleTypes the particle types
+     */
+    private void fillCrowded(long[] occupied, int[] slots, byte[] type, ParticleType[] particleTypes) {
+        int y = 0;
+        int rowStart = 0;
+
+        for (int word = 0; word < written.length; word++) {
+            long old = written[word];
+            long now = occupied[word];
+            if ((old | now) == 0)
+                continue;
+
+            if (word == written.length - 1 && cellCount % 64 != 0)
+                now &= -1L >>> (64 - cellCount % 64);    // the bits after the last cell are not cells
+
+            // the row only moves forward, so it is followed instead of divided out for every cell
+            for (long changed = old | now; changed != 0; changed &= changed - 1) {
+                int cell = word * 64 + Long.numberOfTrailingZeros(changed);
+                while (cell - rowStart >= width) {
+                    rowStart += width;
+                    y++;
+                }
+
+                if ((now & (changed & -changed)) != 0)
+                    cells[y][cell - rowStart] = particleTypes[type[slots[cell]]].getType();
+                else
+                    cells[y][cell - rowStart] = 0;
+            }
+
+            written[word] = now;
+        }
+        writtenListed = false;
+    }
+
+    /**
+     * Clears the cells written by the last fill, from the list if it was sparse, from the bitmap otherwise.
+     */
+    private void clear() {
+        if (writtenListed) {
+            for (int i = 0; i < writtenCount; i++) {
+                int cell = writtenCells[i];
+                cells[cell / width][cell % width] = 0;
+                written[cell >>> 6] = 0;
+            }
+        } else {
+            for (int word = 0; word < written.length; word++) {
+                for (long bits = written[word]; bits != 0; bits &= bits - 1) {
+                    int cell = word * 64 + Long.numberOfTrailingZeros(bits);
+                    cells[cell / width][cell % width] = 0;
+                }
+                written[word] = 0;
+            }
+        }
+        writtenCount = 0;
+    }
+
+    /**
+     * Remembers when the frame was handed to the reader, to measure how long it waits.
+     *
+     * @param publishedNanos the time in nanoseconds, 0 if not measured
+     */
+    void setPublishedNanos(long publishedNanos) {
+        this.publishedNanos = publishedNanos;
+    }
+
+    /**
+     * Returns when the frame was handed to the reader.
+     *
+     * @return the time in nanoseconds, 0 if not measured
+     */
+    long getPublishedNanos() {
+        return publishedNanos;
+    }
+
+    /**
+     * Returns the cells.
+     *
+     * @return two-dimensional int array that represents the world, 0 means empty
+     */
+    public int[][] getCells() {
+        return cells;
+    }
+}
@@ -0,0 +1,237 @@
+package particlesimulation.model;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+
+/**
+ * Connects to a FrameServer, reads its frames and sends commands to it. The frames are decoded into the same
+ * int[][] the View paints.
+ */
+public class FrameClient implements Closeable {
+    private static final int RECEIVE_BUFFER = 64 * 1024;
+
+    private final SocketChannel channel;
+    private final ByteBuffer command;
+    private final int width;
+    private final int height;
+    private final int types;
+    private ByteBuffer frame;
+    private long skippedFrames;
+
+    /**
+     * Connects to a FrameServer and reads the hello message.
+     *
+     * @param address      the address of the server
+     * @throws IOException if the connection fails or the server is no FrameServer
+     */
+    public FrameClient(InetSocketAddress address) throws IOException {
+        channel = SocketChannel.open();
+        channel.socket().setReceiveBufferSize(RECEIVE_BUFFER);    // before connecting, so the window stays small
+        channel.connect(address);
+        channel.socket().setTcpNoDelay(true);
+        command = ByteBuffer.allocate(FrameServer.COMMAND_SIZE);
+        frame = ByteBuffer.allocate(1 << 16);
+
+        ByteBuffer hello = ByteBuffer.allocate(FrameServer.HELLO_SIZE);
+        readFully(hello);
+        hello.flip();
+        if (hello.getInt() != FrameServer.MAGIC || hello.getInt() != FrameServer.VERSION) {
+            channel.close();
+            throw new IOException("not a frame server of this version");
+        }
+
+        width = hello.getInt();
+        height = hello.getInt();
+        types = hello.getInt();
+    }
+
+    /**
+     * Waits for the next frame and writes it into cells.
+     *
+     * @param cells        int[height][width] that gets the frame, 0 means empty, or null to skip decoding
+     * @return             the number of the frame
+     * @throws IOException if the connection fails
+     */
+    public int readFrame(int[][] cells) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FrameServer.HEADER_SIZE);
+        readFully(header);
+        int length = header.getInt(0);
+        skippedFrames += header.getInt(4);
+
+        if (frame.capacity() < length - 4)
+            frame = ByteBuffer.allocate(Math.max(length - 4, frame.capacity() * 2));
+        frame.clear().limit(length - 4);
+        readFully(frame);
+        frame.flip();
+
+        int number = frame.getInt();
+        if (cells == null)
+            return number;
+
+        for (int[] row : cells)
+            Arrays.fill(row, 0);
+
+        int particles = getVarint(frame);
+        int cell = 0;
+        for (int i = 0; i < particles; i++) {
+            cell += getVarint(frame);
+            cells[cell / width][cell % width] = frame.get();
+        }
+
+        return number;
+    }
+
+    /**
+     * Reads until the buffer is full.
+     *
+     * @param buffer       the buffer
+     * @throws IOException if the connection is closed before
+     */
+    private void readFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())
+            if (channel.read(buffer) < 0)
+                throw new EOFException("connection closed");
+    }
+
+    /**
+     * Gets an unsigned value written in 7-bit groups.
+     *
+     * @param buffer the buffer
+     * @return       the value
+     */
+    private static int getVarint(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+
+        do {
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+
+        return value;
+    }
+
+    /**
+     * Changes the strength of a rule.
+     *
+     * @param rule         the rule
+     * @param value        the new strength
+     * @throws IOException if the connection fails
+     */
+    public void changeRule(int rule, int value) throws IOException {
+        send(FrameServer.CHANGE_RULE, rule, value);
+    }
+
+    /**
+     * Changes the range of a particle type.
+     *
+     * @param index        the particle type
+     * @param value        the new range
+     * @throws IOException if the connection fails
+     */
+    public void changeRange(int index, int value) throws IOException {
+        send(FrameServer.CHANGE_RANGE, index, value);
+    }
+
+    /**
+     * Changes the velocity cap of a particle type.
+     *
+     * @param index        the particle type
+     * @param value        the new velocity cap
+     * @throws IOException if the connection fails
+     */
+    public void changeVelocityCap(int index, int value) throws IOException {
+        send(FrameServer.CHANGE_VELOCITY_CAP, index, value);
+    }
+
+    /**
+     * Adds particles of a particle type.
+     *
+     * @param index        the particle type
+     * @param amount       the amount of particles
+     * @throws IOException if the connection fails
+     */
+    public void addParticles(int index, int amount) throws IOException {
+        send(FrameServer.ADD_PARTICLES, index, amount);
+    }
+
+    /**
+     * Removes particles of a particle type.
+     *
+     * @param index        the particle type
+     * @param amount       the amount of particles
+     * @throws IOException if the connection fails
+     */
+    public void removeParticles(int index, int amount) throws IOException {
+        send(FrameServer.REMOVE_PARTICLES, index, amount);
+    }
+
+    /**
+     * Sends a command. Commands are sent from one thread at a time.
+     *
+     * @param kind         the command
+     * @param index        the index
+     * @param value        the value
+     * @throws IOException if the connection fails
+     */
+    private synchronized void send(byte kind, int index, int value) throws IOException {
+        command.clear();
+        command.put(kind).putInt(index).putInt(value).flip();
+
+        while (command.hasRemaining())
+            channel.write(command);
+    }
+
+    /**
+     * Returns the width of the world.
+     *
+     * @return the width
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the world.
+     *
+     * @return the height
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the amount of particle types.
+     *
+     * @return the amount of particle types
+     */
+    public int getTypes() {
+        return types;
+    }
+
+    /**
+     * Returns the amount of frames the server skipped for this client because it was too slow.
+     *
+     * @return the amount of frames
+     */
+    public long getSkippedFrames() {
+        return skippedFrames;
+    }
+
+    /**
+     * Closes the connection.
+     *
+     * @throws IOException if the connection can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
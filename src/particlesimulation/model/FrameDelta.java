@@ -0,0 +1,117 @@
+package particlesimulation.model;
+
+import java.util.Arrays;
+
+/**
+ * Lists the cells that changed since the last frame. Every change moves a particle type from one cell to another,
+ * a cell of -1 means the particle got added or removed. Cells are numbered row by row, y * width + x.
+ * Applying the changes in order to the last frame results in the current frame.
+ */
+public class FrameDelta {
+    private final int width;
+    private int[] oldCells;
+    private int[] newCells;
+    private byte[] types;
+    private int size;
+
+    /**
+     * Initializes a new, empty FrameDelta.
+     *
+     * @param width the width of the world
+     */
+    public FrameDelta(int width) {
+        this.width = width;
+        oldCells = new int[64];
+        newCells = new int[64];
+        types = new byte[64];
+    }
+
+    /**
+     * Adds a change.
+     *
+     * @param oldCell the cell the particle left, -1 if it got added
+     * @param newCell the cell the particle entered, -1 if it got removed
+     * @param type    the particle type as used in the frame, starting at 1
+     */
+    void add(int oldCell, int newCell, int type) {
+        if (size == oldCells.length) {
+            oldCells = Arrays.copyOf(oldCells, size * 2);
+            newCells = Arrays.copyOf(newCells, size * 2);
+            types = Arrays.copyOf(types, size * 2);
+        }
+
+        oldCells[size] = oldCell;
+        newCells[size] = newCell;
+        types[size] = (byte) type;
+        size++;
+    }
+
+    /**
+     * Removes all changes, keeping the arrays.
+     */
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * Returns the amount of changes.
+     *
+     * @return the amount of changes
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the cell a particle left.
+     *
+     * @param index the index of the change
+     * @return      the cell, -1 if the particle got added
+     */
+    public int getOldCell(int index) {
+        return oldCells[index];
+    }
+
+    /**
+     * Returns the cell a particle entered.
+     *
+     * @param index the index of the change
+     * @return      the cell, -1 if the particle got removed
+     */
+    public int getNewCell(int index) {
+        return newCells[index];
+    }
+
+    /**
+     * Returns the type of the particle that moved.
+     *
+     * @param index the index of the change
+     * @return      the particle type as used in the frame, starting at 1
+     */
+    public int getType(int index) {
+        return types[index];
+    }
+
+    /**
+     * Returns the width of the world, needed to turn a cell into coordinates.
+     *
+     * @return the width of the world
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Applies the changes to a full frame.
+     *
+     * @param frame two-dimensional array that represents the last frame, becomes the current frame
+     */
+    public void applyTo(int[][] frame) {
+        for (int i = 0; i < size; i++) {
+            if (oldCells[i] != -1)
+                frame[oldCells[i] / width][oldCells[i] % width] = 0;
+            if (newCells[i] != -1)
+                frame[newCells[i] / width][newCells[i] % width] = types[i];
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package particlesimulation.model;
+
+/**
+ * Reuses full frames, so exporting a frame doesn't allocate a new int[height][width] every tick.
+ * A frame only gets overwritten two exports later, so a consumer can keep one frame while the next one is created.
+ * The frames are created on the first export, a world that is never exported doesn't pay for them.
+ */
+class FramePool {
+    private final int width;
+    private final int height;
+    private final Frame[] frames;
+    private int next;
+
+    /**
+     * Initializes a new FramePool.
+     *
+     * @param width  the width of the world
+     * @param height the height of the world
+     */
+    FramePool(int width, int height) {
+        this.width = width;
+        this.height = height;
+        frames = new Frame[2];
+    }
+
+    /**
+     * Fills the next frame with the particles.
+     *
+     * @param occupancy     the occupied cells of the world, null for a continuous world
+     * @param slots         the slot of the particle in every cell, -1 if empty, null for a continuous world
+     * @param particles     the particles
+     * @param particleTypes the particle types
+     * @return              two-dimensional int array that represents the world
+     */
+    int[][] fill(FreeCells occupancy, int[] slots, ParticleStore particles, ParticleType[] particleTypes) {
+        if (frames[next] == null)
+            frames[next] = new Frame(width, height);
+
+        Frame frame = frames[next];
+        next = (next + 1) % frames.length;
+
+        frame.fill(occupancy, slots, particles, particleTypes);
+
+        return frame.getCells();
+    }
+}
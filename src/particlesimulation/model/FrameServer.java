@@ -0,0 +1,463 @@
+package particlesimulation.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Streams the frames of a World to remote viewers over TCP and takes their commands.
+ * The simulation thread encodes a frame once into a direct buffer and hands it to the server thread, which sends the
+ * same buffer to every client: a client only gets its own 8 byte header, written together with a view of the shared
+ * frame in one gathering write. A client that is still busy with an older frame gets the latest frame when it is
+ * done, the frames in between are skipped for it, so a slow client never holds up the simulation or other clients.
+ * The socket buffers are kept small, otherwise the kernel would queue seconds of frames for a slow client.
+ * Without clients, publish() only applies the commands.
+ *
+ * <pre>
+ * hello    int magic, int version, int width, int height, int types
+ * frame    int length of the rest, int frames skipped for this client, int frame, then the particles in the keyframe
+ *          format of trajectory files: varint particles, per particle in cell order varint gap, byte type
+ * command  byte command, int index, int value, sent by the client
+ * </pre>
+ */
+public class FrameServer implements Closeable {
+    static final int MAGIC = 0x50465253;   // "PFRS"
+    static final int VERSION = 1;
+    static final int HELLO_SIZE = 20;
+    static final int HEADER_SIZE = 8;
+    static final int COMMAND_SIZE = 9;
+    static final byte CHANGE_RULE = 0;
+    static final byte CHANGE_RANGE = 1;
+    static final byte CHANGE_VELOCITY_CAP = 2;
+    static final byte ADD_PARTICLES = 3;
+    static final byte REMOVE_PARTICLES = 4;
+
+    private static final int MAX_FRAMES = 32;
+    private static final int SEND_BUFFER = 64 * 1024;
+
+    private final World world;
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final Thread thread;
+    private final Queue<int[]> commands;
+    private final Queue<EncodedFrame> free;
+    private final AtomicReference<EncodedFrame> pending;
+    private final LongAdder sentFrames;
+    private final LongAdder skippedFrames;
+    private final LongAdder droppedFrames;
+    private volatile int clients;
+    private volatile boolean running;
+    private int allocated;
+    private int frameNumber;
+    private EncodedFrame latest;
+
+    /**
+     * Initializes a new FrameServer and starts its thread.
+     *
+     * @param world        the world, only touched by the thread that calls publish()
+     * @param port         the port, 0 picks a free port
+     * @throws IOException if the port can't be opened
+     */
+    public FrameServer(World world, int port) throws IOException {
+        this.world = world;
+        commands = new ConcurrentLinkedQueue<>();
+        free = new ConcurrentLinkedQueue<>();
+        pending = new AtomicReference<>();
+        sentFrames = new LongAdder();
+        skippedFrames = new LongAdder();
+        droppedFrames = new LongAdder();
+
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port));
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+
+        running = true;
+        thread = new Thread(this::run, "frame server");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Returns the port the server listens on.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return ((InetSocketAddress) server.socket().getLocalSocketAddress()).getPort();
+    }
+
+    /**
+     * Applies the commands of the clients and, if a client is connected, encodes the current state of the world and
+     * hands it to the server thread. Called by the simulation thread between ticks. If the clients still hold every
+     * frame buffer, the frame is dropped.
+     */
+    public void publish() {
+        applyCommands();
+        if (clients == 0)
+            return;
+
+        EncodedFrame frame = free.poll();
+        if (frame == null) {
+            if (allocated == MAX_FRAMES) {
+                droppedFrames.increment();
+                return;
+            }
+
+            frame = new EncodedFrame();
+            allocated++;
+        }
+
+        // nothing else changes the particles between measuring and encoding
+        synchronized (world) {
+            int bytes = 4 + world.maxEncodedBytes();
+            if (frame.data.capacity() < bytes)
+                frame.data = ByteBuffer.allocateDirect(Math.max(bytes, frame.data.capacity() * 2));
+
+            frame.data.clear();
+            frame.data.putInt(++frameNumber);
+            world.encodeFrame(frame.data);
+            frame.data.flip();
+        }
+        frame.number = frameNumber;
+
+        // a frame the server thread didn't take yet was never sent, so it is free again
+        EncodedFrame replaced = pending.getAndSet(frame);
+        if (replaced != null)
+            free.add(replaced);
+
+        selector.wakeup();
+    }
+
+    /**
+     * Applies the commands the clients sent since the last call.
+     */
+    private void applyCommands() {
+        for (int[] command = commands.poll(); command != null; command = commands.poll()) {
+            switch (command[0]) {
+                case CHANGE_RULE -> world.changeRule(command[1], command[2]);
+                case CHANGE_RANGE -> world.changeRange(command[1], command[2]);
+                case CHANGE_VELOCITY_CAP -> world.changeVelocityCap(command[1], command[2]);
+                case ADD_PARTICLES -> world.addParticles(command[1], command[2]);
+                case REMOVE_PARTICLES -> world.removeParticles(command[1], command[2]);
+                default -> throw new IllegalStateException("unknown command " + command[0]);
+            }
+        }
+    }
+
+    /**
+     * Accepts clients, reads their commands and sends them frames until the server is closed.
+     */
+    private void run() {
+        while (running) {
+            try {
+                selector.select();
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+
+            takePending();
+
+            for (var key : selector.selectedKeys()) {
+                if (!key.isValid())
+                    continue;
+
+                if (key.isAcceptable())
+                    accept();
+                else if (key.isReadable() || key.isWritable())
+                    serve(key);
+            }
+            selector.selectedKeys().clear();
+        }
+    }
+
+    /**
+     * Takes the frame published by the simulation thread and starts sending it to every client that is not busy.
+     */
+    private void takePending() {
+        EncodedFrame frame = pending.getAndSet(null);
+        if (frame == null)
+            return;
+
+        // the server keeps a reference to the latest frame, so it can be sent to clients that finish later
+        if (latest != null)
+            release(latest);
+        latest = frame;
+        latest.references++;
+
+        for (var key : selector.keys())
+            if (key.attachment() instanceof Client client && !client.busy)
+                start(key, client);
+    }
+
+    /**
+     * Accepts a client and starts sending the hello message.
+     */
+    private void accept() {
+        try {
+            SocketChannel channel = server.accept();
+            if (channel == null)
+                return;
+
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            channel.socket().setSendBufferSize(SEND_BUFFER);    // a few frames, so a slow client lags behind little
+
+            Client client = new Client();
+            client.header.putInt(MAGIC).putInt(VERSION).putInt(world.getWidth()).putInt(world.getHeight())
+                    .putInt(world.getTypes()).flip();
+            client.parts[1] = ByteBuffer.allocate(0);
+            client.busy = true;
+
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ, client);
+            clients++;
+            flush(key, client);
+        } catch (IOException e) {
+            // the client is gone before it was registered
+        }
+    }
+
+    /**
+     * Reads the commands of a client or goes on writing to it.
+     *
+     * @param key the key of the client
+     */
+    private void serve(SelectionKey key) {
+        Client client = (Client) key.attachment();
+
+        try {
+            if (key.isReadable())
+                read(key, client);
+            if (key.isValid() && key.isWritable())
+                write(key, client);
+        } catch (IOException | IllegalArgumentException e) {
+            disconnect(key, client);
+        }
+    }
+
+    /**
+     * Reads commands and queues them for the simulation thread.
+     *
+     * @param key                       the key of the client
+     * @param client                    the client
+     * @throws IOException              if the client is gone
+     * @throws IllegalArgumentException if the client sent an invalid command
+     */
+    private void read(SelectionKey key, Client client) throws IOException {
+        if (((SocketChannel) key.channel()).read(client.commands) < 0)
+            throw new IOException("client closed the connection");
+
+        client.commands.flip();
+        while (client.commands.remaining() >= COMMAND_SIZE) {
+            int[] command = {client.commands.get(), client.commands.getInt(), client.commands.getInt()};
+            check(command);
+            commands.add(command);
+        }
+        client.commands.compact();
+    }
+
+    /**
+     * Checks that a command can be applied to the world.
+     *
+     * @param command                   the command, index and value
+     * @throws IllegalArgumentException if the command is unknown or the index is out of bounds
+     */
+    private void check(int[] command) {
+        int types = world.getTypes();
+        int indices = command[0] == CHANGE_RULE ? types * types : types;
+
+        if (command[0] < CHANGE_RULE || command[0] > REMOVE_PARTICLES)
+            throw new IllegalArgumentException("unknown command " + command[0]);
+        if (command[1] < 0 || command[1] >= indices)
+            throw new IllegalArgumentException("index out of bounds: " + command[1]);
+        if (command[0] >= ADD_PARTICLES && command[2] < 0)
+            throw new IllegalArgumentException("negative amount: " + command[2]);
+    }
+
+    /**
+     * Starts sending the latest frame to a client that is not busy, if it didn't get it yet.
+     *
+     * @param key    the key of the client
+     * @param client the client
+     */
+    private void start(SelectionKey key, Client client) {
+        if (latest == null || latest.number == client.lastNumber)
+            return;
+
+        int skipped = client.lastNumber == 0 ? 0 : latest.number - client.lastNumber - 1;
+        skippedFrames.add(skipped);
+
+        client.header.clear();
+        client.header.putInt(4 + latest.data.remaining()).putInt(skipped).flip();
+        client.parts[1] = latest.data.duplicate();    // a view, the frame itself is not copied
+        client.frame = latest;
+        client.lastNumber = latest.number;
+        client.busy = true;
+        latest.references++;
+
+        flush(key, client);
+    }
+
+    /**
+     * Writes to a client outside of a selected key, disconnecting it if it is gone.
+     *
+     * @param key    the key of the client
+     * @param client the client
+     */
+    private void flush(SelectionKey key, Client client) {
+        try {
+            write(key, client);
+        } catch (IOException e) {
+            disconnect(key, client);
+        }
+    }
+
+    /**
+     * Writes as much of the current message as the client takes. When the message is done, the next frame is
+     * started if there is one, otherwise the server waits until the client can take more.
+     *
+     * @param key          the key of the client
+     * @param client       the client
+     * @throws IOException if the client is gone
+     */
+    private void write(SelectionKey key, Client client) throws IOException {
+        ((SocketChannel) key.channel()).write(client.parts);
+
+        if (client.parts[1].hasRemaining() || client.header.hasRemaining()) {
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            return;
+        }
+
+        key.interestOps(SelectionKey.OP_READ);
+        client.busy = false;
+        if (client.frame != null) {
+            release(client.frame);
+            client.frame = null;
+            sentFrames.increment();
+        }
+
+        start(key, client);
+    }
+
+    /**
+     * Closes the connection to a client and releases its frame.
+     *
+     * @param key    the key of the client
+     * @param client the client
+     */
+    private void disconnect(SelectionKey key, Client client) {
+        if (!key.isValid())
+            return;
+
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            // closed anyway
+        }
+
+        if (client.frame != null) {
+            release(client.frame);
+            client.frame = null;
+        }
+        clients--;
+    }
+
+    /**
+     * Drops a reference to a frame, a frame without references can be encoded again.
+     *
+     * @param frame the frame
+     */
+    private void release(EncodedFrame frame) {
+        if (--frame.references == 0)
+            free.add(frame);
+    }
+
+    /**
+     * Returns the amount of connected clients.
+     *
+     * @return the amount of clients
+     */
+    public int getClients() {
+        return clients;
+    }
+
+    /**
+     * Returns the amount of frames that were completely sent, summed over the clients.
+     *
+     * @return the amount of frames
+     */
+    public long getSentFrames() {
+        return sentFrames.sum();
+    }
+
+    /**
+     * Returns the amount of frames that were skipped because a client was still busy, summed over the clients.
+     *
+     * @return the amount of frames
+     */
+    public long getSkippedFrames() {
+        return skippedFrames.sum();
+    }
+
+    /**
+     * Returns the amount of frames that weren't encoded because the clients held every frame buffer.
+     *
+     * @return the amount of frames
+     */
+    public long getDroppedFrames() {
+        return droppedFrames.sum();
+    }
+
+    /**
+     * Stops the server thread and closes all connections.
+     *
+     * @throws IOException if a connection can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        for (var key : selector.keys())
+            key.channel().close();
+        selector.close();
+    }
+
+    /**
+     * A frame encoded into a direct buffer. The references are only counted by the server thread.
+     */
+    private static final class EncodedFrame {
+        private ByteBuffer data = ByteBuffer.allocateDirect(1 << 16);
+        private int number;
+        private int references;
+    }
+
+    /**
+     * A connected client: its header, the message it is being sent and its unread commands.
+     */
+    private static final class Client {
+        private final ByteBuffer header = ByteBuffer.allocateDirect(HELLO_SIZE);
+        private final ByteBuffer[] parts = {header, null};
+        private final ByteBuffer commands = ByteBuffer.allocate(COMMAND_SIZE * 64);
+        private EncodedFrame frame;
+        private int lastNumber;
+        private boolean busy;
+    }
+}
@@ -0,0 +1,239 @@
+package particlesimulation.model;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Bitmap of the occupied cells of a world that can pick a random free cell without trying cells until one is free.
+ * The cells are grouped into blocks of 4096 cells that know how many of their cells are free. To pick the k-th free
+ * cell, a Fenwick tree over the blocks finds the block, the bit counts of its words find the word and the bits of the
+ * word find the cell. The tree is only kept up to date while particles get added; a tick moves many particles and
+ * just marks it as outdated.
+ * The bitmap is also used to export frames, because it skips 64 empty cells at a time.
+ */
+final class FreeCells {
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final int WORDS_PER_BLOCK = 64;
+    private static final int CELLS_PER_BLOCK = WORDS_PER_BLOCK * 64;
+
+    private final int cells;
+    private final long[] occupied;
+    private final int[] blockFree;
+    private final int[] tree;
+    private int free;
+    private boolean treeValid;
+
+    /**
+     * Initializes new FreeCells with all cells free.
+     *
+     * @param cells the amount of cells
+     */
+    FreeCells(int cells) {
+        this.cells = cells;
+        occupied = new long[(cells + 63) / 64];
+        int blocks = (occupied.length + WORDS_PER_BLOCK - 1) / WORDS_PER_BLOCK;
+        blockFree = new int[blocks];
+        tree = new int[blocks + 1];
+        clear();
+    }
+
+    /**
+     * Marks all cells as free.
+     */
+    void clear() {
+        Arrays.fill(occupied, 0);
+
+        // the bits after the last cell count as occupied, so they are never picked
+        if (cells % 64 != 0)
+            occupied[occupied.length - 1] = -1L << (cells % 64);
+
+        for (int b = 0; b < blockFree.length; b++)
+            blockFree[b] = Math.min(CELLS_PER_BLOCK, cells - b * CELLS_PER_BLOCK);
+        free = cells;
+        treeValid = false;
+    }
+
+    /**
+     * Returns if a cell is occupied.
+     *
+     * @param cell the cell
+     * @return     true if the cell is occupied
+     */
+    boolean isOccupied(int cell) {
+        return (occupied[cell >>> 6] & 1L << cell) != 0;
+    }
+
+    /**
+     * Returns the bitmap, bit i of word j is set if cell j * 64 + i is occupied. The bits after the last cell are set.
+     *
+     * @return the bitmap
+     */
+    long[] getOccupied() {
+        return occupied;
+    }
+
+    /**
+     * Returns the amount of free cells.
+     *
+     * @return the amount of free cells
+     */
+    int getFree() {
+        return free;
+    }
+
+    /**
+     * Marks a free cell as occupied.
+     *
+     * @param cell the cell
+     */
+    void occupy(int cell) {
+        occupied[cell >>> 6] |= 1L << cell;
+        free--;
+        blockFree[cell / CELLS_PER_BLOCK]--;
+
+        if (treeValid)
+            update(cell / CELLS_PER_BLOCK, -1);
+    }
+
+    /**
+     * Marks an occupied cell as free.
+     *
+     * @param cell the cell
+     */
+    void vacate(int cell) {
+        occupied[cell >>> 6] &= ~(1L << cell);
+        free++;
+        blockFree[cell / CELLS_PER_BLOCK]++;
+
+        if (treeValid)
+            update(cell / CELLS_PER_BLOCK, 1);
+    }
+
+    /**
+     * Moves the occupation of a cell to a free cell. Used by the movement of a tick, so the tree is not updated.
+     *
+     * @param from the occupied cell
+     * @param to   the free cell
+     */
+    void move(int from, int to) {
+        occupied[from >>> 6] &= ~(1L << from);
+        occupied[to >>> 6] |= 1L << to;
+
+        int fromBlock = from / CELLS_PER_BLOCK;
+        int toBlock = to / CELLS_PER_BLOCK;
+        if (fromBlock != toBlock) {
+            blockFree[fromBlock]++;
+            blockFree[toBlock]--;
+            treeValid = false;
+        }
+    }
+
+    /**
+     * Moves the occupation of a cell while other threads move other particles. Both bits get flipped atomically
+     * instead of cleared and set, so a cell that is left and entered in the same phase stays occupied no matter which
+     * thread comes first.
+     *
+     * @param from the cell the particle leaves
+     * @param to   the cell the particle enters
+     */
+    void moveConcurrently(int from, int to) {
+        if (from >>> 6 == to >>> 6) {
+            LONGS.getAndBitwiseXor(occupied, from >>> 6, 1L << from | 1L << to);
+        } else {
+            LONGS.getAndBitwiseXor(occupied, from >>> 6, 1L << from);
+            LONGS.getAndBitwiseXor(occupied, to >>> 6, 1L << to);
+        }
+
+        int fromBlock = from / CELLS_PER_BLOCK;
+        int toBlock = to / CELLS_PER_BLOCK;
+        if (fromBlock != toBlock) {
+            INTS.getAndAdd(blockFree, fromBlock, 1);
+            INTS.getAndAdd(blockFree, toBlock, -1);
+            treeValid = false;
+        }
+    }
+
+    /**
+     * Picks a free cell, every free cell has the same chance. A few random cells are tried first, because that is
+     * faster as long as the world is not crowded.
+     *
+     * @param random the random generator
+     * @return       the free cell, -1 if no cell is free
+     */
+    int sample(SplittableRandom random) {
+        if (free == 0)
+            return -1;
+
+        for (int i = 0; i < 4; i++) {
+            int cell = random.nextInt(cells);
+            if (!isOccupied(cell))
+                return cell;
+        }
+
+        return select(random.nextInt(free));
+    }
+
+    /**
+     * Finds the k-th free cell.
+     *
+     * @param k the index of the free cell, counted from 0
+     * @return  the cell
+     */
+    private int select(int k) {
+        if (!treeValid)
+            buildTree();
+
+        // walk down the Fenwick tree to the block that holds the k-th free cell
+        int block = 0;
+        for (int step = Integer.highestOneBit(blockFree.length); step > 0; step >>= 1) {
+            int next = block + step;
+            if (next <= blockFree.length && tree[next] <= k) {
+                block = next;
+                k -= tree[next];
+            }
+        }
+
+        int word = block * WORDS_PER_BLOCK;
+        int freeBits = Long.bitCount(~occupied[word]);
+        while (freeBits <= k) {
+            k -= freeBits;
+            freeBits = Long.bitCount(~occupied[++word]);
+        }
+
+        long bits = ~occupied[word];
+        for (int i = 0; i < k; i++)
+            bits &= bits - 1;    // drop the lowest free bit
+
+        return word * 64 + Long.numberOfTrailingZeros(bits);
+    }
+
+    /**
+     * Builds the Fenwick tree from the free cells per block.
+     */
+    private void buildTree() {
+        for (int b = 0; b < blockFree.length; b++)
+            tree[b + 1] = blockFree[b];
+
+        for (int i = 1; i < tree.length; i++) {
+            int parent = i + (i & -i);
+            if (parent < tree.length)
+                tree[parent] += tree[i];
+        }
+
+        treeValid = true;
+    }
+
+    /**
+     * Changes the free cells of a block in the Fenwick tree.
+     *
+     * @param block  the block
+     * @param change the change of free cells
+     */
+    private void update(int block, int change) {
+        for (int i = block + 1; i < tree.length; i += i & -i)
+            tree[i] += change;
+    }
+}
@@ -0,0 +1,170 @@
+package particlesimulation.model;
+
+/**
+ * Computes the forces of all rules on a particle in one pass over its neighbor cells.
+ * Every neighbor looks up the strength and the ranges of its type pair in the interaction table, so a particle visits
+ * each neighbor once instead of once per rule. Needs the grid rebuilt with rebuildAllTypes() and writes the total
+ * force to the first force buffer.
+ */
+public class FusedRule {
+    private ParticleStore particles;
+    private int width;
+    private int height;
+    private SpatialGrid grid;
+    private ForceBuffers forces;
+    private InteractionTable table;
+    private Metrics metrics;
+
+    /**
+     * Initializes a new FusedRule.
+     *
+     * @param particles the particles of the world
+     * @param width     width of the world
+     * @param height    height of the world
+     * @param grid      grid that contains the particles of all types together, rebuilt by the World every tick
+     * @param forces    buffers the force gets written to, only the first one is used
+     */
+    public FusedRule(ParticleStore particles, int width, int height, SpatialGrid grid, ForceBuffers forces) {
+        this.particles = particles;
+        this.width = width;
+        this.height = height;
+        this.grid = grid;
+        this.forces = forces;
+    }
+
+    /**
+     * Computes the total force on a range of particles. The strength and the ranges are read from the interaction
+     * table set before the tick. While the metrics are recorded, the call is timed and the evaluated pairs are
+     * counted.
+     *
+     * @param from the first slot
+     * @param to   the slot after the last slot
+     */
+    public void gravity(int from, int to) {
+        InteractionTable table = this.table;
+        Metrics metrics = this.metrics;
+        long startNanos = metrics == null ? 0 : metrics.start();
+        long evaluated = 0;
+        long inRange = 0;
+        int[] columns = new int[3];
+        int[] rows = new int[3];
+        float[] force = new float[2];
+        float[] x = particles.getX();
+        float[] y = particles.getY();
+        byte[] type = particles.getType();
+        float[] forceX = forces.getForceX(0);
+        float[] forceY = forces.getForceY(0);
+
+        for (int p1 = from; p1 < to; p1++) {
+            force[0] = 0;
+            force[1] = 0;
+
+            int row = table.pair(type[p1], 0);
+            int columnCount = grid.neighborColumns(grid.getCellX(x[p1]), columns);
+            int rowCount = grid.neighborRows(grid.getCellY(y[p1]), rows);
+
+            for (int r = 0; r < rowCount; r++) {
+                int runStart = 0;
+                int runEnd = 0;
+
+                // neighboring columns of a row lie next to each other, so they are visited as one run
+                for (int c = 0; c < columnCount; c++) {
+                    int start = grid.getCellStart(columns[c], rows[r], 0);
+                    int end = grid.getCellEnd(columns[c], rows[r], 0);
+
+                    if (start == runEnd) {
+                        runEnd = end;
+                    } else {
+                        inRange += accumulate(x[p1], y[p1], runStart, runEnd, table, row, force);
+                        evaluated += runEnd - runStart;
+                        runStart = start;
+                        runEnd = end;
+                    }
+                }
+
+                inRange += accumulate(x[p1], y[p1], runStart, runEnd, table, row, force);
+                evaluated += runEnd - runStart;
+            }
+
+            forceX[p1] = force[0];
+            forceY[p1] = force[1];
+        }
+
+        if (startNanos != 0) {
+            metrics.add(MetricCounter.PAIRS_EVALUATED, evaluated);
+            metrics.add(MetricCounter.PAIRS_IN_RANGE, inRange);
+            metrics.stop(MetricTimer.RULE, startNanos);
+        }
+    }
+
+    /**
+     * Adds the force of the particles from index from to index to of the grid to the force array.
+     *
+     * @param x     x coordinate of the particle that is affected
+     * @param y     y coordinate of the particle that is affected
+     * @param from  the first index
+     * @param to    the index after the last index
+     * @param table the interaction table of the tick
+     * @param row   the index of the pair of the affected type with the first type
+     * @param force array the force is accumulated in
+     * @return      the amount of particles in range
+     */
+    private int accumulate(float x, float y, int from, int to, InteractionTable table, int row, float[] force) {
+        float[] xs = grid.getSortedX();
+        float[] ys = grid.getSortedY();
+        byte[] types = grid.getSortedType();
+        float halfWidth = width / 2F;
+        float halfHeight = height / 2F;
+        float sumX = 0;
+        float sumY = 0;
+        int inRange = 0;
+
+        for (int i = from; i < to; i++) {
+            float dx = xs[i] - x;
+            float dy = ys[i] - y;
+
+            // shortest way around the world, like ScalarForceKernel
+            if (dx > halfWidth)
+                dx -= width;
+            else if (dx <= -halfWidth)
+                dx += width;
+            if (dy > halfHeight)
+                dy -= height;
+            else if (dy <= -halfHeight)
+                dy += height;
+
+            int pair = row + types[i];
+            float distanceSquared = dx * dx + dy * dy;
+
+            if (distanceSquared > table.getRangeMinSquared(pair) && distanceSquared < table.getRangeMaxSquared(pair)) {
+                float g = table.getStrength(pair) / (float) Math.sqrt(distanceSquared);
+                sumX += dx * g;
+                sumY += dy * g;
+                inRange++;
+            }
+        }
+
+        force[0] += sumX;
+        force[1] += sumY;
+
+        return inRange;
+    }
+
+    /**
+     * Sets the interaction table the next gravity calls read the strengths and the ranges from.
+     *
+     * @param table the interaction table
+     */
+    public void setInteractionTable(InteractionTable table) {
+        this.table = table;
+    }
+
+    /**
+     * Sets the metrics the gravity calls are recorded in.
+     *
+     * @param metrics the metrics, null to not record
+     */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+}
@@ -0,0 +1,54 @@
+package particlesimulation.model;
+
+/**
+ * Turns the force of a tick into the velocity and the tendency of a particle. The force is the sum of all rules,
+ * already multiplied with the rule strengths. The length of a step, dt, is measured in ticks of the original scheme,
+ * so a step with dt 1 moves a particle as far as one tick always did. Friction is not part of the integrator, the
+ * World applies it after the particles moved.
+ * An instance belongs to one World: prepare() is called once per tick, then integrate() for every particle, from
+ * several threads at once.
+ */
+public interface Integrator {
+    /**
+     * Prepares a step.
+     *
+     * @param dt         the length of the step
+     * @param previousDt the length of the step before, 0 for the first step
+     */
+    void prepare(float dt, float previousDt);
+
+    /**
+     * Applies the force to the velocity and moves the tendency by the velocity.
+     *
+     * @param particles   the particles
+     * @param slot        the slot of the particle
+     * @param fx          the force x
+     * @param fy          the force y
+     * @param velocityCap the velocity cap of the particle type, -1 means no cap
+     */
+    void integrate(ParticleStore particles, int slot, float fx, float fy, float velocityCap);
+
+    /**
+     * Returns the name, which forName() turns back into an integrator.
+     *
+     * @return the name
+     */
+    String getName();
+
+    /**
+     * Creates a new integrator.
+     *
+     * @param name                      relaxation, euler or verlet
+     * @return                          the integrator
+     * @throws IllegalArgumentException if the name is unknown
+     */
+    static Integrator forName(String name) {
+        return switch (name) {
+            case RelaxationIntegrator.NAME -> new RelaxationIntegrator();
+            case EulerIntegrator.NAME -> new EulerIntegrator();
+            case VerletIntegrator.NAME -> new VerletIntegrator();
+            default -> throw new IllegalArgumentException("integrator must be relaxation, euler or verlet, got "
+                    + name);
+        };
+    }
+}
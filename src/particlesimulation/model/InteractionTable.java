@@ -0,0 +1,137 @@
+package particlesimulation.model;
+
+/**
+ * Immutable snapshot of the rule strengths, ranges and velocity caps, stored in flat arrays indexed by type pair.
+ * The World compiles a new table whenever a setting changes and a tick uses the same table from start to end, so
+ * a change from the View never takes effect in the middle of a tick.
+ */
+public final class InteractionTable {
+    private final int types;
+    private final float[] strength;
+    private final float[] rangeMin;
+    private final float[] rangeMax;
+    private final float[] rangeMinSquared;
+    private final float[] rangeMaxSquared;
+    private final float[] velocityCap;
+    private final int maxRange;
+
+    /**
+     * Compiles a new InteractionTable. The ranges of a pair are the ranges of the focus type.
+     *
+     * @param particleTypes the particle types
+     * @param strengths     the strength of every rule, row i holds how type i reacts to every type
+     */
+    public InteractionTable(ParticleType[] particleTypes, float[] strengths) {
+        types = particleTypes.length;
+        strength = strengths.clone();
+        rangeMin = new float[types * types];
+        rangeMax = new float[types * types];
+        rangeMinSquared = new float[types * types];
+        rangeMaxSquared = new float[types * types];
+        velocityCap = new float[types];
+
+        int range = 0;
+        for (int a = 0; a < types; a++) {
+            velocityCap[a] = particleTypes[a].getVelocityCap();
+            range = Math.max(range, particleTypes[a].getRangeMax());
+
+            for (int b = 0; b < types; b++) {
+                int pair = a * types + b;
+                rangeMin[pair] = particleTypes[b].getRangeMin();
+                rangeMax[pair] = particleTypes[b].getRangeMax();
+                rangeMinSquared[pair] = rangeMin[pair] * rangeMin[pair];
+                rangeMaxSquared[pair] = rangeMax[pair] * rangeMax[pair];
+            }
+        }
+        maxRange = range;
+    }
+
+    /**
+     * Returns the amount of particle types.
+     *
+     * @return the amount of particle types
+     */
+    public int getTypes() {
+        return types;
+    }
+
+    /**
+     * Returns the index of a type pair.
+     *
+     * @param typeA the index of the affected type
+     * @param typeB the index of the focus type
+     * @return      the index of the pair
+     */
+    public int pair(int typeA, int typeB) {
+        return typeA * types + typeB;
+    }
+
+    /**
+     * Returns the strength of a pair.
+     *
+     * @param pair the index of the pair
+     * @return     the strength
+     */
+    public float getStrength(int pair) {
+        return strength[pair];
+    }
+
+    /**
+     * Returns the minimum range of a pair.
+     *
+     * @param pair the index of the pair
+     * @return     the minimum range
+     */
+    public float getRangeMin(int pair) {
+        return rangeMin[pair];
+    }
+
+    /**
+     * Returns the maximum range of a pair.
+     *
+     * @param pair the index of the pair
+     * @return     the maximum range
+     */
+    public float getRangeMax(int pair) {
+        return rangeMax[pair];
+    }
+
+    /**
+     * Returns the squared minimum range of a pair.
+     *
+     * @param pair the index of the pair
+     * @return     the squared minimum range
+     */
+    public float getRangeMinSquared(int pair) {
+        return rangeMinSquared[pair];
+    }
+
+    /**
+     * Returns the squared maximum range of a pair.
+     *
+     * @param pair the index of the pair
+     * @return     the squared maximum range
+     */
+    public float getRangeMaxSquared(int pair) {
+        return rangeMaxSquared[pair];
+    }
+
+    /**
+     * Returns the velocity cap of a type.
+     *
+     * @param type the index of the type
+     * @return     the velocity cap, -1 means no cap
+     */
+    public float getVelocityCap(int type) {
+        return velocityCap[type];
+    }
+
+    /**
+     * Returns the biggest maximum range of all types.
+     *
+     * @return the biggest maximum range
+     */
+    public int getMaxRange() {
+        return maxRange;
+    }
+}
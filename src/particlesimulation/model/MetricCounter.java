@@ -0,0 +1,31 @@
+package particlesimulation.model;
+
+/**
+ * The counted events of the simulation.
+ */
+public enum MetricCounter {
+    /**
+     * Particle pairs whose distance was computed. The Barnes-Hut search is not counted, it compares with groups.
+     */
+    PAIRS_EVALUATED,
+
+    /**
+     * Evaluated pairs that were in range and added a force.
+     */
+    PAIRS_IN_RANGE,
+
+    /**
+     * Moves that were rejected because the target pixel was taken.
+     */
+    COLLISIONS,
+
+    /**
+     * Frames that were published and replaced before the window took them.
+     */
+    FRAMES_DROPPED,
+
+    /**
+     * Frames a TrajectoryRecorder dropped because its writer thread fell behind.
+     */
+    RECORDER_FRAMES_DROPPED
+}
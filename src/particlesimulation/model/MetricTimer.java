@@ -0,0 +1,51 @@
+package particlesimulation.model;
+
+/**
+ * The timed sections of the simulation. Every section keeps its recent durations for percentiles.
+ */
+public enum MetricTimer {
+    /**
+     * A whole World tick.
+     */
+    TICK,
+
+    /**
+     * Sorting the particles into the spatial grid or the quadtrees.
+     */
+    GRID,
+
+    /**
+     * Computing the forces of all rules.
+     */
+    FORCES,
+
+    /**
+     * One gravity call of a rule on a slot range, there are many per tick.
+     */
+    RULE,
+
+    /**
+     * Applying the forces to the velocities.
+     */
+    INTEGRATION,
+
+    /**
+     * Moving the particles and applying friction.
+     */
+    MOVEMENT,
+
+    /**
+     * Exporting the world into a frame.
+     */
+    EXPORT,
+
+    /**
+     * The time a finished tick or frame waits until the thread that uses it gets it.
+     */
+    HAND_OFF,
+
+    /**
+     * Painting a frame in the window.
+     */
+    PAINT
+}
@@ -0,0 +1,254 @@
+package particlesimulation.model;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Nanosecond timers and counters for the hot paths of the simulation, turned off by default.
+ * While off, start() returns 0 and the other calls return after reading one volatile flag, so the instrumented code
+ * costs next to nothing. Every timer keeps its last 1024 durations in a ring, the percentiles are computed from a
+ * sorted copy when they are asked for. Timers and counters can be recorded by many threads at the same time.
+ */
+public class Metrics implements MetricsMXBean {
+    private static final int SAMPLES = 1024;
+    private static final String NAME = "particlesimulation:type=Metrics";
+
+    private volatile boolean enabled;
+    private final long[][] durations;
+    private final AtomicLongArray recorded;
+    private final LongAdder[] counters;
+
+    /**
+     * Initializes new, turned off Metrics.
+     */
+    public Metrics() {
+        durations = new long[MetricTimer.values().length][SAMPLES];
+        recorded = new AtomicLongArray(MetricTimer.values().length);
+        counters = new LongAdder[MetricCounter.values().length];
+        for (int i = 0; i < counters.length; i++)
+            counters[i] = new LongAdder();
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server, replacing metrics registered before.
+     * Errors are printed, the simulation runs without JMX then.
+     */
+    public void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(NAME);
+            if (server.isRegistered(name))
+                server.unregisterMBean(name);
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            System.err.println("Could not register the metrics: " + e);
+        }
+    }
+
+    /**
+     * Returns if the metrics are recorded.
+     *
+     * @return true if the metrics are recorded
+     */
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turns recording on or off.
+     *
+     * @param enabled true to record
+     */
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Starts timing a section.
+     *
+     * @return the start time for stop(), 0 if the metrics are turned off
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the time since start() as a duration of a timer.
+     *
+     * @param timer the timer
+     * @param start the value returned by start(), nothing is recorded if it is 0
+     */
+    public void stop(MetricTimer timer, long start) {
+        if (start != 0)
+            record(timer, System.nanoTime() - start);
+    }
+
+    /**
+     * Records a duration of a timer.
+     *
+     * @param timer the timer
+     * @param nanos the duration in nanoseconds
+     */
+    public void record(MetricTimer timer, long nanos) {
+        if (!enabled)
+            return;
+
+        int t = timer.ordinal();
+        long index = recorded.getAndIncrement(t);
+        durations[t][(int) (index % SAMPLES)] = nanos;    // a concurrent reader may see an old sample, that's fine
+    }
+
+    /**
+     * Adds to a counter.
+     *
+     * @param counter the counter
+     * @param amount  the amount to add
+     */
+    public void add(MetricCounter counter, long amount) {
+        if (enabled && amount != 0)
+            counters[counter.ordinal()].add(amount);
+    }
+
+    /**
+     * Returns the value of a counter.
+     *
+     * @param counter the counter
+     * @return        the value
+     */
+    public long getCount(MetricCounter counter) {
+        return counters[counter.ordinal()].sum();
+    }
+
+    /**
+     * Returns how often a timer was recorded.
+     *
+     * @param timer the timer
+     * @return      the amount of durations
+     */
+    public long getSamples(MetricTimer timer) {
+        return recorded.get(timer.ordinal());
+    }
+
+    /**
+     * Returns a percentile of the recent durations of a timer.
+     *
+     * @param timer      the timer
+     * @param percentile the percentile, from 0 to 1
+     * @return           the duration in milliseconds, 0 if nothing was recorded
+     */
+    public double getPercentileMillis(MetricTimer timer, double percentile) {
+        int count = (int) Math.min(getSamples(timer), SAMPLES);
+        if (count == 0)
+            return 0;
+
+        long[] sorted = Arrays.copyOf(durations[timer.ordinal()], count);
+        Arrays.sort(sorted);
+
+        int index = (int) Math.ceil(percentile * count) - 1;
+        return sorted[Math.max(0, Math.min(count - 1, index))] / 1e6;
+    }
+
+    /**
+     * Returns the median of the recent durations of every timer.
+     *
+     * @return the medians in milliseconds
+     */
+    @Override
+    public Map<String, Double> getP50Millis() {
+        return percentiles(0.5);
+    }
+
+    /**
+     * Returns the 99th percentile of the recent durations of every timer.
+     *
+     * @return the 99th percentiles in milliseconds
+     */
+    @Override
+    public Map<String, Double> getP99Millis() {
+        return percentiles(0.99);
+    }
+
+    /**
+     * Returns a percentile of every timer.
+     *
+     * @param percentile the percentile, from 0 to 1
+     * @return           the durations in milliseconds
+     */
+    private Map<String, Double> percentiles(double percentile) {
+        Map<String, Double> result = new LinkedHashMap<>();
+        for (var timer : MetricTimer.values())
+            result.put(timer.name().toLowerCase(), getPercentileMillis(timer, percentile));
+
+        return result;
+    }
+
+    /**
+     * Returns how often every timer was recorded.
+     *
+     * @return the amount of samples
+     */
+    @Override
+    public Map<String, Long> getSamples() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (var timer : MetricTimer.values())
+            result.put(timer.name().toLowerCase(), getSamples(timer));
+
+        return result;
+    }
+
+    /**
+     * Returns the value of every counter.
+     *
+     * @return the counters
+     */
+    @Override
+    public Map<String, Long> getCounters() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (var counter : MetricCounter.values())
+            result.put(counter.name().toLowerCase(), getCount(counter));
+
+        return result;
+    }
+
+    /**
+     * Sets all timers and counters back to 0.
+     */
+    @Override
+    public void reset() {
+        for (int t = 0; t < recorded.length(); t++)
+            recorded.set(t, 0);
+        for (var counter : counters)
+            counter.reset();
+    }
+
+    /**
+     * Describes the timers that were recorded and the counters in one line each, for the overlay and the headless
+     * runner.
+     *
+     * @return the lines
+     */
+    public List<String> summary() {
+        List<String> lines = new ArrayList<>();
+
+        for (var timer : MetricTimer.values())
+            if (getSamples(timer) > 0)
+                lines.add(String.format("%-12s p50 %8.3f ms  p99 %8.3f ms", timer.name().toLowerCase(),
+                        getPercentileMillis(timer, 0.5), getPercentileMillis(timer, 0.99)));
+
+        for (var counter : MetricCounter.values())
+            lines.add(String.format("%-23s %,d", counter.name().toLowerCase(), getCount(counter)));
+
+        return lines;
+    }
+}
@@ -0,0 +1,56 @@
+package particlesimulation.model;
+
+import java.util.Map;
+
+/**
+ * The metrics of the simulation as seen by JMX, for example in JConsole under particlesimulation:type=Metrics.
+ * The maps are keyed by the lower case names of the timers and counters.
+ */
+public interface MetricsMXBean {
+    /**
+     * Returns if the metrics are recorded.
+     *
+     * @return true if the metrics are recorded
+     */
+    boolean isEnabled();
+
+    /**
+     * Turns recording on or off.
+     *
+     * @param enabled true to record
+     */
+    void setEnabled(boolean enabled);
+
+    /**
+     * Returns the median of the recent durations of every timer.
+     *
+     * @return the medians in milliseconds
+     */
+    Map<String, Double> getP50Millis();
+
+    /**
+     * Returns the 99th percentile of the recent durations of every timer.
+     *
+     * @return the 99th percentiles in milliseconds
+     */
+    Map<String, Double> getP99Millis();
+
+    /**
+     * Returns how often every timer was recorded.
+     *
+     * @return the amount of samples
+     */
+    Map<String, Long> getSamples();
+
+    /**
+     * Returns the value of every counter.
+     *
+     * @return the counters
+     */
+    Map<String, Long> getCounters();
+
+    /**
+     * Sets all timers and counters back to 0.
+     */
+    void reset();
+}
@@ -1,17 +1,22 @@
 package particlesimulation.model;
 
+import particlesimulation.controller.WorldDeltaListener;
 import particlesimulation.controller.WorldUpdateListener;
 
-import java.util.LinkedList;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * The Model that communicates to World and gives feedback to the Controller.
  */
 public class Model {
     private final List<WorldUpdateListener> listeners;
+    private final List<WorldDeltaListener> deltaListeners;
     private final World world;
+    private final SimulationLoop loop;
 
     /**
      * Initialzes a new Model.
@@ -20,19 +25,98 @@ public class Model {
      * @param height the height of the world
      */
     public Model(int width, int height) {
-        listeners = new LinkedList<>();
-        world = new World(width, height);
+        this(width, height, World.DEFAULT_TYPES);
+    }
+
+    /**
+     * Initialzes a new Model.
+     *
+     * @param width  the width of the world
+     * @param height the height of the world
+     * @param types  the amount of particle types
+     */
+    public Model(int width, int height, int types) {
+        listeners = new CopyOnWriteArrayList<>();
+        deltaListeners = new CopyOnWriteArrayList<>();
+        world = new World(width, height, Runtime.getRuntime().availableProcessors(), types);
+        loop = new SimulationLoop(world, width, height, this::notifyDeltaListeners);
+        world.getMetrics().register();
+    }
+
+    /**
+     * Starts ticking the world on its own thread. Frames are then taken with takeFrame() instead of compute().
+     */
+    public void start() {
+        loop.start();
+    }
+
+    /**
+     * Stops the simulation thread.
+     */
+    public void stop() {
+        loop.stop();
+    }
+
+    /**
+     * Takes the latest frame of the simulation thread. Only called by the thread that draws the frames.
+     *
+     * @return two-dimensional int array that represents the world, or null if there is no new frame
+     */
+    public int[][] takeFrame() {
+        return loop.takeFrame();
+    }
+
+    /**
+     * Sets how many ticks the simulation thread computes per second.
+     *
+     * @param ticksPerSecond the ticks per second, 0 means as fast as possible
+     */
+    public void setTicksPerSecond(int ticksPerSecond) {
+        loop.setTicksPerSecond(ticksPerSecond);
+    }
+
+    /**
+     * Sets how many ticks the simulation thread computes per frame.
+     *
+     * @param ticksPerFrame the ticks per frame
+     */
+    public void setTicksPerFrame(int ticksPerFrame) {
+        loop.setTicksPerFrame(ticksPerFrame);
     }
 
     /**
      * Gets called to create a world update. Calls the listeners when the world update is finished.
+     * A full frame is only exported if a WorldUpdateListener is registered.
+     * The time between the end of the tick and the start of the listeners is recorded as hand-off.
      */
     public void compute() {
-        CompletableFuture<int[][]> future = CompletableFuture.supplyAsync(world::compute);
-        future.thenAcceptAsync(result -> {
-            for (var listener : listeners)
-                listener.worldUpdated(result);
+        Metrics metrics = world.getMetrics();
+        CompletableFuture<Long> future = CompletableFuture.supplyAsync(() -> {
+            world.tick();
+            return metrics.start();
         });
+        future.thenAcceptAsync(ticked -> {
+            metrics.stop(MetricTimer.HAND_OFF, ticked);
+            notifyDeltaListeners();
+
+            if (!listeners.isEmpty()) {
+                int[][] result = world.particleArrayToIntArray();
+                for (var listener : listeners)
+                    listener.worldUpdated(result);
+            }
+        });
+    }
+
+    /**
+     * Calls the delta listeners with the cells that changed since the last call.
+     */
+    private void notifyDeltaListeners() {
+        if (deltaListeners.isEmpty())
+            return;
+
+        FrameDelta delta = world.getChanges();
+        for (var listener : deltaListeners)
+            listener.worldChanged(delta);
     }
 
     /**
@@ -44,6 +128,67 @@ public class Model {
         listeners.add(listener);
     }
 
+    /**
+     * Adds a listener that gets called with the changed cells when a world update is finished.
+     * The first update contains every particle as added, so it can be applied to an empty frame.
+     *
+     * @param listener
+     */
+    public void addDeltaListener(WorldDeltaListener listener) {
+        if (deltaListeners.isEmpty())
+            world.setRecordChanges(true);
+
+        deltaListeners.add(listener);
+    }
+
+    /**
+     * Removes a listener added with addDeltaListener(). Recording the changed cells stops with the last one.
+     *
+     * @param listener the listener
+     */
+    public void removeDeltaListener(WorldDeltaListener listener) {
+        deltaListeners.remove(listener);
+
+        if (deltaListeners.isEmpty())
+            world.setRecordChanges(false);
+    }
+
+    /**
+     * Turns recording the metrics on or off.
+     *
+     * @param enabled true to record
+     */
+    public void setMetricsEnabled(boolean enabled) {
+        world.getMetrics().setEnabled(enabled);
+    }
+
+    /**
+     * Records how long painting a frame took.
+     *
+     * @param nanos the time in nanoseconds
+     */
+    public void recordPaintTime(long nanos) {
+        world.getMetrics().record(MetricTimer.PAINT, nanos);
+    }
+
+    /**
+     * Returns the metrics of the world, for parts that record into them.
+     *
+     * @return the metrics
+     */
+    public Metrics getMetrics() {
+        return world.getMetrics();
+    }
+
+    /**
+     * Describes the metrics in one line per timer and counter.
+     *
+     * @return the lines
+     */
+    public List<String> getMetricsSummary() {
+        return world.getMetrics().summary();
+    }
+
     /**
      * Changes the strength of a rule.
      *
@@ -54,6 +199,42 @@ public class Model {
         world.changeRule(rule, value);
     }
 
+    /**
+     * Changes how particles in range are found.
+     *
+     * @param neighborSearch the neighbor search
+     */
+    public void setNeighborSearch(NeighborSearch neighborSearch) {
+        world.setNeighborSearch(neighborSearch);
+    }
+
+    /**
+     * Chooses between the SIMD and the scalar force kernel.
+     *
+     * @param vector true to use the SIMD kernel if possible
+     */
+    public void setVectorKernel(boolean vector) {
+        world.setVectorKernel(vector);
+    }
+
+    /**
+     * Changes the opening angle of the Barnes-Hut neighbor search.
+     *
+     * @param openingAngle the opening angle
+     */
+    public void setOpeningAngle(float openingAngle) {
+        world.setOpeningAngle(openingAngle);
+    }
+
+    /**
+     * Changes the amount of threads used to compute a world update.
+     *
+     * @param workers the amount of threads
+     */
+    public void setWorkers(int workers) {
+        world.setWorkers(workers);
+    }
+
     /**
      * calls World to change the velocity cap of a certain partice type.
      *
@@ -93,5 +274,63 @@ public class Model {
     public void addParticles(int index, int amount) {
         world.addParticles(index, amount);
     }
-}
 
+    /**
+     * Returns the amount of particle types.
+     *
+     * @return the amount of particle types
+     */
+    public int getTypes() {
+        return world.getTypes();
+    }
+
+    /**
+     * Returns the strength of a rule.
+     *
+     * @param rule the rule
+     * @return     the strength
+     */
+    public int getRule(int rule) {
+        return world.getRule(rule);
+    }
+
+    /**
+     * Returns the range of a certain particle type.
+     *
+     * @param index the type of the particle
+     * @return      the range
+     */
+    public int getRange(int index) {
+        return world.getRange(index);
+    }
+
+    /**
+     * Returns the velocity cap of a certain particle type.
+     *
+     * @param index the type of the particle
+     * @return      the velocity cap
+     */
+    public int getVelocityCap(int index) {
+        return world.getVelocityCap(index);
+    }
+
+    /**
+     * Saves the world to a snapshot file.
+     *
+     * @param path         the file
+     * @throws IOException if the file can't be written
+     */
+    public void save(Path path) throws IOException {
+        world.save(path);
+    }
+
+    /**
+     * Replaces the world with a snapshot file.
+     *
+     * @param path         the file
+     * @throws IOException if the file can't be read or doesn't fit the world
+     */
+    public void restore(Path path) throws IOException {
+        world.restore(path);
+    }
+}
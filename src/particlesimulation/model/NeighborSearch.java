@@ -0,0 +1,29 @@
+package particlesimulation.model;
+
+/**
+ * Defines how a Rule finds the particles that are in range of another particle.
+ */
+public enum NeighborSearch {
+    /**
+     * Compares every particle with every other particle. Slow, but used as reference.
+     */
+    BRUTE_FORCE,
+
+    /**
+     * Only compares particles that are in neighboring cells of a toroidal uniform grid.
+     */
+    UNIFORM_GRID,
+
+    /**
+     * Approximates groups of far away particles by their center of mass, using a quadtree per particle type.
+     * Faster than the uniform grid when the ranges cover most of the world, but not exact.
+     */
+    BARNES_HUT,
+
+    /**
+     * Like the uniform grid, but computes all rules of a particle in one pass over the neighbor cells and looks up
+     * the strength and the ranges per pair. The cost grows with the amount of neighbors instead of the amount of
+     * rules, so it is the fastest with many particle types.
+     */
+    FUSED_GRID
+}
@@ -0,0 +1,224 @@
+package particlesimulation.model;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Moves the particles of a tick on several threads with exactly the result of moving them one after another in slot
+ * order, so a tick doesn't depend on the amount of workers.
+ * In slot order a particle gets its target pixel if the particle that sat there left before and no earlier particle
+ * took it. So every target pixel goes to the first particle after its occupant that wants it, found with a
+ * compare-and-set on a flat claim array. The claimant moves if the occupant moved, and the occupant comes before it,
+ * so following the occupants always ends. Each phase is split into slot ranges like the force phase.
+ */
+final class ParallelMovement {
+    private static final VarHandle INTS = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final byte UNKNOWN = 0;
+    private static final byte MOVES = 1;
+    private static final byte STAYS = 2;
+
+    private final int width;
+    private final int height;
+    private final int[] claims;
+    private final LongAdder collisions;
+    private int[] sources;
+    private int[] targets;
+    private byte[] state;
+    private ParticleStore particles;
+    private int[] slots;
+    private FreeCells freeCells;
+    private float friction;
+
+    /**
+     * Initializes a new ParallelMovement.
+     *
+     * @param width  the width of the world
+     * @param height the height of the world
+     */
+    ParallelMovement(int width, int height) {
+        this.width = width;
+        this.height = height;
+        claims = new int[width * height];
+        Arrays.fill(claims, Integer.MAX_VALUE);
+        collisions = new LongAdder();
+        sources = new int[0];
+        targets = new int[0];
+        state = new byte[0];
+    }
+
+    /**
+     * Moves every particle to the pixel of its tendency if it gets it and applies friction.
+     *
+     * @param scheduler the scheduler that runs the phases
+     * @param particles the particles
+     * @param slots     the slot of the particle in every cell, -1 if empty, updated
+     * @param freeCells the occupied cells, updated
+     * @param friction  the factor the velocity gets multiplied with
+     * @return          the amount of moves rejected because the target pixel was taken
+     */
+    int move(TickScheduler scheduler, ParticleStore particles, int[] slots, FreeCells freeCells, float friction) {
+        int size = particles.size();
+        if (sources.length < size) {
+            sources = new int[particles.getX().length];
+            targets = new int[particles.getX().length];
+            state = new byte[particles.getX().length];
+        }
+
+        this.particles = particles;
+        this.slots = slots;
+        this.freeCells = freeCells;
+        this.friction = friction;
+        collisions.reset();
+
+        scheduler.forEachRange(size, this::claim);
+        scheduler.forEachRange(size, this::resolve);
+        scheduler.forEachRange(size, this::apply);
+
+        this.particles = null;
+        this.slots = null;
+        this.freeCells = null;
+
+        return collisions.intValue();
+    }
+
+    /**
+     * Computes the target pixels and lets every particle claim its target if it comes after the occupant. The lowest
+     * slot wins.
+     *
+     * @param from the first slot
+     * @param to   the slot after the last slot
+     */
+    private void claim(int from, int to) {
+        float[] x = particles.getX();
+        float[] y = particles.getY();
+        float[] tendencyX = particles.getTendencyX();
+        float[] tendencyY = particles.getTendencyY();
+
+        for (int i = from; i < to; i++) {
+            int source = (int) y[i] * width + (int) x[i];
+            int target = World.fitFloatToWorld(tendencyY[i], height) * width
+                    + World.fitFloatToWorld(tendencyX[i], width);
+            sources[i] = source;
+            targets[i] = target;
+            state[i] = UNKNOWN;
+
+            if (target == source || slots[target] > i)
+                continue;
+
+            int current = (int) INTS.getVolatile(claims, target);
+            while (i < current && !INTS.compareAndSet(claims, target, current, i))
+                current = (int) INTS.getVolatile(claims, target);
+        }
+    }
+
+    /**
+     * Decides for every particle if it moves. Threads may resolve the same particle at the same time, they always
+     * come to the same result.
+     *
+     * @param from the first slot
+     * @param to   the slot after the last slot
+     */
+    private void resolve(int from, int to) {
+        int[] chain = new int[16];
+
+        for (int i = from; i < to; i++) {
+            if (state[i] != UNKNOWN)
+                continue;
+
+            // follow the occupants of the targets until a particle whose result is clear
+            int length = 0;
+            int current = i;
+            byte result;
+            while (true) {
+                if (state[current] != UNKNOWN) {
+                    result = state[current];
+                    break;
+                }
+
+                if (length == chain.length)
+                    chain = Arrays.copyOf(chain, length * 2);
+                chain[length++] = current;
+
+                int target = targets[current];
+                if (target == sources[current] || claims[target] != current) {
+                    result = STAYS;
+                    break;
+                }
+
+                int occupant = slots[target];
+                if (occupant == -1) {
+                    result = MOVES;
+                    break;
+                }
+                current = occupant;
+            }
+
+            for (int c = 0; c < length; c++)
+                state[chain[c]] = result;
+        }
+    }
+
+    /**
+     * Moves the particles that got their target and applies friction. A pixel can be left and entered in the same
+     * phase, so the old pixel is only cleared if it still holds the particle.
+     *
+     * @param from the first slot
+     * @param to   the slot after the last slot
+     */
+    private void apply(int from, int to) {
+        int rejected = 0;
+
+        for (int i = from; i < to; i++) {
+            int source = sources[i];
+            int target = targets[i];
+
+            if (state[i] == MOVES) {
+                INTS.compareAndSet(slots, source, i, -1);
+                INTS.setVolatile(slots, target, i);
+                freeCells.moveConcurrently(source, target);
+                particles.setYX(i, target % width, target / width);
+            } else if (target != source) {
+                rejected++;
+            }
+
+            if (target != source)
+                claims[target] = Integer.MAX_VALUE;
+
+            particles.friction(i, friction);
+        }
+
+        collisions.add(rejected);
+    }
+
+    /**
+     * Returns if a particle moved in the last move() call.
+     *
+     * @param slot the slot of the particle
+     * @return     true if it moved
+     */
+    boolean moved(int slot) {
+        return state[slot] == MOVES;
+    }
+
+    /**
+     * Returns the cell a particle was in before the last move() call.
+     *
+     * @param slot the slot of the particle
+     * @return     the cell
+     */
+    int getSource(int slot) {
+        return sources[slot];
+    }
+
+    /**
+     * Returns the cell a particle wanted to move to in the last move() call.
+     *
+     * @param slot the slot of the particle
+     * @return     the cell
+     */
+    int getTarget(int slot) {
+        return targets[slot];
+    }
+}
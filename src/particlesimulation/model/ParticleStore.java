@@ -0,0 +1,246 @@
+package particlesimulation.model;
+
+import java.util.Arrays;
+
+/**
+ * Stores all particles as primitive arrays, one slot per particle. Removing a particle moves the last particle into its
+ * slot, so the slots are always packed from 0 to size - 1.
+ */
+public class ParticleStore {
+    private static final int INITIAL_CAPACITY = 256;
+
+    private float[] x;
+    private float[] y;
+    private float[] tendencyX;
+    private float[] tendencyY;
+    private float[] velocityX;
+    private float[] velocityY;
+    private byte[] type;
+    private int size;
+
+    /**
+     * Initializes a new, empty ParticleStore.
+     */
+    public ParticleStore() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Initializes a new, empty ParticleStore.
+     *
+     * @param capacity the amount of particles that can be stored before the arrays have to grow
+     */
+    public ParticleStore(int capacity) {
+        capacity = Math.max(capacity, 1);
+        x = new float[capacity];
+        y = new float[capacity];
+        tendencyX = new float[capacity];
+        tendencyY = new float[capacity];
+        velocityX = new float[capacity];
+        velocityY = new float[capacity];
+        type = new byte[capacity];
+    }
+
+    /**
+     * Adds a particle without velocity.
+     *
+     * @param particleType the index of the particle type
+     * @param x            the x coordinate of the particle
+     * @param y            the y coordinate of the particle
+     * @return             the slot of the particle
+     */
+    public int add(int particleType, float x, float y) {
+        if (size == this.x.length)
+            grow(size * 2);
+
+        int slot = size++;
+        this.x[slot] = x;
+        this.y[slot] = y;
+        tendencyX[slot] = x;
+        tendencyY[slot] = y;
+        velocityX[slot] = 0;
+        velocityY[slot] = 0;
+        type[slot] = (byte) particleType;
+
+        return slot;
+    }
+
+    /**
+     * Removes the particle in a slot by moving the last particle into it.
+     *
+     * @param slot the slot of the particle to be removed
+     * @return     the former slot of the particle that got moved into the slot, or -1 if the last slot got removed
+     */
+    public int remove(int slot) {
+        int last = --size;
+
+        if (slot == last)
+            return -1;
+
+        x[slot] = x[last];
+        y[slot] = y[last];
+        tendencyX[slot] = tendencyX[last];
+        tendencyY[slot] = tendencyY[last];
+        velocityX[slot] = velocityX[last];
+        velocityY[slot] = velocityY[last];
+        type[slot] = type[last];
+
+        return last;
+    }
+
+    /**
+     * Sets the amount of particles and grows the arrays if needed. The slots keep their old content, the caller fills
+     * them in bulk.
+     *
+     * @param size the amount of particles
+     */
+    void resize(int size) {
+        if (size > x.length)
+            grow(size);
+
+        this.size = size;
+    }
+
+    /**
+     * Grows the arrays.
+     *
+     * @param capacity the new capacity
+     */
+    private void grow(int capacity) {
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        tendencyX = Arrays.copyOf(tendencyX, capacity);
+        tendencyY = Arrays.copyOf(tendencyY, capacity);
+        velocityX = Arrays.copyOf(velocityX, capacity);
+        velocityY = Arrays.copyOf(velocityY, capacity);
+        type = Arrays.copyOf(type, capacity);
+    }
+
+    /**
+     * Influences the velocity of a particle. Only called once per particle and tick, with the force of all rules.
+     *
+     * @param slot        the slot of the particle
+     * @param fx          influences velocity x, already multiplied with the rule strengths
+     * @param fy          influences velocity y, already multiplied with the rule strengths
+     * @param velocityCap the velocity cap of the particle type, -1 means no cap
+     */
+    public void influenceVelocity(int slot, float fx, float fy, float velocityCap) {
+        velocityX[slot] = capVelocity((velocityX[slot] + fx) / 2, velocityCap);
+        velocityY[slot] = capVelocity((velocityY[slot] + fy) / 2, velocityCap);
+
+        tendencyX[slot] += velocityX[slot];
+        tendencyY[slot] += velocityY[slot];
+    }
+
+    /**
+     * Caps the velocity.
+     *
+     * @param v           the velocity
+     * @param velocityCap the velocity cap, -1 means no cap
+     * @return            the capped velocity
+     */
+    static float capVelocity(float v, float velocityCap) {
+        if (velocityCap == -1)
+            return v;
+
+        if (v < -velocityCap) v = -velocityCap;
+        else if (v > velocityCap) v = velocityCap;
+
+        return v;
+    }
+
+    /**
+     * Sets the x and y coordinate of a particle.
+     *
+     * @param slot the slot of the particle
+     * @param x    new x coordinate of the particle
+     * @param y    new y coordinate of the particle
+     */
+    public void setYX(int slot, float x, float y) {
+        this.x[slot] = x;
+        this.y[slot] = y;
+    }
+
+    /**
+     * Reduces the velocity of a particle.
+     *
+     * @param slot the slot of the particle
+     * @param t    value < 1 to cause velocity to get reduced
+     */
+    public void friction(int slot, float t) {
+        velocityX[slot] *= t;
+        velocityY[slot] *= t;
+    }
+
+    /**
+     * Returns the amount of particles.
+     *
+     * @return the amount of particles
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the x coordinates. The array can be replaced when particles get added.
+     *
+     * @return the x coordinates
+     */
+    public float[] getX() {
+        return x;
+    }
+
+    /**
+     * Returns the y coordinates. The array can be replaced when particles get added.
+     *
+     * @return the y coordinates
+     */
+    public float[] getY() {
+        return y;
+    }
+
+    /**
+     * Returns the x tendencies. The array can be replaced when particles get added.
+     *
+     * @return the x tendencies
+     */
+    public float[] getTendencyX() {
+        return tendencyX;
+    }
+
+    /**
+     * Returns the y tendencies. The array can be replaced when particles get added.
+     *
+     * @return the y tendencies
+     */
+    public float[] getTendencyY() {
+        return tendencyY;
+    }
+
+    /**
+     * Returns the x velocities. The array can be replaced when particles get added.
+     *
+     * @return the x velocities
+     */
+    public float[] getVelocityX() {
+        return velocityX;
+    }
+
+    /**
+     * Returns the y velocities. The array can be replaced when particles get added.
+     *
+     * @return the y velocities
+     */
+    public float[] getVelocityY() {
+        return velocityY;
+    }
+
+    /**
+     * Returns the particle type indices. The array can be replaced when particles get added.
+     *
+     * @return the particle type indices
+     */
+    public byte[] getType() {
+        return type;
+    }
+}
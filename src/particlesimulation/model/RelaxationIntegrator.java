@@ -0,0 +1,63 @@
+package particlesimulation.model;
+
+/**
+ * The original scheme: the force is the velocity a particle wants to have, and every tick the velocity moves
+ * halfway to it. A longer step moves it further, as far as that many ticks would, and a step of 1 is bit for bit
+ * ParticleStore.influenceVelocity().
+ */
+public class RelaxationIntegrator implements Integrator {
+    /**
+     * The name of the integrator.
+     */
+    public static final String NAME = "relaxation";
+
+    private float dt;
+    private float blend;
+
+    /**
+     * Prepares a step.
+     *
+     * @param dt         the length of the step
+     * @param previousDt the length of the step before, 0 for the first step
+     */
+    @Override
+    public void prepare(float dt, float previousDt) {
+        this.dt = dt;
+        blend = 1 - (float) Math.pow(0.5, dt);
+    }
+
+    /**
+     * Applies the force to the velocity and moves the tendency by the velocity.
+     *
+     * @param particles   the particles
+     * @param slot        the slot of the particle
+     * @param fx          the force x
+     * @param fy          the force y
+     * @param velocityCap the velocity cap of the particle type, -1 means no cap
+     */
+    @Override
+    public void integrate(ParticleStore particles, int slot, float fx, float fy, float velocityCap) {
+        if (dt == 1) {
+            particles.influenceVelocity(slot, fx, fy, velocityCap);
+            return;
+        }
+
+        float[] velocityX = particles.getVelocityX();
+        float[] velocityY = particles.getVelocityY();
+        velocityX[slot] = ParticleStore.capVelocity(velocityX[slot] + (fx - velocityX[slot]) * blend, velocityCap);
+        velocityY[slot] = ParticleStore.capVelocity(velocityY[slot] + (fy - velocityY[slot]) * blend, velocityCap);
+
+        particles.getTendencyX()[slot] += velocityX[slot] * dt;
+        particles.getTendencyY()[slot] += velocityY[slot] * dt;
+    }
+
+    /**
+     * Returns the name, which Integrator.forName() turns back into an integrator.
+     *
+     * @return the name
+     */
+    @Override
+    public String getName() {
+        return NAME;
+    }
+}
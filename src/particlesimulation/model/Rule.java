@@ -1,61 +1,294 @@
 package particlesimulation.model;
 
-import java.util.ArrayList;
-
 /**
  * Defines a rule that specifies how a particle type reacts to another particle type.
+ * A rule can compute different slot ranges on different threads at the same time.
  */
 public class Rule implements Runnable {
-    private ArrayList<Particle> particlesA;
-    private ArrayList<Particle> particlesB;
-    private float g;
+    private ParticleStore particles;
+    private int typeA;
+    private int typeB;
     private int width;
     private int height;
+    private SpatialGrid grid;
+    private BarnesHutTree treeB;
+    private float openingAngle;
+    private ForceBuffers forces;
+    private NeighborSearch neighborSearch;
+    private ForceKernel kernel;
+    private InteractionTable table;
+    private Metrics metrics;
 
     /**
      * Initializes a new Rule.
      *
-     * @param particlesA particle type that is affected
-     * @param particlesB particle type that is the focus
-     * @param g          strength of the rule
-     * @param width      width of the world
-     * @param height     height of the world
+     * @param particles     the particles of the world
+     * @param particleTypeA particle type that is affected
+     * @param particleTypeB particle type that is the focus
+     * @param width         width of the world
+     * @param height        height of the world
+     * @param grid          grid that contains the particles, rebuilt by the World every tick
+     * @param treeB         quadtree that contains the particles of type B, rebuilt by the World every tick
+     * @param forces        buffers the force on particles of type A gets written to
      */
-    public Rule(ArrayList<Particle> particlesA, ArrayList<Particle> particlesB, float g, int width, int height) {
-        this.particlesA = particlesA;
-        this.particlesB = particlesB;
+    public Rule(ParticleStore particles, ParticleType particleTypeA, ParticleType particleTypeB, int width, int height,
+                SpatialGrid grid, BarnesHutTree treeB, ForceBuffers forces) {
+        this.particles = particles;
+        this.typeA = particleTypeA.getType() - 1;
+        this.typeB = particleTypeB.getType() - 1;
         this.width = width;
         this.height = height;
-        this.g = g;
+        this.grid = grid;
+        this.treeB = treeB;
+        this.forces = forces;
+        openingAngle = 0.5F;
+        neighborSearch = NeighborSearch.UNIFORM_GRID;
+        kernel = new ScalarForceKernel(width, height);
     }
 
     /**.
      * Iterate through particles and see if there are other particles in range.
-     * If that is the case, cause force on the particle.
+     * If that is the case, write the force on the particle to the buffer of type B.
+     * The strength and the ranges are read from the interaction table set before the tick.
+     * While the metrics are recorded, the call is timed and the evaluated pairs are counted.
+     *
+     * @param from the first slot
+     * @param to   the slot after the last slot
+     */
+    public void gravity(int from, int to) {
+        InteractionTable table = this.table;
+        Metrics metrics = this.metrics;
+        int pair = table.pair(typeA, typeB);
+        float[] force = new float[2];
+        long start = metrics == null ? 0 : metrics.start();
+        long[] pairs = start == 0 ? null : new long[2];
+
+        if (table.getStrength(pair) == 0) {
+            clearForces(from, to);
+        } else {
+            switch (neighborSearch) {
+                case UNIFORM_GRID -> gravityUniformGrid(from, to, table, pair, force, pairs);
+                case BARNES_HUT -> gravityBarnesHut(from, to, table, pair, force);
+                default -> gravityBruteForce(from, to, table, pair, force, pairs);
+            }
+        }
+
+        if (pairs != null) {
+            metrics.add(MetricCounter.PAIRS_EVALUATED, pairs[0]);
+            metrics.add(MetricCounter.PAIRS_IN_RANGE, pairs[1]);
+            metrics.stop(MetricTimer.RULE, start);
+        }
+    }
+
+    /**
+     * Writes no force for the particles of type A, used when the rule has no strength.
+     *
+     * @param from the first slot
+     * @param to   the slot after the last slot
+     */
+    private void clearForces(int from, int to) {
+        byte[] type = particles.getType();
+        float[] forceX = forces.getForceX(typeB);
+        float[] forceY = forces.getForceY(typeB);
+
+        for (int p1 = from; p1 < to; p1++)
+            if (type[p1] == typeA) {
+                forceX[p1] = 0;
+                forceY[p1] = 0;
+            }
+    }
+
+    /**
+     * Compares every particle of type A with every particle of type B. Used as reference.
+     *
+     * @param from  the first slot
+     * @param to    the slot after the last slot
+     * @param table the interaction table of the tick
+     * @param pair  the index of the type pair in the table
+     * @param force array the force is accumulated in
+     * @param pairs counts the evaluated pairs and the pairs in range, null to not count
      */
-    private void gravity() {
+    private void gravityBruteForce(int from, int to, InteractionTable table, int pair, float[] force,
+                                   long[] pairs) {
+        int size = particles.size();
+        float[] x = particles.getX();
+        float[] y = particles.getY();
+        byte[] type = particles.getType();
+        float[] forceX = forces.getForceX(typeB);
+        float[] forceY = forces.getForceY(typeB);
+        float g = table.getStrength(pair);
+        float rangeMin = table.getRangeMin(pair);
+        float rangeMax = table.getRangeMax(pair);
 
-        for(int p1 = 0; p1 < particlesA.size(); p1++) {
-            float forceX = 0;
-            float forceY = 0;
+        for (int p1 = from; p1 < to; p1++) {
+            if (type[p1] != typeA)
+                continue;
 
-            Particle particle1 = particlesA.get(p1);
+            force[0] = 0;
+            force[1] = 0;
 
-            for (int p2 = 0; p2 < particlesB.size(); p2++) {
-                Particle particle2 = particlesB.get(p2);
+            for (int p2 = 0; p2 < size; p2++)
+                if (type[p2] == typeB) {
+                    boolean inRange = accumulateForce(x[p1], y[p1], x[p2], y[p2], rangeMin, rangeMax, force);
 
-                float distanceX = computeDelta(particle1.getX(), particle2.getX(), width);
-                float distanceY = computeDelta(particle1.getY(), particle2.getY(), height);
+                    if (pairs != null) {
+                        pairs[0]++;
+                        pairs[1] += inRange ? 1 : 0;
+                    }
+                }
+
+            forceX[p1] = force[0] * g;
+            forceY[p1] = force[1] * g;
+        }
+    }
+
+    /**
+     * Only compares a particle of type A with the particles of type B in the same and the neighboring cells.
+     * Cells of a row whose particles lie next to each other in the grid are handed to the kernel as one run.
+     *
+     * @param from  the first slot
+     * @param to    the slot after the last slot
+     * @param table the interaction table of the tick
+     * @param pair  the index of the type pair in the table
+     * @param force array the force is accumulated in
+     * @param pairs counts the evaluated pairs and the pairs in range, null to not count
+     */
+    private void gravityUniformGrid(int from, int to, InteractionTable table, int pair, float[] force,
+                                    long[] pairs) {
+        int[] columns = new int[3];
+        int[] rows = new int[3];
+        float[] x = particles.getX();
+        float[] y = particles.getY();
+        byte[] type = particles.getType();
+        float[] sortedX = grid.getSortedX();
+        float[] sortedY = grid.getSortedY();
+        float[] forceX = forces.getForceX(typeB);
+        float[] forceY = forces.getForceY(typeB);
+        float g = table.getStrength(pair);
+        float rangeMinSquared = table.getRangeMinSquared(pair);
+        float rangeMaxSquared = table.getRangeMaxSquared(pair);
+
+        for (int p1 = from; p1 < to; p1++) {
+            if (type[p1] != typeA)
+                continue;
+
+            force[0] = 0;
+            force[1] = 0;
 
-                float distance = (float) (Math.sqrt(Math.pow(distanceX, 2) + Math.pow(distanceY, 2)));
+            int columnCount = grid.neighborColumns(grid.getCellX(x[p1]), columns);
+            int rowCount = grid.neighborRows(grid.getCellY(y[p1]), rows);
 
-                if (distance > particle2.getType().getRangeMin() && distance < particle2.getType().getRangeMax()) {
-                    forceX += (distanceX / distance);
-                    forceY += (distanceY / distance);
+            for (int r = 0; r < rowCount; r++) {
+                int runStart = 0;
+                int runEnd = 0;
+
+                for (int c = 0; c < columnCount; c++) {
+                    int start = grid.getCellStart(columns[c], rows[r], typeB);
+                    int end = grid.getCellEnd(columns[c], rows[r], typeB);
+
+                    if (start == runEnd) {
+                        runEnd = end;
+                    } else {
+                        accumulateRun(x[p1], y[p1], sortedX, sortedY, runStart, runEnd, rangeMinSquared,
+                                rangeMaxSquared, force, pairs);
+                        runStart = start;
+                        runEnd = end;
+                    }
                 }
+
+                accumulateRun(x[p1], y[p1], sortedX, sortedY, runStart, runEnd, rangeMinSquared, rangeMaxSquared,
+                        force, pairs);
             }
-            particle1.influenceVelocity(forceX, forceY, g);
+
+            forceX[p1] = force[0] * g;
+            forceY[p1] = force[1] * g;
+        }
+    }
+
+    /**
+     * Hands a run of particles to the kernel, the counting one if the pairs are counted.
+     *
+     * @param x               x coordinate of the particle that is affected
+     * @param y               y coordinate of the particle that is affected
+     * @param xs              x coordinates of the particles in the grid
+     * @param ys              y coordinates of the particles in the grid
+     * @param from            the first index of the run
+     * @param to              the index after the last index of the run
+     * @param rangeMinSquared the squared minimum range, exclusive
+     * @param rangeMaxSquared the squared maximum range, exclusive
+     * @param force           array the force is accumulated in
+     * @param pairs           counts the evaluated pairs and the pairs in range, null to not count
+     */
+    private void accumulateRun(float x, float y, float[] xs, float[] ys, int from, int to, float rangeMinSquared,
+                               float rangeMaxSquared, float[] force, long[] pairs) {
+        if (pairs == null) {
+            kernel.accumulate(x, y, xs, ys, from, to, rangeMinSquared, rangeMaxSquared, force);
+        } else {
+            pairs[0] += to - from;
+            pairs[1] += kernel.accumulateCounting(x, y, xs, ys, from, to, rangeMinSquared, rangeMaxSquared, force);
+        }
+    }
+
+    /**
+     * Approximates the force of far away particles of type B with the quadtree.
+     *
+     * @param from  the first slot
+     * @param to    the slot after the last slot
+     * @param table the interaction table of the tick
+     * @param pair  the index of the type pair in the table
+     * @param force array the force is accumulated in
+     */
+    private void gravityBarnesHut(int from, int to, InteractionTable table, int pair, float[] force) {
+        int[] stack = new int[BarnesHutTree.STACK_SIZE];
+        float[] x = particles.getX();
+        float[] y = particles.getY();
+        byte[] type = particles.getType();
+        float[] forceX = forces.getForceX(typeB);
+        float[] forceY = forces.getForceY(typeB);
+        float g = table.getStrength(pair);
+        float rangeMin = table.getRangeMin(pair);
+        float rangeMax = table.getRangeMax(pair);
+
+        for (int p1 = from; p1 < to; p1++) {
+            if (type[p1] != typeA)
+                continue;
+
+            force[0] = 0;
+            force[1] = 0;
+
+            treeB.force(x[p1], y[p1], rangeMin, rangeMax, openingAngle, x, y, stack, force);
+
+            forceX[p1] = force[0] * g;
+            forceY[p1] = force[1] * g;
+        }
+    }
+
+    /**
+     * Adds the force a particle of type B causes on a particle of type A to the force array, if it is in range.
+     *
+     * @param x1       x coordinate of the particle that is affected
+     * @param y1       y coordinate of the particle that is affected
+     * @param x2       x coordinate of the particle that causes the force
+     * @param y2       y coordinate of the particle that causes the force
+     * @param rangeMin the minimum range, exclusive
+     * @param rangeMax the maximum range, exclusive
+     * @param force    array the force is accumulated in
+     * @return          true if the particle is in range
+     */
+    private boolean accumulateForce(float x1, float y1, float x2, float y2, float rangeMin, float rangeMax,
+                                    float[] force) {
+        float distanceX = computeDelta(x1, x2, width);
+        float distanceY = computeDelta(y1, y2, height);
+
+        float distance = (float) (Math.sqrt(Math.pow(distanceX, 2) + Math.pow(distanceY, 2)));
+
+        if (distance > rangeMin && distance < rangeMax) {
+            force[0] += (distanceX / distance);
+            force[1] += (distanceY / distance);
+            return true;
         }
+
+        return false;
     }
 
     /**
@@ -84,19 +317,55 @@ public class Rule implements Runnable {
     }
 
     /**
-     * Sets the strength of the rule.
+     * Sets the interaction table the next gravity calls read the strength and the ranges from.
+     *
+     * @param table the interaction table
+     */
+    public void setInteractionTable(InteractionTable table) {
+        this.table = table;
+    }
+
+    /**
+     * Sets the opening angle used by the Barnes-Hut neighbor search. Smaller is more exact but slower.
+     *
+     * @param openingAngle the opening angle
+     */
+    public void setOpeningAngle(float openingAngle) {
+        this.openingAngle = openingAngle;
+    }
+
+    /**
+     * Sets the kernel that adds up the force of the particles in neighboring cells.
+     *
+     * @param kernel the kernel
+     */
+    public void setForceKernel(ForceKernel kernel) {
+        this.kernel = kernel;
+    }
+
+    /**
+     * Sets the metrics the gravity calls are recorded in.
+     *
+     * @param metrics the metrics, null to not record
+     */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Sets how particles in range are found.
      *
-     * @param value the new strength of the rule.
+     * @param neighborSearch the neighbor search
      */
-    public void setG(float value) {
-        g = value;
+    public void setNeighborSearch(NeighborSearch neighborSearch) {
+        this.neighborSearch = neighborSearch;
     }
 
     /**
-     * Starts the thread. Calls method to affect particle.
+     * Starts the thread. Calls method to affect all particles.
      */
     @Override
     public void run() {
-        gravity();
+        gravity(0, particles.size());
     }
 }
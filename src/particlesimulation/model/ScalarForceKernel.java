@@ -0,0 +1,93 @@
+package particlesimulation.model;
+
+/**
+ * Computes the force one particle after another, in float precision.
+ */
+class ScalarForceKernel implements ForceKernel {
+    private final int width;
+    private final int height;
+
+    /**
+     * Initializes a new ScalarForceKernel.
+     *
+     * @param width  the width of the world
+     * @param height the height of the world
+     */
+    ScalarForceKernel(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Adds the force of the particles from index from to index to to the force array.
+     *
+     * @param x               x coordinate of the position
+     * @param y               y coordinate of the position
+     * @param xs              x coordinates of the particles
+     * @param ys              y coordinates of the particles
+     * @param from            the first index
+     * @param to              the index after the last index
+     * @param rangeMinSquared the squared minimum range, exclusive
+     * @param rangeMaxSquared the squared maximum range, exclusive
+     * @param force           array the force gets added to
+     */
+    @Override
+    public void accumulate(float x, float y, float[] xs, float[] ys, int from, int to, float rangeMinSquared,
+                           float rangeMaxSquared, float[] force) {
+        accumulateCounting(x, y, xs, ys, from, to, rangeMinSquared, rangeMaxSquared, force);
+    }
+
+    /**
+     * Adds the force like accumulate() and counts the particles in range. Counting costs nothing next to the
+     * square root, so accumulate() uses it too.
+     *
+     * @param x               x coordinate of the position
+     * @param y               y coordinate of the position
+     * @param xs              x coordinates of the particles
+     * @param ys              y coordinates of the particles
+     * @param from            the first index
+     * @param to              the index after the last index
+     * @param rangeMinSquared the squared minimum range, exclusive
+     * @param rangeMaxSquared the squared maximum range, exclusive
+     * @param force           array the force gets added to
+     * @return                the amount of particles in range
+     */
+    @Override
+    public int accumulateCounting(float x, float y, float[] xs, float[] ys, int from, int to, float rangeMinSquared,
+                                  float rangeMaxSquared, float[] force) {
+        float halfWidth = width / 2F;
+        float halfHeight = height / 2F;
+        float sumX = 0;
+        float sumY = 0;
+        int inRange = 0;
+
+        for (int i = from; i < to; i++) {
+            float dx = xs[i] - x;
+            float dy = ys[i] - y;
+
+            // shortest way around the world, like Rule.computeDelta
+            if (dx > halfWidth)
+                dx -= width;
+            else if (dx <= -halfWidth)
+                dx += width;
+            if (dy > halfHeight)
+                dy -= height;
+            else if (dy <= -halfHeight)
+                dy += height;
+
+            float distanceSquared = dx * dx + dy * dy;
+
+            if (distanceSquared > rangeMinSquared && distanceSquared < rangeMaxSquared) {
+                float distance = (float) Math.sqrt(distanceSquared);
+                sumX += dx / distance;
+                sumY += dy / distance;
+                inRange++;
+            }
+        }
+
+        force[0] += sumX;
+        force[1] += sumY;
+
+        return inRange;
+    }
+}
@@ -0,0 +1,504 @@
+package particlesimulation.model;
+
+import java.util.Arrays;
+
+/**
+ * Holds the settings a World gets created with. The rule strengths, ranges and velocity caps use the same values
+ * as the spinners of the View.
+ */
+public class SimulationConfig {
+    private int width;
+    private int height;
+    private int types;
+    private int[] particles;
+    private int[] rules;
+    private int[] ranges;
+    private int[] velocityCaps;
+    private long seed;
+    private int workers;
+    private NeighborSearch neighborSearch;
+    private float openingAngle;
+    private float collisionRadius;
+    private String integrator;
+    private float friction;
+    private float timeStep;
+    private boolean adaptive;
+    private float maxTimeStep;
+    private float maxStep;
+    private boolean vectorKernel;
+    private boolean deterministic;
+
+    /**
+     * Initializes a new SimulationConfig with the same defaults as the window.
+     */
+    public SimulationConfig() {
+        width = 1200;
+        height = 900;
+        setTypes(World.DEFAULT_TYPES);
+        seed = System.nanoTime();
+        workers = Runtime.getRuntime().availableProcessors();
+        neighborSearch = NeighborSearch.UNIFORM_GRID;
+        openingAngle = 0.5F;
+        integrator = RelaxationIntegrator.NAME;
+        friction = 0.9F;
+        timeStep = 1;
+        maxTimeStep = 4;
+        maxStep = 5;
+        vectorKernel = true;
+    }
+
+    /**
+     * Creates a World with these settings and places the particles.
+     *
+     * @return the created World
+     */
+    public World createWorld() {
+        World world = new World(width, height, workers, types, collisionRadius);
+        world.setSeed(seed);
+        world.setNeighborSearch(neighborSearch);
+        world.setOpeningAngle(openingAngle);
+        world.setVectorKernel(vectorKernel);
+        world.setDeterministic(deterministic);
+        applyTickSettings(world);
+
+        world.setRules(rules);
+        world.setRanges(ranges);
+        world.setVelocityCaps(velocityCaps);
+
+        for (int i = 0; i < particles.length; i++)
+            world.addParticles(i, particles[i]);
+
+        return world;
+    }
+
+    /**
+     * Applies the settings that choose how a tick advances the particles: the integrator, the friction and the time
+     * step, adaptive or not. Used by createWorld() and for worlds loaded from a snapshot, which doesn't store them.
+     *
+     * @param world the world
+     */
+    public void applyTickSettings(World world) {
+        world.setIntegrator(Integrator.forName(integrator));
+        world.setFriction(friction);
+        world.setTimeStep(timeStep);
+        world.setStepController(adaptive ? new StepController(timeStep, maxTimeStep, maxStep) : null);
+    }
+
+    /**
+     * Returns a copy of these settings that can be changed on its own.
+     *
+     * @return the copy
+     */
+    public SimulationConfig copy() {
+        SimulationConfig copy = new SimulationConfig();
+        copy.width = width;
+        copy.height = height;
+        copy.types = types;
+        copy.particles = particles.clone();
+        copy.rules = rules.clone();
+        copy.ranges = ranges.clone();
+        copy.velocityCaps = velocityCaps.clone();
+        copy.seed = seed;
+        copy.workers = workers;
+        copy.neighborSearch = neighborSearch;
+        copy.openingAngle = openingAngle;
+        copy.collisionRadius = collisionRadius;
+        copy.integrator = integrator;
+        copy.friction = friction;
+        copy.timeStep = timeStep;
+        copy.adaptive = adaptive;
+        copy.maxTimeStep = maxTimeStep;
+        copy.maxStep = maxStep;
+        copy.vectorKernel = vectorKernel;
+        copy.deterministic = deterministic;
+
+        return copy;
+    }
+
+    /**
+     * Returns the width of the world.
+     *
+     * @return the width of the world
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Sets the width of the world.
+     *
+     * @param width the width of the world
+     */
+    public void setWidth(int width) {
+        this.width = width;
+    }
+
+    /**
+     * Returns the height of the world.
+     *
+     * @return the height of the world
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Sets the height of the world.
+     *
+     * @param height the height of the world
+     */
+    public void setHeight(int height) {
+        this.height = height;
+    }
+
+    /**
+     * Returns the amount of particle types.
+     *
+     * @return the amount of particle types
+     */
+    public int getTypes() {
+        return types;
+    }
+
+    /**
+     * Sets the amount of particle types. The particles, rules, ranges and velocity caps are reset to the defaults
+     * for the new amount of types.
+     *
+     * @param types the amount of particle types, from 1 to World.MAX_TYPES
+     */
+    public void setTypes(int types) {
+        if (types < 1 || types > World.MAX_TYPES)
+            throw new IllegalArgumentException("types must be between 1 and " + World.MAX_TYPES + ", got " + types);
+
+        this.types = types;
+        particles = new int[types];
+        rules = new int[types * types];
+        ranges = new int[types];
+        velocityCaps = new int[types];
+        Arrays.fill(particles, 500);
+        Arrays.fill(ranges, 90);
+        Arrays.fill(velocityCaps, 5);
+    }
+
+    /**
+     * Returns the amount of particles per type.
+     *
+     * @return the amount of particles per type
+     */
+    public int[] getParticles() {
+        return particles;
+    }
+
+    /**
+     * Sets the amount of particles per type.
+     *
+     * @param particles the amount of particles per type
+     */
+    public void setParticles(int[] particles) {
+        this.particles = checkLength(particles, types, "particles");
+    }
+
+    /**
+     * Returns the rule strengths, row by row.
+     *
+     * @return the rule strengths
+     */
+    public int[] getRules() {
+        return rules;
+    }
+
+    /**
+     * Sets the rule strengths, row by row. Row i holds how type i reacts to every type.
+     *
+     * @param rules the rule strengths
+     */
+    public void setRules(int[] rules) {
+        this.rules = checkLength(rules, types * types, "rules");
+    }
+
+    /**
+     * Returns the maximum range per type.
+     *
+     * @return the maximum range per type
+     */
+    public int[] getRanges() {
+        return ranges;
+    }
+
+    /**
+     * Sets the maximum range per type.
+     *
+     * @param ranges the maximum range per type
+     */
+    public void setRanges(int[] ranges) {
+        this.ranges = checkLength(ranges, types, "ranges");
+    }
+
+    /**
+     * Returns the velocity cap per type.
+     *
+     * @return the velocity cap per type
+     */
+    public int[] getVelocityCaps() {
+        return velocityCaps;
+    }
+
+    /**
+     * Sets the velocity cap per type, -1 means no cap.
+     *
+     * @param velocityCaps the velocity cap per type
+     */
+    public void setVelocityCaps(int[] velocityCaps) {
+        this.velocityCaps = checkLength(velocityCaps, types, "velocity caps");
+    }
+
+    /**
+     * Returns the seed used to place the particles.
+     *
+     * @return the seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Sets the seed used to place the particles.
+     *
+     * @param seed the seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Returns the amount of threads used to compute a tick.
+     *
+     * @return the amount of threads
+     */
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Sets the amount of threads used to compute a tick.
+     *
+     * @param workers the amount of threads
+     */
+    public void setWorkers(int workers) {
+        this.workers = workers;
+    }
+
+    /**
+     * Returns how the rules find particles in range.
+     *
+     * @return the neighbor search
+     */
+    public NeighborSearch getNeighborSearch() {
+        return neighborSearch;
+    }
+
+    /**
+     * Sets how the rules find particles in range.
+     *
+     * @param neighborSearch the neighbor search
+     */
+    public void setNeighborSearch(NeighborSearch neighborSearch) {
+        this.neighborSearch = neighborSearch;
+    }
+
+    /**
+     * Returns the opening angle of the Barnes-Hut neighbor search.
+     *
+     * @return the opening angle
+     */
+    public float getOpeningAngle() {
+        return openingAngle;
+    }
+
+    /**
+     * Sets the opening angle of the Barnes-Hut neighbor search.
+     *
+     * @param openingAngle the opening angle
+     */
+    public void setOpeningAngle(float openingAngle) {
+        this.openingAngle = openingAngle;
+    }
+
+    /**
+     * Returns the collision radius of a continuous world.
+     *
+     * @return the collision radius, 0 if every particle has a pixel of its own
+     */
+    public float getCollisionRadius() {
+        return collisionRadius;
+    }
+
+    /**
+     * Sets the collision radius. A radius above 0 makes the world continuous, see World.
+     *
+     * @param collisionRadius the collision radius, 0 for one particle per pixel
+     */
+    public void setCollisionRadius(float collisionRadius) {
+        this.collisionRadius = collisionRadius;
+    }
+
+    /**
+     * Returns the name of the integrator.
+     *
+     * @return relaxation, euler or verlet
+     */
+    public String getIntegrator() {
+        return integrator;
+    }
+
+    /**
+     * Sets the integrator by name, see Integrator.forName().
+     *
+     * @param integrator relaxation, euler or verlet
+     */
+    public void setIntegrator(String integrator) {
+        Integrator.forName(integrator);    // checks the name
+        this.integrator = integrator;
+    }
+
+    /**
+     * Returns the friction.
+     *
+     * @return the friction
+     */
+    public float getFriction() {
+        return friction;
+    }
+
+    /**
+     * Sets the friction, the factor the velocity is multiplied with after a step of length 1.
+     *
+     * @param friction the friction, from 0 to 1
+     */
+    public void setFriction(float friction) {
+        this.friction = friction;
+    }
+
+    /**
+     * Returns the length of a step, or of the first step with adaptive steps.
+     *
+     * @return the length of a step
+     */
+    public float getTimeStep() {
+        return timeStep;
+    }
+
+    /**
+     * Sets the length of a step, or of the first step with adaptive steps.
+     *
+     * @param timeStep the length of a step in ticks of the original scheme
+     */
+    public void setTimeStep(float timeStep) {
+        this.timeStep = timeStep;
+    }
+
+    /**
+     * Returns if a StepController chooses the length of the steps.
+     *
+     * @return true for adaptive steps
+     */
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    /**
+     * Turns adaptive steps on or off.
+     *
+     * @param adaptive true to let a StepController choose the length of the steps
+     */
+    public void setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+    }
+
+    /**
+     * Returns the longest adaptive step.
+     *
+     * @return the longest step
+     */
+    public float getMaxTimeStep() {
+        return maxTimeStep;
+    }
+
+    /**
+     * Sets the longest adaptive step.
+     *
+     * @param maxTimeStep the longest step
+     */
+    public void setMaxTimeStep(float maxTimeStep) {
+        this.maxTimeStep = maxTimeStep;
+    }
+
+    /**
+     * Returns the furthest a particle may move in one adaptive step.
+     *
+     * @return the furthest move, in pixels
+     */
+    public float getMaxStep() {
+        return maxStep;
+    }
+
+    /**
+     * Sets the furthest a particle may move in one adaptive step.
+     *
+     * @param maxStep the furthest move, in pixels
+     */
+    public void setMaxStep(float maxStep) {
+        this.maxStep = maxStep;
+    }
+
+    /**
+     * Returns if the SIMD force kernel is used when it is available.
+     *
+     * @return true if the SIMD kernel is used when available
+     */
+    public boolean isVectorKernel() {
+        return vectorKernel;
+    }
+
+    /**
+     * Sets if the SIMD force kernel is used when it is available.
+     *
+     * @param vectorKernel true to use the SIMD kernel when available
+     */
+    public void setVectorKernel(boolean vectorKernel) {
+        this.vectorKernel = vectorKernel;
+    }
+
+    /**
+     * Returns if the World runs in deterministic mode.
+     *
+     * @return true if the deterministic mode is on
+     */
+    public boolean isDeterministic() {
+        return deterministic;
+    }
+
+    /**
+     * Sets if the World runs in deterministic mode, see World.setDeterministic().
+     *
+     * @param deterministic true to turn on the deterministic mode
+     */
+    public void setDeterministic(boolean deterministic) {
+        this.deterministic = deterministic;
+    }
+
+    /**
+     * Checks that an array has the expected length.
+     *
+     * @param values the array
+     * @param length the expected length
+     * @param name   name of the setting, used in the error message
+     * @return       the array
+     */
+    private static int[] checkLength(int[] values, int length, String name) {
+        if (values.length != length)
+            throw new IllegalArgumentException("expected " + length + " " + name + ", got " + values.length);
+
+        return values;
+    }
+}
@@ -0,0 +1,132 @@
+package particlesimulation.model;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Ticks a World on its own thread, independent of how often the View repaints. After every frame the world gets
+ * exported into a triple buffer, the View takes the latest frame from it whenever it repaints. A frame that gets
+ * replaced before the View took it counts as dropped in the metrics of the world.
+ */
+public class SimulationLoop implements Runnable {
+    private final World world;
+    private final Metrics metrics;
+    private final TripleBuffer<Frame> frames;
+    private final Runnable frameListener;
+    private volatile int ticksPerSecond;
+    private volatile int ticksPerFrame;
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * Initializes a new SimulationLoop that runs as fast as possible with one tick per frame.
+     *
+     * @param world         the world
+     * @param width         the width of the world
+     * @param height        the height of the world
+     * @param frameListener gets called on the simulation thread after every published frame
+     */
+    public SimulationLoop(World world, int width, int height, Runnable frameListener) {
+        this.world = world;
+        metrics = world.getMetrics();
+        this.frameListener = frameListener;
+        frames = new TripleBuffer<>(new Frame(width, height), new Frame(width, height), new Frame(width, height));
+        ticksPerSecond = 0;
+        ticksPerFrame = 1;
+    }
+
+    /**
+     * Starts the simulation thread.
+     */
+    public synchronized void start() {
+        if (running)
+            return;
+
+        running = true;
+        thread = new Thread(this, "simulation");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the simulation thread and waits until the current frame is finished.
+     */
+    public synchronized void stop() {
+        if (!running)
+            return;
+
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Ticks the world and publishes a frame after every ticksPerFrame ticks. With a tick rate, waits until the
+     * next frame is due.
+     */
+    @Override
+    public void run() {
+        long deadline = System.nanoTime();
+
+        while (running) {
+            int ticks = ticksPerFrame;
+            for (int i = 0; i < ticks; i++)
+                world.tick();
+
+            world.exportFrame(frames.getBackBuffer());
+            frames.getBackBuffer().setPublishedNanos(metrics.start());
+            if (frames.publish())
+                metrics.add(MetricCounter.FRAMES_DROPPED, 1);
+            frameListener.run();
+
+            int rate = ticksPerSecond;
+            if (rate <= 0)
+                continue;
+
+            deadline += ticks * 1_000_000_000L / rate;
+            long wait = deadline - System.nanoTime();
+
+            if (wait > 0)
+                LockSupport.parkNanos(wait);
+            else
+                deadline = System.nanoTime();    // too slow for the rate, don't try to catch up
+        }
+    }
+
+    /**
+     * Takes the latest frame, if there is a new one. Only called by the thread that draws the frames, the frame
+     * stays valid until that thread takes the next one.
+     *
+     * @return two-dimensional int array that represents the world, or null if there is no new frame
+     */
+    public int[][] takeFrame() {
+        Frame frame = frames.takeLatest();
+        if (frame == null)
+            return null;
+
+        metrics.stop(MetricTimer.HAND_OFF, frame.getPublishedNanos());
+        return frame.getCells();
+    }
+
+    /**
+     * Sets how many ticks are computed per second.
+     *
+     * @param ticksPerSecond the ticks per second, 0 means as fast as possible
+     */
+    public void setTicksPerSecond(int ticksPerSecond) {
+        this.ticksPerSecond = Math.max(0, ticksPerSecond);
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Sets how many ticks are computed before a frame gets published, used to fast-forward.
+     *
+     * @param ticksPerFrame the ticks per frame
+     */
+    public void setTicksPerFrame(int ticksPerFrame) {
+        this.ticksPerFrame = Math.max(1, ticksPerFrame);
+    }
+}
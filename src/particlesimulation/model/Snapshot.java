@@ -0,0 +1,323 @@
+package particlesimulation.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary snapshot of the state of a World, written and read through a memory-mapped file.
+ * The file starts with a fixed header, followed by the rule strengths, the settings of every particle type and the
+ * particles as one block per array, so every array is copied in one bulk operation. The checksum covers everything
+ * after the header.
+ *
+ * <pre>
+ * header   int magic, int version, int width, int height, int types, int particles, long checksum,
+ *          float collisionRadius, 0 for one particle per pixel
+ * rules    float strength[types * types], row i holds how type i reacts to every type
+ * types    per type: float velocityCap, int rangeMin, int rangeMax
+ * data     byte type[particles], padded to 4 bytes, then float x, y, tendencyX, tendencyY, velocityX, velocityY,
+ *          each [particles]
+ * </pre>
+ */
+final class Snapshot {
+    private static final int MAGIC = 0x50534E50;   // "PSNP"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 36;
+    private static final int CHECKSUM_POSITION = 24;
+    private static final int RADIUS_POSITION = 32;
+
+    private final MappedByteBuffer buffer;
+    private final int width;
+    private final int height;
+    private final int types;
+    private final int particles;
+    private final float collisionRadius;
+
+    /**
+     * Initializes a new Snapshot from a mapped file whose header and checksum were already checked.
+     *
+     * @param buffer the mapped file
+     */
+    private Snapshot(MappedByteBuffer buffer) {
+        this.buffer = buffer;
+        width = buffer.getInt(8);
+        height = buffer.getInt(12);
+        types = buffer.getInt(16);
+        particles = buffer.getInt(20);
+        collisionRadius = buffer.getFloat(RADIUS_POSITION);
+    }
+
+    /**
+     * Writes a snapshot. An existing file gets replaced.
+     *
+     * @param path            the file
+     * @param width           the width of the world
+     * @param height          the height of the world
+     * @param collisionRadius the collision radius of the world, 0 for one particle per pixel
+     * @param strengths       the strength of every rule
+     * @param particleTypes   the particle types
+     * @param store           the particles
+     * @throws IOException    if the file can't be written or the snapshot is too big
+     */
+    static void write(Path path, int width, int height, float collisionRadius, float[] strengths,
+                      ParticleType[] particleTypes, ParticleStore store) throws IOException {
+        int types = particleTypes.length;
+        int particles = store.size();
+        long size = fileSize(types, particles);
+        if (size > Integer.MAX_VALUE)
+            throw new IOException("snapshot of " + particles + " particles is too big");
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height).putInt(types).putInt(particles);
+            buffer.putLong(0);    // checksum, written at the end
+            buffer.putFloat(collisionRadius);
+
+            for (int i = 0; i < types * types; i++)
+                buffer.putFloat(strengths[i]);
+
+            for (var type : particleTypes)
+                buffer.putFloat(type.getVelocityCap()).putInt(type.getRangeMin()).putInt(type.getRangeMax());
+
+            buffer.put(store.getType(), 0, particles);
+            buffer.position(align(buffer.position()));
+
+            putFloats(buffer, store.getX(), particles);
+            putFloats(buffer, store.getY(), particles);
+            putFloats(buffer, store.getTendencyX(), particles);
+            putFloats(buffer, store.getTendencyY(), particles);
+            putFloats(buffer, store.getVelocityX(), particles);
+            putFloats(buffer, store.getVelocityY(), particles);
+
+            buffer.putLong(CHECKSUM_POSITION, checksum(buffer));
+        }
+    }
+
+    /**
+     * Maps a snapshot and checks its header, size and checksum.
+     *
+     * @param path         the file
+     * @return             the snapshot
+     * @throws IOException if the file can't be read or is not a valid snapshot
+     */
+    static Snapshot open(Path path) throws IOException {
+        MappedByteBuffer buffer;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE)
+                throw new IOException(path + " is not a snapshot");
+
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        if (buffer.getInt(0) != MAGIC)
+            throw new IOException(path + " is not a snapshot");
+        if (buffer.getInt(4) != VERSION)
+            throw new IOException("unsupported snapshot version " + buffer.getInt(4) + ", expected " + VERSION);
+
+        int width = buffer.getInt(8);
+        int height = buffer.getInt(12);
+        int types = buffer.getInt(16);
+        int particles = buffer.getInt(20);
+        float collisionRadius = buffer.getFloat(RADIUS_POSITION);
+        if (width <= 0 || height <= 0 || types <= 0 || particles < 0
+                || fileSize(types, particles) != buffer.capacity())
+            throw new IOException(path + " is truncated or corrupt");
+        if (collisionRadius != 0 && !(collisionRadius > 0 && collisionRadius * 3 <= Math.min(width, height)))
+            throw new IOException(path + " has an invalid collision radius " + collisionRadius);
+
+        if (buffer.getLong(CHECKSUM_POSITION) != checksum(buffer))
+            throw new IOException("checksum of " + path + " doesn't match");
+
+        Snapshot snapshot = new Snapshot(buffer);
+        if (!snapshot.hasValidParticles())
+            throw new IOException(path + (collisionRadius > 0 ? " has particles outside of the world"
+                    : " has particles outside of the world or on the same pixel"));
+
+        return snapshot;
+    }
+
+    /**
+     * Checks that every particle has a known type, lies inside the world and, without a collision radius, has a pixel
+     * of its own, so restoring the snapshot can't fail halfway. Particles of a continuous world may share a pixel.
+     *
+     * @return true if the particles are valid, false otherwise
+     */
+    private boolean hasValidParticles() {
+        int typePosition = HEADER_SIZE + 4 * types * types + 12 * types;
+        int xPosition = typePosition + align(particles);
+        int yPosition = xPosition + 4 * particles;
+        BitSet occupied = collisionRadius > 0 ? null : new BitSet(width * height);
+
+        for (int i = 0; i < particles; i++) {
+            float x = buffer.getFloat(xPosition + 4 * i);
+            float y = buffer.getFloat(yPosition + 4 * i);
+            int type = buffer.get(typePosition + i);
+
+            if (type < 0 || type >= types || !(x >= 0 && x < width && y >= 0 && y < height))
+                return false;
+            if (occupied == null)
+                continue;
+
+            int cell = (int) y * width + (int) x;
+            if (occupied.get(cell))
+                return false;
+            occupied.set(cell);
+        }
+
+        return true;
+    }
+
+    /**
+     * Calculates the size of a snapshot file.
+     *
+     * @param types     the amount of particle types
+     * @param particles the amount of particles
+     * @return          the size in bytes
+     */
+    private static long fileSize(int types, int particles) {
+        return HEADER_SIZE + 4L * types * types + 12L * types + align(particles) + 6 * 4L * particles;
+    }
+
+    /**
+     * Rounds a size up to a multiple of 4.
+     *
+     * @param size the size
+     * @return     the rounded size
+     */
+    private static int align(int size) {
+        return (size + 3) & ~3;
+    }
+
+    /**
+     * Computes the checksum of everything after the header.
+     *
+     * @param buffer the mapped file
+     * @return       the checksum
+     */
+    private static long checksum(ByteBuffer buffer) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.duplicate().position(HEADER_SIZE).limit(buffer.capacity()));
+
+        return crc.getValue();
+    }
+
+    /**
+     * Writes the first elements of an array in one bulk operation.
+     *
+     * @param buffer the buffer
+     * @param values the array
+     * @param length the amount of elements
+     */
+    private static void putFloats(ByteBuffer buffer, float[] values, int length) {
+        buffer.asFloatBuffer().put(values, 0, length);
+        buffer.position(buffer.position() + 4 * length);
+    }
+
+    /**
+     * Reads elements into an array in one bulk operation.
+     *
+     * @param buffer   the buffer
+     * @param position the position of the first element
+     * @param values   the array
+     * @param length   the amount of elements
+     * @return         the position after the last element
+     */
+    private static int getFloats(ByteBuffer buffer, int position, float[] values, int length) {
+        buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN).position(position).asFloatBuffer().get(values, 0, length);
+
+        return position + 4 * length;
+    }
+
+    /**
+     * Returns the width of the world.
+     *
+     * @return the width of the world
+     */
+    int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the world.
+     *
+     * @return the height of the world
+     */
+    int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the collision radius of the world.
+     *
+     * @return the collision radius, 0 for one particle per pixel
+     */
+    float getCollisionRadius() {
+        return collisionRadius;
+    }
+
+    /**
+     * Returns the amount of particle types.
+     *
+     * @return the amount of particle types
+     */
+    int getTypes() {
+        return types;
+    }
+
+    /**
+     * Reads the rule strengths.
+     *
+     * @param strengths array with a length of types * types the strengths are written to
+     */
+    void readStrengths(float[] strengths) {
+        for (int i = 0; i < types * types; i++)
+            strengths[i] = buffer.getFloat(HEADER_SIZE + 4 * i);
+    }
+
+    /**
+     * Reads the settings of the particle types.
+     *
+     * @param particleTypes the particle types the settings are written to
+     */
+    void readParticleTypes(ParticleType[] particleTypes) {
+        int position = HEADER_SIZE + 4 * types * types;
+
+        for (var type : particleTypes) {
+            type.setVelocityCap(buffer.getFloat(position));
+            type.setRangeMin(buffer.getInt(position + 4));
+            type.setRangeMax(buffer.getInt(position + 8));
+            position += 12;
+        }
+    }
+
+    /**
+     * Replaces the particles of a store with the particles of the snapshot.
+     *
+     * @param store the store
+     */
+    void readParticles(ParticleStore store) {
+        int position = HEADER_SIZE + 4 * types * types + 12 * types;
+
+        store.resize(particles);
+        buffer.duplicate().position(position).get(store.getType(), 0, particles);
+        position += align(particles);
+
+        position = getFloats(buffer, position, store.getX(), particles);
+        position = getFloats(buffer, position, store.getY(), particles);
+        position = getFloats(buffer, position, store.getTendencyX(), particles);
+        position = getFloats(buffer, position, store.getTendencyY(), particles);
+        position = getFloats(buffer, position, store.getVelocityX(), particles);
+        getFloats(buffer, position, store.getVelocityY(), particles);
+    }
+}
@@ -0,0 +1,286 @@
+package particlesimulation.model;
+
+import java.util.Arrays;
+
+/**
+ * Toroidal uniform grid that sorts particles into cells. A cell is at least as big as the range, so every particle in
+ * range of a position is inside the cell of that position or one of its eight neighbor cells.
+ * The particles are sorted by type first, then by row and column, so the particles of one type in neighboring columns
+ * of a row lie next to each other. Their coordinates are copied in the same order, so a rule can read them as one
+ * contiguous run. Rebuilt with rebuildAllTypes() the types are not separated, every cell holds the particles of all
+ * types and getSortedType() tells them apart.
+ */
+public class SpatialGrid {
+    private final int width;
+    private final int height;
+    private final int types;
+    private int cellsX;
+    private int cellsY;
+    private float cellWidth;
+    private float cellHeight;
+    private int[] cellStart;
+    private int[] cellCount;
+    private int[] key;
+    private int[] items;
+    private float[] sortedX;
+    private float[] sortedY;
+    private byte[] sortedType;
+
+    /**
+     * Initializes a new SpatialGrid.
+     *
+     * @param width  the width of the world
+     * @param height the height of the world
+     * @param types  the amount of particle types
+     */
+    public SpatialGrid(int width, int height, int types) {
+        this.width = width;
+        this.height = height;
+        this.types = types;
+        cellStart = new int[1];
+        cellCount = new int[0];
+        key = new int[0];
+        items = new int[0];
+        sortedX = new float[0];
+        sortedY = new float[0];
+        sortedType = new byte[0];
+    }
+
+    /**
+     * Sorts the particles into cells. The cell size is chosen so a cell is at least as big as the range.
+     *
+     * @param particles the particles
+     * @param range     the maximum range in which particles can affect each other
+     */
+    public void rebuild(ParticleStore particles, int range) {
+        rebuild(particles, range, types);
+    }
+
+    /**
+     * Sorts the particles into cells without separating the types, used when all rules of a particle are computed in
+     * one pass. The cell size is chosen so a cell is at least as big as the range.
+     *
+     * @param particles the particles
+     * @param range     the maximum range in which particles can affect each other
+     */
+    public void rebuildAllTypes(ParticleStore particles, int range) {
+        rebuild(particles, range, 1);
+    }
+
+    /**
+     * Sorts the particles into cells.
+     *
+     * @param particles   the particles
+     * @param range       the maximum range in which particles can affect each other
+     * @param bucketTypes the amount of types that get buckets of their own, 1 puts all types in the same bucket
+     */
+    private void rebuild(ParticleStore particles, int range, int bucketTypes) {
+        cellsX = cellsFor(width, range);
+        cellsY = cellsFor(height, range);
+        cellWidth = (float) width / cellsX;
+        cellHeight = (float) height / cellsY;
+
+        int buckets = cellsX * cellsY * bucketTypes;
+        if (cellCount.length != buckets) {
+            cellCount = new int[buckets];
+            cellStart = new int[buckets + 1];
+        } else {
+            Arrays.fill(cellCount, 0);
+        }
+
+        int size = particles.size();
+        if (items.length < size) {
+            key = new int[particles.getX().length];
+            items = new int[particles.getX().length];
+            sortedX = new float[particles.getX().length];
+            sortedY = new float[particles.getX().length];
+            sortedType = new byte[particles.getX().length];
+        }
+
+        float[] x = particles.getX();
+        float[] y = particles.getY();
+        byte[] type = particles.getType();
+
+        // count particles per cell and type
+        for (int i = 0; i < size; i++) {
+            key[i] = bucket(getCellX(x[i]), getCellY(y[i]), bucketTypes == 1 ? 0 : type[i]);
+            cellCount[key[i]]++;
+        }
+
+        // prefix sum, cellCount is reused as write position
+        cellStart[0] = 0;
+        for (int b = 0; b < buckets; b++) {
+            cellStart[b + 1] = cellStart[b] + cellCount[b];
+            cellCount[b] = cellStart[b];
+        }
+
+        for (int i = 0; i < size; i++) {
+            int index = cellCount[key[i]]++;
+            items[index] = i;
+            sortedX[index] = x[i];
+            sortedY[index] = y[i];
+            sortedType[index] = type[i];
+        }
+    }
+
+    /**
+     * Returns the bucket of a type in a cell.
+     *
+     * @param cellX the column
+     * @param cellY the row
+     * @param type  the index of the particle type
+     * @return      the bucket
+     */
+    private int bucket(int cellX, int cellY, int type) {
+        return (type * cellsY + cellY) * cellsX + cellX;
+    }
+
+    /**
+     * Calculates how many cells fit in one dimension, so a cell is not smaller than the range.
+     *
+     * @param size  the size of the world in that dimension
+     * @param range the range
+     * @return      the amount of cells
+     */
+    private static int cellsFor(int size, int range) {
+        if (range <= 0)
+            return size;
+
+        return Math.max(1, size / range);
+    }
+
+    /**
+     * Returns the column of a x coordinate.
+     *
+     * @param x the x coordinate
+     * @return  the column
+     */
+    public int getCellX(float x) {
+        return Math.min((int) (x / cellWidth), cellsX - 1);
+    }
+
+    /**
+     * Returns the row of a y coordinate.
+     *
+     * @param y the y coordinate
+     * @return  the row
+     */
+    public int getCellY(float y) {
+        return Math.min((int) (y / cellHeight), cellsY - 1);
+    }
+
+    /**
+     * Writes the columns that neighbor a column, including itself, wrapped around the world. Every column is only
+     * written once, even if the grid has less than three columns.
+     *
+     * @param cellX the column
+     * @param out   array with a length of at least three
+     * @return      the amount of columns written
+     */
+    public int neighborColumns(int cellX, int[] out) {
+        return neighbors(cellX, cellsX, out);
+    }
+
+    /**
+     * Writes the rows that neighbor a row, including itself, wrapped around the world. Every row is only written once,
+     * even if the grid has less than three rows.
+     *
+     * @param cellY the row
+     * @param out   array with a length of at least three
+     * @return      the amount of rows written
+     */
+    public int neighborRows(int cellY, int[] out) {
+        return neighbors(cellY, cellsY, out);
+    }
+
+    /**
+     * Writes the neighbors of a cell coordinate in one dimension.
+     *
+     * @param cell  the cell coordinate
+     * @param cells the amount of cells in that dimension
+     * @param out   the array the neighbors are written to
+     * @return      the amount of neighbors written
+     */
+    private static int neighbors(int cell, int cells, int[] out) {
+        if (cells < 3) {
+            for (int i = 0; i < cells; i++)
+                out[i] = i;
+            return cells;
+        }
+
+        out[0] = cell == 0 ? cells - 1 : cell - 1;
+        out[1] = cell;
+        out[2] = cell == cells - 1 ? 0 : cell + 1;
+        return 3;
+    }
+
+    /**
+     * Returns the amount of columns.
+     *
+     * @return the amount of columns
+     */
+    public int getCellsX() {
+        return cellsX;
+    }
+
+    /**
+     * Returns the index of the first particle of a type in a cell.
+     *
+     * @param cellX the column
+     * @param cellY the row
+     * @param type  the index of the particle type, 0 after rebuildAllTypes()
+     * @return      the index of the first particle
+     */
+    public int getCellStart(int cellX, int cellY, int type) {
+        return cellStart[bucket(cellX, cellY, type)];
+    }
+
+    /**
+     * Returns the index after the last particle of a type in a cell.
+     *
+     * @param cellX the column
+     * @param cellY the row
+     * @param type  the index of the particle type, 0 after rebuildAllTypes()
+     * @return      the index after the last particle
+     */
+    public int getCellEnd(int cellX, int cellY, int type) {
+        return cellStart[bucket(cellX, cellY, type) + 1];
+    }
+
+    /**
+     * Returns the slot of a particle sorted by cell.
+     *
+     * @param index the index
+     * @return      the slot of the particle in the ParticleStore
+     */
+    public int getSlot(int index) {
+        return items[index];
+    }
+
+    /**
+     * Returns the x coordinates of the particles, sorted like the slots.
+     *
+     * @return the sorted x coordinates
+     */
+    public float[] getSortedX() {
+        return sortedX;
+    }
+
+    /**
+     * Returns the y coordinates of the particles, sorted like the slots.
+     *
+     * @return the sorted y coordinates
+     */
+    public float[] getSortedY() {
+        return sortedY;
+    }
+
+    /**
+     * Returns the types of the particles, sorted like the slots.
+     *
+     * @return the sorted types
+     */
+    public byte[] getSortedType() {
+        return sortedType;
+    }
+}
@@ -0,0 +1,64 @@
+package particlesimulation.model;
+
+/**
+ * Chooses the length of the next step so that no particle moves further than a limit per step. When the particles
+ * are calm the steps grow up to the biggest step, so fewer ticks cover the same simulated time; when velocities
+ * approach their caps the steps shrink and the same time is split into more ticks. A step grows by at most a quarter
+ * per tick, so a calm moment doesn't end in one huge step, and it shrinks at once.
+ */
+public class StepController {
+    /**
+     * The shortest step, so a single fast particle without cap can't stop the simulated time.
+     */
+    public static final float MIN_DT = 1 / 64F;
+
+    private static final float GROWTH = 1.25F;
+
+    private final float maxDt;
+    private final float maxStep;
+    private float dt;
+
+    /**
+     * Initializes a new StepController.
+     *
+     * @param dt      the length of the first step
+     * @param maxDt   the longest step
+     * @param maxStep the furthest a particle may move in one step, in pixels
+     */
+    public StepController(float dt, float maxDt, float maxStep) {
+        if (!(maxDt >= MIN_DT) || !(maxStep > 0))
+            throw new IllegalArgumentException("the longest step must be at least " + MIN_DT
+                    + " and the furthest move above 0, got " + maxDt + " and " + maxStep);
+
+        this.maxDt = maxDt;
+        this.maxStep = maxStep;
+        this.dt = Math.max(MIN_DT, Math.min(dt, maxDt));
+    }
+
+    /**
+     * Returns the length of the next step.
+     *
+     * @return the length of the next step
+     */
+    public float getDt() {
+        return dt;
+    }
+
+    /**
+     * Chooses the next step from the velocities the particles just moved with. The biggest velocity component counts,
+     * because the caps and the pixels are per axis.
+     *
+     * @param particles the particles, after the integration and before the friction
+     */
+    void observe(ParticleStore particles) {
+        float[] velocityX = particles.getVelocityX();
+        float[] velocityY = particles.getVelocityY();
+
+        float maxSpeed = 0;
+        for (int i = 0; i < particles.size(); i++)
+            maxSpeed = Math.max(maxSpeed, Math.max(Math.abs(velocityX[i]), Math.abs(velocityY[i])));
+
+        float next = maxSpeed == 0 ? maxDt : maxStep / maxSpeed;
+        dt = Math.max(MIN_DT, Math.min(Math.min(next, dt * GROWTH), maxDt));
+    }
+}
@@ -0,0 +1,570 @@
+package particlesimulation.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Runs a world split into horizontal strips, each owned by a StripWorker that may run in another process or on
+ * another machine. The coordinator places the particles like a single node World with the same settings and hands
+ * them to the workers, then it only keeps what the ticks need, so a world can be bigger than one JVM holds.
+ * The workers compute the tendencies of their particles and move them. A particle whose move crosses into another
+ * strip entangles every move that shares a cell with it, directly or through other moves. The workers find these
+ * moves and the coordinator settles only them in slot order like World.tick(); all other moves only touch cells
+ * of one strip and are settled by its worker. The frames for the View are put together from the workers, only
+ * while they are enabled.
+ * In deterministic mode the particles take exactly the same trajectory as in a single node World. Particles can't be
+ * added or removed while running, and the Barnes-Hut search is not supported.
+ */
+public class StripCoordinator implements Closeable {
+    private final SimulationConfig config;
+    private final StripLayout layout;
+    private final ServerSocketChannel listener;
+    private final SocketChannel[] workers;
+    private final Queue<int[]> commands;
+    private final int width;
+    private final int height;
+    private final int size;
+    private final int[] ranges;
+    private TripleBuffer<int[][]> frames;
+    private final ByteBuffer[] immigrants;
+    private final int[] immigrantCounts;
+    private final ByteBuffer[] crossings;
+    private final int[] crossingCounts;
+    private final ByteBuffer[] moves;
+    private final int[] moveCounts;
+    private ByteBuffer in;
+    private ByteBuffer out;
+    private int entangledCount;
+    private int[] entangledIds;
+    private int[] entangledSources;
+    private int[] entangledTargets;
+    private int[] entangledStrips;
+    private boolean[] entangledBlocked;
+    private long[] order;
+    private long[] endpoints;
+    private int collisions;
+    private volatile boolean framesEnabled;
+
+    /**
+     * Initializes a new StripCoordinator, places the particles and waits for workers on a port.
+     *
+     * @param config                    the settings of the world
+     * @param strips                    the amount of strips, one per worker
+     * @param port                      the port the workers connect to, 0 picks a free port
+     * @throws IOException              if the port can't be opened
+     * @throws IllegalArgumentException if the settings use Barnes-Hut, a continuous world or adaptive steps
+     * @throws IllegalStateException    if the strips are too thin for the ranges
+     */
+    public StripCoordinator(SimulationConfig config, int strips, int port) throws IOException {
+        if (config.getNeighborSearch() == NeighborSearch.BARNES_HUT)
+            throw new IllegalArgumentException("barnes_hut can't be split into strips");
+        if (config.getCollisionRadius() > 0)
+            throw new IllegalArgumentException("a continuous world can't be split into strips");
+        if (config.isAdaptive())
+            throw new IllegalArgumentException("adaptive steps can't be split into strips");
+
+        this.config = config;
+        width = config.getWidth();
+        height = config.getHeight();
+        ranges = config.getRanges().clone();
+        layout = new StripLayout(width, height, strips);
+        layout.validate(maxRange());
+
+        immigrants = new ByteBuffer[strips];
+        immigrantCounts = new int[strips];
+        crossings = new ByteBuffer[strips];
+        crossingCounts = new int[strips];
+        moves = new ByteBuffer[strips];
+        moveCounts = new int[strips];
+        for (int strip = 0; strip < strips; strip++) {
+            immigrants[strip] = ByteBuffer.allocate(1 << 16);
+            crossings[strip] = ByteBuffer.allocate(1 << 12);
+            moves[strip] = ByteBuffer.allocate(1 << 12);
+        }
+        in = ByteBuffer.allocate(1 << 16);
+        out = ByteBuffer.allocate(1 << 16);
+        entangledIds = new int[1024];
+        entangledSources = new int[1024];
+        entangledTargets = new int[1024];
+        entangledStrips = new int[1024];
+        entangledBlocked = new boolean[1024];
+        order = new long[1024];
+        endpoints = new long[2048];
+
+        // the world is only used to place the particles like a single node world, its ids are the slots there
+        int threads = config.getWorkers();
+        config.setWorkers(1);
+        World world = config.createWorld();
+        config.setWorkers(threads);
+
+        ParticleStore particles = world.getParticleStore();
+        size = particles.size();
+        for (int id = 0; id < size; id++) {
+            int strip = layout.stripOf(particles.getY()[id]);
+            immigrants[strip] = StripProtocol.ensure(immigrants[strip], StripProtocol.PARTICLE_BYTES);
+            StripProtocol.putParticle(immigrants[strip], id, particles, id);
+            immigrantCounts[strip]++;
+        }
+        world.setWorkers(1);    // shuts the threads of its scheduler down
+
+        workers = new SocketChannel[strips];
+        commands = new ConcurrentLinkedQueue<>();
+        listener = ServerSocketChannel.open();
+        listener.bind(new InetSocketAddress(port));
+    }
+
+    /**
+     * Returns the biggest range of all particle types, like World.getMaxRange().
+     *
+     * @return the biggest range
+     */
+    private int maxRange() {
+        int max = 0;
+        for (int range : ranges)
+            max = Math.max(max, range);
+
+        return max;
+    }
+
+    /**
+     * Returns the port the workers connect to.
+     *
+     * @return the port
+     */
+    public int getPort() {
+        return ((InetSocketAddress) listener.socket().getLocalSocketAddress()).getPort();
+    }
+
+    /**
+     * Waits until every strip has a worker, gives them their strips and waits until they are connected to each
+     * other. The strips are given in the order the workers connect.
+     *
+     * @throws IOException if a connection fails
+     */
+    public void connect() throws IOException {
+        int[] ports = new int[workers.length];
+
+        for (int strip = 0; strip < workers.length; strip++) {
+            workers[strip] = listener.accept();
+            workers[strip].socket().setTcpNoDelay(true);
+            in = StripProtocol.receive(workers[strip], in, StripProtocol.HELLO);
+            ports[strip] = in.getInt();
+        }
+
+        for (int strip = 0; strip < workers.length; strip++) {
+            int below = layout.below(strip);
+            String host = ((InetSocketAddress) workers[below].getRemoteAddress()).getAddress().getHostAddress();
+
+            StripProtocol.begin(out, StripProtocol.SETUP).putInt(strip).putInt(workers.length);
+            out = StripProtocol.ensure(out, StripProtocol.configBytes(config) + 2 + host.length() * 3 + 4);
+            StripProtocol.putConfig(out, config);
+            StripProtocol.putString(out, host);
+            out.putInt(ports[below]);
+            StripProtocol.send(workers[strip], out);
+        }
+
+        for (SocketChannel worker : workers)
+            in = StripProtocol.receive(worker, in, StripProtocol.READY);
+    }
+
+    /**
+     * Computes a tick on the workers and settles the moves that cross strips.
+     *
+     * @throws IOException if a connection fails
+     */
+    public synchronized void tick() throws IOException {
+        boolean frame = framesEnabled;
+        sendTicks(frame);
+        routeCrossings();
+        receiveEntangled();
+        settleEntangled();
+
+        for (int strip = 0; strip < workers.length; strip++) {
+            moves[strip].putInt(5, moveCounts[strip]);
+            StripProtocol.send(workers[strip], moves[strip]);
+        }
+
+        for (int strip = 0; strip < workers.length; strip++)
+            immigrantCounts[strip] = 0;
+        int[][] back = frame ? clearBackFrame() : null;
+        for (SocketChannel worker : workers) {
+            in = StripProtocol.receive(worker, in, StripProtocol.EMIGRANTS);
+            routeEmigrants();
+            collisions += in.getInt();
+            if (back != null)
+                readFrame(back);
+        }
+
+        if (back != null)
+            frames.publish();
+    }
+
+    /**
+     * Sends the parameter changes and the particles that entered a strip to every worker.
+     *
+     * @param frame        true if the workers send their particles for a frame
+     * @throws IOException if a connection fails
+     */
+    private void sendTicks(boolean frame) throws IOException {
+        int[][] changes = commands.toArray(new int[0][]);
+        for (int i = 0; i < changes.length; i++)
+            commands.poll();
+
+        for (int strip = 0; strip < workers.length; strip++) {
+            StripProtocol.begin(out, StripProtocol.TICK);
+            out = StripProtocol.ensure(out, 1 + 4 + changes.length * 9 + 4 + immigrants[strip].position());
+
+            out.put((byte) (frame ? 1 : 0));
+            out.putInt(changes.length);
+            for (int[] change : changes)
+                out.put((byte) change[0]).putInt(change[1]).putInt(change[2]);
+
+            out.putInt(immigrantCounts[strip]);
+            immigrants[strip].flip();
+            out.put(immigrants[strip]);
+            immigrants[strip].clear();
+
+            StripProtocol.send(workers[strip], out);
+        }
+    }
+
+    /**
+     * Receives the moves that leave a strip from every worker, keeps them for settling and sends every worker the
+     * moves that enter its strip.
+     *
+     * @throws IOException if a connection fails
+     */
+    private void routeCrossings() throws IOException {
+        for (int strip = 0; strip < workers.length; strip++) {
+            StripProtocol.begin(crossings[strip], StripProtocol.CROSSINGS).putInt(0);
+            crossingCounts[strip] = 0;
+        }
+
+        entangledCount = 0;
+        for (int strip = 0; strip < workers.length; strip++) {
+            in = StripProtocol.receive(workers[strip], in, StripProtocol.TARGETS);
+            int count = in.getInt();
+
+            for (int i = 0; i < count; i++) {
+                int id = in.getInt();
+                int source = in.getInt();
+                int target = in.getInt();
+                addEntangled(id, source, target, strip, false);
+
+                int to = layout.stripOfCell(target);
+                crossings[to] = StripProtocol.ensure(crossings[to], 12);
+                crossings[to].putInt(id).putInt(source).putInt(target);
+                crossingCounts[to]++;
+            }
+        }
+
+        for (int strip = 0; strip < workers.length; strip++) {
+            crossings[strip].putInt(5, crossingCounts[strip]);
+            StripProtocol.send(workers[strip], crossings[strip]);
+        }
+    }
+
+    /**
+     * Receives the moves inside a strip that are entangled with the crossing moves, and which crossing moves are
+     * blocked by a particle that doesn't move.
+     *
+     * @throws IOException if a connection fails
+     */
+    private void receiveEntangled() throws IOException {
+        int crossingCount = entangledCount;    // the crossing moves, looked up by id
+        if (order.length < crossingCount)
+            order = new long[Math.max(crossingCount, order.length * 2)];
+        for (int m = 0; m < crossingCount; m++)
+            order[m] = (long) entangledIds[m] << 32 | m;
+        Arrays.sort(order, 0, crossingCount);
+
+        for (int strip = 0; strip < workers.length; strip++) {
+            in = StripProtocol.receive(workers[strip], in, StripProtocol.ENTANGLED);
+            int count = in.getInt();
+            for (int i = 0; i < count; i++)
+                addEntangled(in.getInt(), in.getInt(), in.getInt(), strip, in.get() != 0);
+
+            int blocked = in.getInt();
+            for (int i = 0; i < blocked; i++) {
+                int index = Arrays.binarySearch(order, 0, crossingCount, (long) in.getInt() << 32);
+                entangledBlocked[(int) order[index < 0 ? -index - 1 : index]] = true;
+            }
+        }
+    }
+
+    /**
+     * Adds a move to the ones the coordinator settles.
+     *
+     * @param id      the id of the particle
+     * @param source  the cell of the particle
+     * @param target  the cell the particle wants to move to
+     * @param strip   the strip that owns the particle
+     * @param blocked true if the target holds a particle that doesn't move
+     */
+    private void addEntangled(int id, int source, int target, int strip, boolean blocked) {
+        if (entangledCount == entangledIds.length) {
+            int length = entangledCount * 2;
+            entangledIds = Arrays.copyOf(entangledIds, length);
+            entangledSources = Arrays.copyOf(entangledSources, length);
+            entangledTargets = Arrays.copyOf(entangledTargets, length);
+            entangledStrips = Arrays.copyOf(entangledStrips, length);
+            entangledBlocked = Arrays.copyOf(entangledBlocked, length);
+        }
+
+        entangledIds[entangledCount] = id;
+        entangledSources[entangledCount] = source;
+        entangledTargets[entangledCount] = target;
+        entangledStrips[entangledCount] = strip;
+        entangledBlocked[entangledCount] = blocked;
+        entangledCount++;
+    }
+
+    /**
+     * Settles the entangled moves in slot order, like World.tick() would, and prepares the MOVES message of every
+     * strip. The cells they touch start occupied if they are the cell of a moving particle; a particle that doesn't
+     * move was reported as blocking.
+     */
+    private void settleEntangled() {
+        for (int strip = 0; strip < workers.length; strip++) {
+            StripProtocol.begin(moves[strip], StripProtocol.MOVES).putInt(0);
+            moveCounts[strip] = 0;
+        }
+
+        int count = entangledCount;
+        if (order.length < count)
+            order = new long[Math.max(count, order.length * 2)];
+        if (endpoints.length < 2 * count)
+            endpoints = new long[Math.max(2 * count, endpoints.length * 2)];
+
+        // every touched cell gets a number, the sources start occupied
+        for (int m = 0; m < count; m++) {
+            endpoints[2 * m] = (long) entangledSources[m] << 32 | (long) m << 1;
+            endpoints[2 * m + 1] = (long) entangledTargets[m] << 32 | (long) m << 1 | 1;
+        }
+        Arrays.sort(endpoints, 0, 2 * count);
+
+        int[] sourceCell = new int[count];
+        int[] targetCell = new int[count];
+        boolean[] occupied = new boolean[2 * count];
+        int cells = -1;
+        for (int i = 0; i < 2 * count; i++) {
+            if (i == 0 || endpoints[i] >>> 32 != endpoints[i - 1] >>> 32)
+                cells++;
+
+            int m = (int) endpoints[i] >>> 1;
+            if ((endpoints[i] & 1) == 0) {
+                sourceCell[m] = cells;
+                occupied[cells] = true;
+            } else {
+                targetCell[m] = cells;
+            }
+        }
+
+        for (int m = 0; m < count; m++)
+            order[m] = (long) entangledIds[m] << 32 | m;
+        Arrays.sort(order, 0, count);
+
+        collisions = 0;
+        for (int i = 0; i < count; i++) {
+            int m = (int) order[i];
+            if (entangledBlocked[m] || occupied[targetCell[m]]) {
+                collisions++;
+                continue;
+            }
+
+            occupied[sourceCell[m]] = false;
+            occupied[targetCell[m]] = true;
+
+            int strip = entangledStrips[m];
+            moves[strip] = StripProtocol.ensure(moves[strip], 8);
+            moves[strip].putInt(entangledIds[m]).putInt(entangledTargets[m]);
+            moveCounts[strip]++;
+        }
+    }
+
+    /**
+     * Puts the particles of an EMIGRANTS message into the immigrants of the strips they entered.
+     */
+    private void routeEmigrants() {
+        int count = in.getInt();
+        int limit = in.limit();
+
+        for (int i = 0; i < count; i++) {
+            int start = in.position();
+            float y = in.getFloat(start + 8);    // after the id and x
+            int strip = layout.stripOf(y);
+
+            immigrants[strip] = StripProtocol.ensure(immigrants[strip], StripProtocol.PARTICLE_BYTES);
+            in.limit(start + StripProtocol.PARTICLE_BYTES);
+            immigrants[strip].put(in);
+            in.limit(limit);
+            immigrantCounts[strip]++;
+        }
+    }
+
+    /**
+     * Returns the cleared back buffer of the frames.
+     *
+     * @return the back buffer
+     */
+    private int[][] clearBackFrame() {
+        int[][] back = frames.getBackBuffer();
+        for (int[] row : back)
+            Arrays.fill(row, 0);
+
+        return back;
+    }
+
+    /**
+     * Writes the particles of a worker, sent after its emigrants, into a frame.
+     *
+     * @param frame the frame
+     */
+    private void readFrame(int[][] frame) {
+        int count = in.getInt();
+
+        for (int i = 0; i < count; i++) {
+            int cell = in.getInt();
+            frame[cell / width][cell % width] = in.get() + 1;
+        }
+    }
+
+    /**
+     * Sets if every tick publishes a frame for takeFrame(). The frames are only allocated when they are enabled for
+     * the first time.
+     *
+     * @param framesEnabled true to publish frames
+     */
+    public synchronized void setFramesEnabled(boolean framesEnabled) {
+        if (framesEnabled && frames == null)
+            frames = new TripleBuffer<>(new int[height][width], new int[height][width], new int[height][width]);
+
+        this.framesEnabled = framesEnabled;
+    }
+
+    /**
+     * Returns the latest published frame, in the format of World.particleArrayToIntArray(). The frame may be reused
+     * after the next call.
+     *
+     * @return the latest frame, null if frames were never enabled
+     */
+    public int[][] takeFrame() {
+        TripleBuffer<int[][]> frames = this.frames;
+
+        return frames == null ? null : frames.takeLatest();
+    }
+
+    /**
+     * Returns the amount of particles that couldn't move to their target cell in the latest tick.
+     *
+     * @return the amount of collisions
+     */
+    public int getCollisions() {
+        return collisions;
+    }
+
+    /**
+     * Returns the hash of the state of all particles, the same as the state hash of a single node World that took
+     * the same trajectory.
+     *
+     * @return             the state hash
+     * @throws IOException if a connection fails
+     */
+    public synchronized long stateHash() throws IOException {
+        ParticleStore particles = new ParticleStore(size);
+        particles.resize(size);
+
+        for (SocketChannel worker : workers)
+            StripProtocol.send(worker, StripProtocol.begin(out, StripProtocol.STATE));
+
+        for (SocketChannel worker : workers) {
+            in = StripProtocol.receive(worker, in, StripProtocol.STATE);
+            int count = in.getInt();
+
+            for (int i = 0; i < count; i++)
+                StripProtocol.getParticle(in, particles, in.getInt());
+        }
+
+        // the particles that left their strip are only here until the next tick
+        for (ByteBuffer buffer : immigrants) {
+            ByteBuffer particle = buffer.duplicate().flip();
+            while (particle.hasRemaining())
+                StripProtocol.getParticle(particle, particles, particle.getInt());
+        }
+
+        return World.stateHash(particles);
+    }
+
+    /**
+     * Changes the value of a rule from the next tick on.
+     *
+     * @param rule  the index of the rule
+     * @param value the new value
+     */
+    public void changeRule(int rule, int value) {
+        Objects.checkIndex(rule, ranges.length * ranges.length);
+        commands.add(new int[]{StripProtocol.CHANGE_RULE, rule, value});
+    }
+
+    /**
+     * Changes the range of a particle type from the next tick on.
+     *
+     * @param index                  the particle type
+     * @param value                  the new range
+     * @throws IllegalStateException if the strips are too thin for the new range, the range is not changed then
+     */
+    public synchronized void changeRange(int index, int value) {
+        int old = ranges[index];
+        ranges[index] = value;
+
+        try {
+            layout.validate(maxRange());
+        } catch (IllegalStateException e) {
+            ranges[index] = old;
+            throw e;
+        }
+
+        commands.add(new int[]{StripProtocol.CHANGE_RANGE, index, value});
+    }
+
+    /**
+     * Changes the velocity cap of a particle type from the next tick on.
+     *
+     * @param index the particle type
+     * @param value the new velocity cap
+     */
+    public void changeVelocityCap(int index, int value) {
+        Objects.checkIndex(index, ranges.length);
+        commands.add(new int[]{StripProtocol.CHANGE_VELOCITY_CAP, index, value});
+    }
+
+    /**
+     * Stops the workers and closes the connections.
+     *
+     * @throws IOException if a connection can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        for (SocketChannel worker : workers) {
+            if (worker == null)
+                continue;
+
+            try {
+                StripProtocol.send(worker, StripProtocol.begin(out, StripProtocol.STOP));
+            } catch (IOException e) {
+                // the worker is gone already
+            }
+            worker.close();
+        }
+
+        listener.close();
+    }
+}
@@ -0,0 +1,159 @@
+package particlesimulation.model;
+
+/**
+ * Splits the rows of a world into horizontal strips, one per worker of a distributed world.
+ * A strip needs the particles of the grid rows next to its own grid rows to compute the forces, the same rows a
+ * World uses, so the ghosts always cover the maximum range. The grid rows are computed like SpatialGrid does.
+ */
+final class StripLayout {
+    private final int width;
+    private final int height;
+    private final int strips;
+
+    /**
+     * Initializes a new StripLayout.
+     *
+     * @param width  the width of the world
+     * @param height the height of the world
+     * @param strips the amount of strips, at most the height
+     */
+    StripLayout(int width, int height, int strips) {
+        if (strips < 1 || strips > height)
+            throw new IllegalArgumentException("strips must be between 1 and " + height + ", got " + strips);
+
+        this.width = width;
+        this.height = height;
+        this.strips = strips;
+    }
+
+    /**
+     * Returns the amount of strips.
+     *
+     * @return the amount of strips
+     */
+    int getStrips() {
+        return strips;
+    }
+
+    /**
+     * Returns the first pixel row of a strip.
+     *
+     * @param strip the strip, strips returns the height
+     * @return      the first row
+     */
+    int firstRow(int strip) {
+        return (int) ((long) strip * height / strips);
+    }
+
+    /**
+     * Returns the strip that owns a pixel row.
+     *
+     * @param y the y coordinate
+     * @return  the strip
+     */
+    int stripOf(float y) {
+        int row = (int) y;
+        int strip = (int) ((long) row * strips / height);
+
+        // the rounding of firstRow() can put the row one strip off
+        while (strip + 1 < strips && firstRow(strip + 1) <= row)
+            strip++;
+        while (firstRow(strip) > row)
+            strip--;
+
+        return strip;
+    }
+
+    /**
+     * Returns the strip of a cell.
+     *
+     * @param cell the cell, y * width + x
+     * @return     the strip
+     */
+    int stripOfCell(int cell) {
+        return stripOf(cell / width);
+    }
+
+    /**
+     * Returns the strip above a strip, wrapped around the world.
+     *
+     * @param strip the strip
+     * @return      the strip above
+     */
+    int above(int strip) {
+        return (strip + strips - 1) % strips;
+    }
+
+    /**
+     * Returns the strip below a strip, wrapped around the world.
+     *
+     * @param strip the strip
+     * @return      the strip below
+     */
+    int below(int strip) {
+        return (strip + 1) % strips;
+    }
+
+    /**
+     * Returns the amount of grid rows for a range, like SpatialGrid.
+     *
+     * @param range the biggest maximum range
+     * @return      the amount of grid rows
+     */
+    int gridRows(int range) {
+        return range <= 0 ? height : Math.max(1, height / range);
+    }
+
+    /**
+     * Returns the grid row of a y coordinate, like SpatialGrid.getCellY().
+     *
+     * @param y        the y coordinate
+     * @param gridRows the amount of grid rows
+     * @return         the grid row
+     */
+    int gridRow(float y, int gridRows) {
+        float cellHeight = (float) height / gridRows;
+
+        return Math.min((int) (y / cellHeight), gridRows - 1);
+    }
+
+    /**
+     * Marks the grid rows whose particles a strip needs: its own grid rows and the ones next to them.
+     *
+     * @param strip    the strip
+     * @param gridRows the amount of grid rows
+     * @return         true for every needed grid row
+     */
+    boolean[] neededGridRows(int strip, int gridRows) {
+        boolean[] needed = new boolean[gridRows];
+        int first = gridRow(firstRow(strip), gridRows);
+        int last = gridRow(firstRow(strip + 1) - 1, gridRows);
+
+        for (int row = first - 1; row <= last + 1; row++)
+            needed[Math.floorMod(row, gridRows)] = true;
+
+        return needed;
+    }
+
+    /**
+     * Checks that every strip only needs particles of itself and the strips next to it, so the ghosts can be swapped
+     * with the neighbors alone.
+     *
+     * @param range                  the biggest maximum range
+     * @throws IllegalStateException if a strip is thinner than a grid row
+     */
+    void validate(int range) {
+        int gridRows = gridRows(range);
+
+        for (int strip = 0; strip < strips; strip++) {
+            boolean[] needed = neededGridRows(strip, gridRows);
+
+            for (int y = 0; y < height; y++) {
+                int owner = stripOf(y);
+                if (needed[gridRow(y, gridRows)] && owner != strip && owner != above(strip) && owner != below(strip))
+                    throw new IllegalStateException(strips + " strips are too thin for a range of " + range
+                            + ", strip " + strip + " needs row " + y + " of strip " + owner);
+            }
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package particlesimulation.model;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The messages between the coordinator and the workers of a distributed world, and between neighboring workers.
+ * Every message starts with its length and its type. Particles are sent with their id, which is their slot in the
+ * single node world, so every side can keep them in slot order.
+ */
+final class StripProtocol {
+    static final byte HELLO = 1;
+    static final byte SETUP = 2;
+    static final byte READY = 3;
+    static final byte TICK = 4;
+    static final byte TARGETS = 5;
+    static final byte MOVES = 6;
+    static final byte EMIGRANTS = 7;
+    static final byte STATE = 8;
+    static final byte STOP = 9;
+    static final byte GHOSTS = 10;
+    static final byte CROSSINGS = 11;
+    static final byte ENTANGLED = 12;
+
+    static final byte CHANGE_RULE = 0;
+    static final byte CHANGE_RANGE = 1;
+    static final byte CHANGE_VELOCITY_CAP = 2;
+
+    /**
+     * Bytes of a particle with its whole state: id, x, y, tendency, velocity and type.
+     */
+    static final int PARTICLE_BYTES = 4 + 6 * 4 + 1;
+
+    /**
+     * Bytes of a ghost: id, x, y and type.
+     */
+    static final int GHOST_BYTES = 4 + 2 * 4 + 1;
+
+    private StripProtocol() {
+    }
+
+    /**
+     * Starts a new message in a buffer.
+     *
+     * @param buffer the buffer
+     * @param type   the type of the message
+     * @return       the buffer
+     */
+    static ByteBuffer begin(ByteBuffer buffer, byte type) {
+        buffer.clear();
+        buffer.putInt(0);    // the length, written by send()
+        buffer.put(type);
+
+        return buffer;
+    }
+
+    /**
+     * Makes sure a buffer has room for more bytes, copying it into a bigger buffer if needed.
+     *
+     * @param buffer the buffer
+     * @param bytes  the amount of bytes that will be put
+     * @return       the buffer or the bigger buffer
+     */
+    static ByteBuffer ensure(ByteBuffer buffer, int bytes) {
+        if (buffer.remaining() >= bytes)
+            return buffer;
+
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+        buffer.flip();
+        bigger.put(buffer);
+
+        return bigger;
+    }
+
+    /**
+     * Writes the length and sends a message started with begin().
+     *
+     * @param channel      the channel
+     * @param buffer       the buffer
+     * @throws IOException if the message can't be sent
+     */
+    static void send(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        buffer.putInt(0, buffer.limit() - 4);
+
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+
+    /**
+     * Receives a message of a certain type.
+     *
+     * @param channel      the channel
+     * @param buffer       the buffer that is used if it is big enough
+     * @param type         the expected type
+     * @return             the buffer, positioned after the type
+     * @throws IOException if the channel is closed or the message has another type
+     */
+    static ByteBuffer receive(SocketChannel channel, ByteBuffer buffer, byte type) throws IOException {
+        buffer = receive(channel, buffer);
+
+        byte received = buffer.get();
+        if (received != type)
+            throw new IOException("expected message " + type + ", got " + received);
+
+        return buffer;
+    }
+
+    /**
+     * Receives the next message.
+     *
+     * @param channel      the channel
+     * @param buffer       the buffer that is used if it is big enough
+     * @return             the buffer, positioned at the type
+     * @throws IOException if the channel is closed
+     */
+    static ByteBuffer receive(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.clear().limit(4);
+        readFully(channel, buffer);
+        int length = buffer.getInt(0);
+
+        if (buffer.capacity() < length)
+            buffer = ByteBuffer.allocate(Math.max(length, buffer.capacity() * 2));
+        buffer.clear().limit(length);
+        readFully(channel, buffer);
+        buffer.flip();
+
+        return buffer;
+    }
+
+    /**
+     * Reads until the buffer is full.
+     *
+     * @param channel      the channel
+     * @param buffer       the buffer
+     * @throws IOException if the channel is closed before
+     */
+    private static void readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())
+            if (channel.read(buffer) < 0)
+                throw new EOFException("connection closed");
+    }
+
+    /**
+     * Puts a particle with its whole state.
+     *
+     * @param buffer    the buffer, with room for PARTICLE_BYTES
+     * @param id        the id of the particle
+     * @param particles the particles
+     * @param slot      the slot of the particle
+     */
+    static void putParticle(ByteBuffer buffer, int id, ParticleStore particles, int slot) {
+        buffer.putInt(id);
+        buffer.putFloat(particles.getX()[slot]);
+        buffer.putFloat(particles.getY()[slot]);
+        buffer.putFloat(particles.getTendencyX()[slot]);
+        buffer.putFloat(particles.getTendencyY()[slot]);
+        buffer.putFloat(particles.getVelocityX()[slot]);
+        buffer.putFloat(particles.getVelocityY()[slot]);
+        buffer.put(particles.getType()[slot]);
+    }
+
+    /**
+     * Gets a particle with its whole state into a slot, the id is read before.
+     *
+     * @param buffer    the buffer, positioned after the id
+     * @param particles the particles
+     * @param slot      the slot, must exist
+     */
+    static void getParticle(ByteBuffer buffer, ParticleStore particles, int slot) {
+        particles.getX()[slot] = buffer.getFloat();
+        particles.getY()[slot] = buffer.getFloat();
+        particles.getTendencyX()[slot] = buffer.getFloat();
+        particles.getTendencyY()[slot] = buffer.getFloat();
+        particles.getVelocityX()[slot] = buffer.getFloat();
+        particles.getVelocityY()[slot] = buffer.getFloat();
+        particles.getType()[slot] = buffer.get();
+    }
+
+    /**
+     * Puts the settings a worker creates its world with. The particles are not part of them, they are sent by the
+     * coordinator.
+     *
+     * @param buffer the buffer, with room for configBytes()
+     * @param config the settings
+     */
+    static void putConfig(ByteBuffer buffer, SimulationConfig config) {
+        buffer.putInt(config.getWidth());
+        buffer.putInt(config.getHeight());
+        buffer.putInt(config.getTypes());
+        for (int rule : config.getRules())
+            buffer.putInt(rule);
+        for (int range : config.getRanges())
+            buffer.putInt(range);
+        for (int velocityCap : config.getVelocityCaps())
+            buffer.putInt(velocityCap);
+        buffer.put((byte) config.getNeighborSearch().ordinal());
+        buffer.putFloat(config.getOpeningAngle());
+        buffer.put((byte) (config.isVectorKernel() ? 1 : 0));
+        buffer.put((byte) (config.isDeterministic() ? 1 : 0));
+
+        byte[] integrator = config.getIntegrator().getBytes(StandardCharsets.US_ASCII);
+        buffer.put((byte) integrator.length);
+        buffer.put(integrator);
+        buffer.putFloat(config.getFriction());
+        buffer.putFloat(config.getTimeStep());
+    }
+
+    /**
+     * Returns the bytes putConfig() needs.
+     *
+     * @param config the settings
+     * @return       the amount of bytes
+     */
+    static int configBytes(SimulationConfig config) {
+        int types = config.getTypes();
+
+        return 3 * 4 + (types * types + 2 * types) * 4 + 1 + 4 + 2 + 1 + config.getIntegrator().length() + 2 * 4;
+    }
+
+    /**
+     * Gets the settings put by putConfig(), without particles.
+     *
+     * @param buffer the buffer
+     * @return       the settings
+     */
+    static SimulationConfig getConfig(ByteBuffer buffer) {
+        SimulationConfig config = new SimulationConfig();
+        config.setWidth(buffer.getInt());
+        config.setHeight(buffer.getInt());
+        config.setTypes(buffer.getInt());
+
+        int types = config.getTypes();
+        config.setParticles(new int[types]);
+        config.setRules(getInts(buffer, types * types));
+        config.setRanges(getInts(buffer, types));
+        config.setVelocityCaps(getInts(buffer, types));
+        config.setNeighborSearch(NeighborSearch.values()[buffer.get()]);
+        config.setOpeningAngle(buffer.getFloat());
+        config.setVectorKernel(buffer.get() != 0);
+        config.setDeterministic(buffer.get() != 0);
+
+        byte[] integrator = new byte[buffer.get()];
+        buffer.get(integrator);
+        config.setIntegrator(new String(integrator, StandardCharsets.US_ASCII));
+        config.setFriction(buffer.getFloat());
+        config.setTimeStep(buffer.getFloat());
+
+        return config;
+    }
+
+    /**
+     * Gets ints.
+     *
+     * @param buffer the buffer
+     * @param length the amount of ints
+     * @return       the ints
+     */
+    private static int[] getInts(ByteBuffer buffer, int length) {
+        int[] values = new int[length];
+        for (int i = 0; i < length; i++)
+            values[i] = buffer.getInt();
+
+        return values;
+    }
+
+    /**
+     * Puts a string with its length.
+     *
+     * @param buffer the buffer
+     * @param value  the string, at most 32767 bytes in UTF-8
+     */
+    static void putString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * Gets a string put by putString().
+     *
+     * @param buffer the buffer
+     * @return       the string
+     */
+    static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,761 @@
+package particlesimulation.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Owns a horizontal strip of a distributed world, computes the forces of its particles and moves them.
+ * Every tick the worker sends the particles its neighbors need as ghosts and receives theirs, fills its World with
+ * its own particles and the ghosts in slot order and computes the tendencies there. Moves that leave the strip go to
+ * the coordinator, which hands them to the strip they enter. Every move that shares a cell with such a move, directly
+ * or through other moves, is entangled and settled by the coordinator; the worker settles the others in slot order,
+ * they only touch cells nobody else touches. Then it applies friction and hands the particles that left its strip
+ * back to the coordinator. Because the World sees every particle in range in the same order as a single node world,
+ * the forces are bit for bit the same.
+ */
+public class StripWorker implements Closeable {
+    private final SocketChannel coordinator;
+    private final ExecutorService sender;
+    private SocketChannel up;
+    private SocketChannel down;
+    private int strip;
+    private StripLayout layout;
+    private World world;
+    private int width;
+    private int height;
+    private ParticleStore owned;
+    private int[] ownedIds;
+    private ParticleStore spare;
+    private int[] spareIds;
+    private ParticleStore ghosts;
+    private int[] ghostIds;
+    private int ghostsAbove;
+    private int[] ownedSlots;
+    private int firstCell;
+    private int cells;
+    private long[] occupied;
+    private int moveCount;
+    private int ownedMoveCount;
+    private int[] moveIds;
+    private int[] moveSources;
+    private int[] moveTargets;
+    private int[] moveOwned;
+    private boolean[] moveBlocked;
+    private long[] endpoints;
+    private int[] parents;
+    private boolean[] crossing;
+    private int collisions;
+    private ByteBuffer in;
+    private ByteBuffer out;
+    private ByteBuffer upIn;
+    private ByteBuffer downIn;
+    private ByteBuffer upOut;
+    private ByteBuffer downOut;
+
+    /**
+     * Connects to the coordinator, gets the settings and the strip and connects to the neighboring workers.
+     *
+     * @param address      the address of the coordinator
+     * @param threads      the amount of threads the World of the strip uses
+     * @throws IOException if a connection fails
+     */
+    public StripWorker(InetSocketAddress address, int threads) throws IOException {
+        in = ByteBuffer.allocate(1 << 16);
+        out = ByteBuffer.allocate(1 << 16);
+        upIn = ByteBuffer.allocate(1 << 16);
+        downIn = ByteBuffer.allocate(1 << 16);
+        upOut = ByteBuffer.allocate(1 << 16);
+        downOut = ByteBuffer.allocate(1 << 16);
+        owned = new ParticleStore();
+        spare = new ParticleStore();
+        ghosts = new ParticleStore();
+        ownedIds = new int[0];
+        spareIds = new int[0];
+        ghostIds = new int[0];
+        ownedSlots = new int[0];
+        moveIds = new int[0];
+        moveSources = new int[0];
+        moveTargets = new int[0];
+        moveOwned = new int[0];
+        moveBlocked = new boolean[0];
+        endpoints = new long[0];
+        parents = new int[0];
+        crossing = new boolean[0];
+        sender = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ghost sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try (ServerSocketChannel listener = ServerSocketChannel.open()) {
+            listener.bind(new InetSocketAddress(0));
+
+            coordinator = SocketChannel.open(address);
+            coordinator.socket().setTcpNoDelay(true);
+            StripProtocol.begin(out, StripProtocol.HELLO).putInt(((InetSocketAddress) listener.getLocalAddress())
+                    .getPort());
+            StripProtocol.send(coordinator, out);
+
+            in = StripProtocol.receive(coordinator, in, StripProtocol.SETUP);
+            strip = in.getInt();
+            int strips = in.getInt();
+            SimulationConfig config = StripProtocol.getConfig(in);
+            String neighborHost = StripProtocol.getString(in);
+            int neighborPort = in.getInt();
+
+            config.setWorkers(threads);
+            width = config.getWidth();
+            height = config.getHeight();
+            // the World only computes tendencies, with a collision radius it doesn't allocate arrays for every pixel
+            // of the whole world; the cells of the strip are tracked by the worker
+            if (Math.min(width, height) >= 3)
+                config.setCollisionRadius(1);
+            world = config.createWorld();
+            layout = new StripLayout(width, height, strips);
+            firstCell = layout.firstRow(strip) * width;
+            cells = layout.firstRow(strip + 1) * width - firstCell;
+            occupied = new long[(cells + 63) >>> 6];
+
+            // every worker connects to the strip below and gets connected by the strip above
+            if (strips > 1) {
+                down = SocketChannel.open(new InetSocketAddress(neighborHost, neighborPort));
+                down.socket().setTcpNoDelay(true);
+                up = listener.accept();
+                up.socket().setTcpNoDelay(true);
+            }
+        }
+
+        StripProtocol.send(coordinator, StripProtocol.begin(out, StripProtocol.READY));
+    }
+
+    /**
+     * Answers the coordinator until it stops the worker.
+     *
+     * @throws IOException if a connection fails
+     */
+    public void run() throws IOException {
+        while (true) {
+            in = StripProtocol.receive(coordinator, in);
+            byte type = in.get();
+
+            if (type == StripProtocol.TICK)
+                tick();
+            else if (type == StripProtocol.STATE)
+                sendState();
+            else if (type == StripProtocol.STOP)
+                return;
+            else
+                throw new IOException("unexpected message " + type);
+        }
+    }
+
+    /**
+     * Computes a tick, the TICK message is in the input buffer.
+     *
+     * @throws IOException if a connection fails
+     */
+    private void tick() throws IOException {
+        boolean frame = in.get() != 0;
+        applyCommands();
+        addImmigrants();
+        swapGhosts();
+        fillSlice();
+        world.computeTendencies();
+        sendTargets();
+
+        in = StripProtocol.receive(coordinator, in, StripProtocol.CROSSINGS);
+        getCrossings();
+        sendEntangled();
+        moveFree();
+
+        in = StripProtocol.receive(coordinator, in, StripProtocol.MOVES);
+        applyMoves();
+        float damping = world.getDamping();
+        for (int i = 0; i < owned.size(); i++)
+            owned.friction(i, damping);
+
+        sendEmigrants(frame);
+    }
+
+    /**
+     * Applies the parameter changes of the TICK message to the World, the same on every worker.
+     */
+    private void applyCommands() {
+        int count = in.getInt();
+
+        for (int i = 0; i < count; i++) {
+            byte kind = in.get();
+            int index = in.getInt();
+            int value = in.getInt();
+
+            switch (kind) {
+                case StripProtocol.CHANGE_RULE -> world.changeRule(index, value);
+                case StripProtocol.CHANGE_RANGE -> world.changeRange(index, value);
+                case StripProtocol.CHANGE_VELOCITY_CAP -> world.changeVelocityCap(index, value);
+                default -> throw new IllegalStateException("unknown command " + kind);
+            }
+        }
+    }
+
+    /**
+     * Merges the particles that entered the strip into the own particles, in slot order.
+     */
+    private void addImmigrants() {
+        int count = in.getInt();
+        if (count == 0)
+            return;
+
+        // the immigrants come from many strips, so they are sorted first
+        ghosts.resize(count);
+        ghostIds = ensure(ghostIds, count);
+        long[] order = new long[count];
+        for (int i = 0; i < count; i++) {
+            ghostIds[i] = in.getInt();
+            StripProtocol.getParticle(in, ghosts, i);
+            order[i] = (long) ghostIds[i] << 32 | i;
+            setOccupied(cellOf(ghosts, i), true);
+        }
+        Arrays.sort(order);
+
+        int size = owned.size();
+        spare.resize(size + count);
+        spareIds = ensure(spareIds, size + count);
+
+        int o = 0;
+        int n = 0;
+        for (int i = 0; i < size + count; i++) {
+            if (n == count || o < size && ownedIds[o] < (int) (order[n] >>> 32)) {
+                copy(owned, o, spare, i);
+                spareIds[i] = ownedIds[o++];
+            } else {
+                int slot = (int) order[n++];
+                copy(ghosts, slot, spare, i);
+                spareIds[i] = ghostIds[slot];
+            }
+        }
+
+        swapOwned();
+    }
+
+    /**
+     * Sends the own particles in the grid rows the neighbors need and receives their particles in the grid rows
+     * this strip needs. The sending runs on its own thread, so two workers that send to each other at the same time
+     * never wait for each other. With two strips both neighbors are the same worker, so only one way is used.
+     *
+     * @throws IOException if a connection fails
+     */
+    private void swapGhosts() throws IOException {
+        ghosts.resize(0);
+        ghostsAbove = 0;
+        if (layout.getStrips() == 1)
+            return;
+
+        int range = world.getMaxRange();
+        layout.validate(range);
+        int gridRows = layout.gridRows(range);
+        boolean both = layout.getStrips() > 2;
+
+        downOut = putGhosts(downOut, layout.neededGridRows(layout.below(strip), gridRows), gridRows);
+        if (both)
+            upOut = putGhosts(upOut, layout.neededGridRows(layout.above(strip), gridRows), gridRows);
+
+        Future<?> sent = sender.submit(() -> {
+            StripProtocol.send(down, downOut);
+            if (both)
+                StripProtocol.send(up, upOut);
+
+            return null;
+        });
+
+        upIn = StripProtocol.receive(up, upIn, StripProtocol.GHOSTS);
+        getGhosts(upIn);
+        ghostsAbove = ghosts.size();
+        if (both) {
+            downIn = StripProtocol.receive(down, downIn, StripProtocol.GHOSTS);
+            getGhosts(downIn);
+        }
+
+        try {
+            sent.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while sending ghosts", e);
+        } catch (ExecutionException e) {
+            throw new IOException("could not send ghosts", e.getCause());
+        }
+    }
+
+    /**
+     * Puts the own particles in certain grid rows into a GHOSTS message.
+     *
+     * @param buffer   the buffer
+     * @param needed   true for every grid row the neighbor needs
+     * @param gridRows the amount of grid rows
+     * @return         the buffer, maybe a bigger one
+     */
+    private ByteBuffer putGhosts(ByteBuffer buffer, boolean[] needed, int gridRows) {
+        StripProtocol.begin(buffer, StripProtocol.GHOSTS);
+        int countPosition = buffer.position();
+        buffer.putInt(0);
+
+        int count = 0;
+        float[] x = owned.getX();
+        float[] y = owned.getY();
+        byte[] type = owned.getType();
+        for (int i = 0; i < owned.size(); i++) {
+            if (!needed[layout.gridRow(y[i], gridRows)])
+                continue;
+
+            buffer = StripProtocol.ensure(buffer, StripProtocol.GHOST_BYTES);
+            buffer.putInt(ownedIds[i]).putFloat(x[i]).putFloat(y[i]).put(type[i]);
+            count++;
+        }
+        buffer.putInt(countPosition, count);
+
+        return buffer;
+    }
+
+    /**
+     * Appends the ghosts of a GHOSTS message to the ghosts. Each message is in slot order.
+     *
+     * @param buffer the buffer, positioned after the type
+     */
+    private void getGhosts(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        int start = ghosts.size();
+        ghosts.resize(start + count);
+        ghostIds = ensure(ghostIds, start + count);
+
+        for (int i = start; i < start + count; i++) {
+            ghostIds[i] = buffer.getInt();
+            ghosts.getX()[i] = buffer.getFloat();
+            ghosts.getY()[i] = buffer.getFloat();
+            ghosts.getType()[i] = buffer.get();
+        }
+    }
+
+    /**
+     * Fills the World with the own particles and the ghosts in slot order. The ghosts only need a position and a
+     * type, what the World computes for them is thrown away.
+     */
+    private void fillSlice() {
+        ParticleStore slice = world.getParticleStore();
+        int size = owned.size();
+        int ghostCount = ghosts.size();
+        int split = ghostsAbove;    // the ghosts from above, then the ones from below
+        slice.resize(size + ghostCount);
+        ownedSlots = ensure(ownedSlots, size);
+
+        int o = 0;
+        int a = 0;
+        int b = split;
+        for (int slot = 0; slot < size + ghostCount; slot++) {
+            int ownedId = o < size ? ownedIds[o] : Integer.MAX_VALUE;
+            int aboveId = a < split ? ghostIds[a] : Integer.MAX_VALUE;
+            int belowId = b < ghostCount ? ghostIds[b] : Integer.MAX_VALUE;
+
+            if (ownedId < aboveId && ownedId < belowId) {
+                copy(owned, o, slice, slot);
+                ownedSlots[o++] = slot;
+            } else {
+                int ghost = aboveId < belowId ? a++ : b++;
+                float x = ghosts.getX()[ghost];
+                float y = ghosts.getY()[ghost];
+                slice.getX()[slot] = x;
+                slice.getY()[slot] = y;
+                slice.getTendencyX()[slot] = x;
+                slice.getTendencyY()[slot] = y;
+                slice.getVelocityX()[slot] = 0;
+                slice.getVelocityY()[slot] = 0;
+                slice.getType()[slot] = ghosts.getType()[ghost];
+            }
+        }
+    }
+
+    /**
+     * Takes the new velocities and tendencies from the World, collects the moves of the own particles and sends the
+     * ones that leave the strip.
+     *
+     * @throws IOException if the connection fails
+     */
+    private void sendTargets() throws IOException {
+        ParticleStore slice = world.getParticleStore();
+        StripProtocol.begin(out, StripProtocol.TARGETS);
+        int countPosition = out.position();
+        out.putInt(0);
+
+        moveCount = 0;
+        int count = 0;
+        for (int i = 0; i < owned.size(); i++) {
+            int slot = ownedSlots[i];
+            owned.getTendencyX()[i] = slice.getTendencyX()[slot];
+            owned.getTendencyY()[i] = slice.getTendencyY()[slot];
+            owned.getVelocityX()[i] = slice.getVelocityX()[slot];
+            owned.getVelocityY()[i] = slice.getVelocityY()[slot];
+
+            int source = cellOf(owned, i);
+            int target = World.fitFloatToWorld(owned.getTendencyY()[i], height) * width
+                    + World.fitFloatToWorld(owned.getTendencyX()[i], width);
+            if (target == source)
+                continue;
+
+            addMove(ownedIds[i], source, target, i);
+            if (inStrip(target))
+                continue;
+
+            out = StripProtocol.ensure(out, 12);
+            out.putInt(ownedIds[i]).putInt(source).putInt(target);
+            count++;
+        }
+        out.putInt(countPosition, count);
+        ownedMoveCount = moveCount;
+
+        StripProtocol.send(coordinator, out);
+    }
+
+    /**
+     * Adds the moves of the CROSSINGS message, the particles of other strips that want to enter this one.
+     */
+    private void getCrossings() {
+        int count = in.getInt();
+
+        for (int i = 0; i < count; i++)
+            addMove(in.getInt(), in.getInt(), in.getInt(), -1);
+    }
+
+    /**
+     * Adds a move.
+     *
+     * @param id     the id of the particle
+     * @param source the cell of the particle
+     * @param target the cell the particle wants to move to
+     * @param index  the index of the own particle, -1 for a particle of another strip
+     */
+    private void addMove(int id, int source, int target, int index) {
+        if (moveCount == moveIds.length) {
+            int length = Math.max(16, moveCount * 2);
+            moveIds = Arrays.copyOf(moveIds, length);
+            moveSources = Arrays.copyOf(moveSources, length);
+            moveTargets = Arrays.copyOf(moveTargets, length);
+            moveOwned = Arrays.copyOf(moveOwned, length);
+        }
+
+        moveIds[moveCount] = id;
+        moveSources[moveCount] = source;
+        moveTargets[moveCount] = target;
+        moveOwned[moveCount] = index;
+        moveCount++;
+    }
+
+    /**
+     * Finds the moves that are entangled with a move across the strip border and sends them to the coordinator, with
+     * the entering moves whose target holds a particle that doesn't move. Moves that share a cell are joined, a group
+     * with a move across the border is entangled.
+     *
+     * @throws IOException if the connection fails
+     */
+    private void sendEntangled() throws IOException {
+        int count = moveCount;
+        if (endpoints.length < 2 * count) {
+            endpoints = new long[Math.max(2 * count, endpoints.length * 2)];
+            parents = new int[endpoints.length / 2];
+            crossing = new boolean[endpoints.length / 2];
+            moveBlocked = new boolean[endpoints.length / 2];
+        }
+
+        for (int m = 0; m < count; m++) {
+            endpoints[2 * m] = (long) moveSources[m] << 32 | (long) m << 1;
+            endpoints[2 * m + 1] = (long) moveTargets[m] << 32 | (long) m << 1 | 1;
+            parents[m] = m;
+            crossing[m] = false;
+            moveBlocked[m] = false;
+        }
+        Arrays.sort(endpoints, 0, 2 * count);
+
+        for (int i = 0; i < 2 * count; ) {
+            int cell = (int) (endpoints[i] >>> 32);
+            int first = (int) endpoints[i] >>> 1;
+            boolean source = false;
+            int end = i;
+            for (; end < 2 * count && (int) (endpoints[end] >>> 32) == cell; end++) {
+                int m = (int) endpoints[end] >>> 1;
+                source |= (endpoints[end] & 1) == 0;
+                parents[find(m)] = find(first);
+            }
+
+            // a particle that stays where it is blocks every move into its cell
+            if (!source && inStrip(cell) && isOccupied(cell))
+                for (int j = i; j < end; j++)
+                    moveBlocked[(int) endpoints[j] >>> 1] = true;
+            i = end;
+        }
+
+        for (int m = 0; m < count; m++)
+            if (moveOwned[m] < 0 || !inStrip(moveTargets[m]))
+                crossing[find(m)] = true;
+
+        StripProtocol.begin(out, StripProtocol.ENTANGLED);
+        int countPosition = out.position();
+        out.putInt(0);
+        int entangled = 0;
+        for (int m = 0; m < ownedMoveCount; m++) {
+            if (!inStrip(moveTargets[m]) || !crossing[find(m)])
+                continue;
+
+            out = StripProtocol.ensure(out, 13);
+            out.putInt(moveIds[m]).putInt(moveSources[m]).putInt(moveTargets[m]).put((byte) (moveBlocked[m] ? 1 : 0));
+            entangled++;
+        }
+        out.putInt(countPosition, entangled);
+
+        countPosition = out.position();
+        out = StripProtocol.ensure(out, 4);
+        out.putInt(0);
+        int blocked = 0;
+        for (int m = ownedMoveCount; m < count; m++) {
+            if (!moveBlocked[m])
+                continue;
+
+            out = StripProtocol.ensure(out, 4);
+            out.putInt(moveIds[m]);
+            blocked++;
+        }
+        out.putInt(countPosition, blocked);
+
+        StripProtocol.send(coordinator, out);
+    }
+
+    /**
+     * Returns the representative of the group of a move.
+     *
+     * @param move the move
+     * @return     the representative
+     */
+    private int find(int move) {
+        while (parents[move] != move) {
+            parents[move] = parents[parents[move]];
+            move = parents[move];
+        }
+
+        return move;
+    }
+
+    /**
+     * Settles the moves inside the strip that are not entangled, in slot order like World.tick(). A particle only
+     * moves if its target is free at its turn.
+     */
+    private void moveFree() {
+        collisions = 0;
+
+        for (int m = 0; m < ownedMoveCount; m++) {
+            int target = moveTargets[m];
+            if (!inStrip(target) || crossing[find(m)])
+                continue;
+
+            if (isOccupied(target)) {
+                collisions++;
+                continue;
+            }
+
+            setOccupied(moveSources[m], false);
+            setOccupied(target, true);
+            owned.setYX(moveOwned[m], target % width, target / width);
+        }
+    }
+
+    /**
+     * Moves the own particles the coordinator let move. Particles that leave the strip free their cell, the strip
+     * they enter marks it when they arrive.
+     */
+    private void applyMoves() {
+        int count = in.getInt();
+
+        for (int i = 0; i < count; i++) {
+            int id = in.getInt();
+            int cell = in.getInt();
+            int index = Arrays.binarySearch(ownedIds, 0, owned.size(), id);
+
+            setOccupied(cellOf(owned, index), false);
+            if (inStrip(cell))
+                setOccupied(cell, true);
+            owned.setYX(index, cell % width, cell / width);
+        }
+    }
+
+    /**
+     * Sends the particles that moved out of the strip to the coordinator and removes them, then the collisions of the
+     * moves this worker settled and, for a frame, the cells and types of all own particles.
+     *
+     * @param frame        true if the particles are sent for a frame
+     * @throws IOException if the connection fails
+     */
+    private void sendEmigrants(boolean frame) throws IOException {
+        StripProtocol.begin(out, StripProtocol.EMIGRANTS);
+        int countPosition = out.position();
+        out.putInt(0);
+
+        int count = 0;
+        for (int i = 0; i < owned.size(); i++) {
+            if (layout.stripOf(owned.getY()[i]) == strip)
+                continue;
+
+            out = StripProtocol.ensure(out, StripProtocol.PARTICLE_BYTES);
+            StripProtocol.putParticle(out, ownedIds[i], owned, i);
+            count++;
+        }
+        out.putInt(countPosition, count);
+
+        out = StripProtocol.ensure(out, 4);
+        out.putInt(collisions);
+        if (frame) {
+            out = StripProtocol.ensure(out, 4 + owned.size() * 5);
+            out.putInt(owned.size());
+            for (int i = 0; i < owned.size(); i++)
+                out.putInt(cellOf(owned, i)).put(owned.getType()[i]);
+        }
+
+        int kept = 0;
+        for (int i = 0; i < owned.size(); i++) {
+            if (layout.stripOf(owned.getY()[i]) != strip)
+                continue;
+
+            copy(owned, i, owned, kept);
+            ownedIds[kept++] = ownedIds[i];
+        }
+        owned.resize(kept);
+
+        StripProtocol.send(coordinator, out);
+    }
+
+    /**
+     * Returns the cell of a particle.
+     *
+     * @param particles the particles
+     * @param slot      the slot of the particle
+     * @return          the cell, y * width + x
+     */
+    private int cellOf(ParticleStore particles, int slot) {
+        return (int) particles.getY()[slot] * width + (int) particles.getX()[slot];
+    }
+
+    /**
+     * Returns if a cell belongs to the strip.
+     *
+     * @param cell the cell
+     * @return     true if the strip owns the cell
+     */
+    private boolean inStrip(int cell) {
+        return cell >= firstCell && cell - firstCell < cells;
+    }
+
+    /**
+     * Returns if a cell of the strip holds a particle.
+     *
+     * @param cell the cell, must belong to the strip
+     * @return     true if the cell holds a particle
+     */
+    private boolean isOccupied(int cell) {
+        int bit = cell - firstCell;
+
+        return (occupied[bit >>> 6] & 1L << bit) != 0;
+    }
+
+    /**
+     * Marks a cell of the strip as holding a particle or not.
+     *
+     * @param cell     the cell, must belong to the strip
+     * @param occupied true if the cell holds a particle
+     */
+    private void setOccupied(int cell, boolean occupied) {
+        int bit = cell - firstCell;
+
+        if (occupied)
+            this.occupied[bit >>> 6] |= 1L << bit;
+        else
+            this.occupied[bit >>> 6] &= ~(1L << bit);
+    }
+
+    /**
+     * Sends the whole state of the own particles.
+     *
+     * @throws IOException if the connection fails
+     */
+    private void sendState() throws IOException {
+        StripProtocol.begin(out, StripProtocol.STATE).putInt(owned.size());
+
+        for (int i = 0; i < owned.size(); i++) {
+            out = StripProtocol.ensure(out, StripProtocol.PARTICLE_BYTES);
+            StripProtocol.putParticle(out, ownedIds[i], owned, i);
+        }
+
+        StripProtocol.send(coordinator, out);
+    }
+
+    /**
+     * Swaps the own particles with the spare ones the new own particles were written to.
+     */
+    private void swapOwned() {
+        ParticleStore particles = owned;
+        owned = spare;
+        spare = particles;
+
+        int[] ids = ownedIds;
+        ownedIds = spareIds;
+        spareIds = ids;
+    }
+
+    /**
+     * Copies the whole state of a particle.
+     *
+     * @param from     the particles to copy from
+     * @param fromSlot the slot to copy from
+     * @param to       the particles to copy to
+     * @param toSlot   the slot to copy to, must exist
+     */
+    private static void copy(ParticleStore from, int fromSlot, ParticleStore to, int toSlot) {
+        to.getX()[toSlot] = from.getX()[fromSlot];
+        to.getY()[toSlot] = from.getY()[fromSlot];
+        to.getTendencyX()[toSlot] = from.getTendencyX()[fromSlot];
+        to.getTendencyY()[toSlot] = from.getTendencyY()[fromSlot];
+        to.getVelocityX()[toSlot] = from.getVelocityX()[fromSlot];
+        to.getVelocityY()[toSlot] = from.getVelocityY()[fromSlot];
+        to.getType()[toSlot] = from.getType()[fromSlot];
+    }
+
+    /**
+     * Returns an array with at least a certain length, keeping the content.
+     *
+     * @param array  the array
+     * @param length the length
+     * @return       the array or a longer copy
+     */
+    private static int[] ensure(int[] array, int length) {
+        return array.length >= length ? array : Arrays.copyOf(array, Math.max(length, array.length * 2));
+    }
+
+    /**
+     * Closes the connections and the World.
+     *
+     * @throws IOException if a connection can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        sender.shutdownNow();
+        world.setWorkers(1);    // shuts the threads of the old scheduler down
+
+        if (up != null)
+            up.close();
+        if (down != null)
+            down.close();
+        coordinator.close();
+    }
+}
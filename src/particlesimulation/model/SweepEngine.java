@@ -0,0 +1,153 @@
+package particlesimulation.model;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+
+/**
+ * Runs many small worlds with different settings at the same time and summarizes every run in a SweepResult.
+ * Every run is driven by its own thread, a virtual thread if the Java version has them, otherwise a thread of a
+ * bounded pool. The ticks themselves are computed in batches on a shared pool with one thread per core, and every
+ * world ticks with a single worker, so the sweep keeps all cores busy without oversubscribing them. A run thread
+ * waits while its batch is computed, which costs nothing for a virtual thread.
+ * Only a bounded amount of runs has a world at the same time, so the memory doesn't grow with the sweep.
+ */
+public class SweepEngine implements AutoCloseable {
+    private static final int TICKS_PER_BATCH = 10;
+
+    private final ExecutorService compute;
+    private final ExecutorService runs;
+    private final Semaphore worlds;
+    private final boolean virtual;
+
+    /**
+     * Initializes a new SweepEngine.
+     *
+     * @param threads   the threads that compute ticks, usually the available processors
+     * @param maxWorlds the most runs that have a world at the same time
+     */
+    public SweepEngine(int threads, int maxWorlds) {
+        compute = Executors.newFixedThreadPool(Math.max(1, threads), runnable -> {
+            Thread thread = new Thread(runnable, "sweep compute");
+            thread.setDaemon(true);
+            return thread;
+        });
+        worlds = new Semaphore(Math.max(1, maxWorlds));
+
+        ExecutorService virtualThreads = newVirtualThreadPerTaskExecutor();
+        virtual = virtualThreads != null;
+        runs = virtual ? virtualThreads : Executors.newFixedThreadPool(Math.max(1, maxWorlds), runnable -> {
+            Thread thread = new Thread(runnable, "sweep run");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Creates an executor that starts a virtual thread per task. Looked up by reflection, because virtual threads
+     * only exist from Java 21 on and this project builds for Java 17.
+     *
+     * @return the executor, or null if virtual threads are not available
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns if the runs are driven by virtual threads.
+     *
+     * @return true for virtual threads, false for a pool of platform threads
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * Runs every setting for a number of ticks and hands the results over as soon as they are done, in the order
+     * they finish. The consumer is never called by two threads at once.
+     *
+     * @param configs              the settings of the runs, the number of a run is its index
+     * @param ticks                the ticks of every run
+     * @param results              gets the results
+     * @throws InterruptedException if the thread is interrupted while waiting for the runs
+     * @throws ExecutionException   if a run failed
+     */
+    public void run(List<SimulationConfig> configs, int ticks, Consumer<SweepResult> results)
+            throws InterruptedException, ExecutionException {
+        List<Future<?>> futures = new ArrayList<>(configs.size());
+
+        for (int i = 0; i < configs.size(); i++) {
+            int run = i;
+            futures.add(runs.submit(() -> {
+                SweepResult result = runOne(run, configs.get(run), ticks);
+                synchronized (results) {
+                    results.accept(result);
+                }
+
+                return null;
+            }));
+        }
+
+        try {
+            for (var future : futures)
+                future.get();
+        } finally {
+            for (var future : futures)
+                future.cancel(true);
+        }
+    }
+
+    /**
+     * Creates the world of a run, ticks it on the compute threads and measures it.
+     *
+     * @param run                   the number of the run
+     * @param config                the settings of the run
+     * @param ticks                 the ticks
+     * @return                      the result
+     * @throws InterruptedException if the run gets cancelled
+     * @throws ExecutionException   if a batch of ticks failed
+     */
+    private SweepResult runOne(int run, SimulationConfig config, int ticks)
+            throws InterruptedException, ExecutionException {
+        worlds.acquire();
+        try {
+            long start = System.nanoTime();
+            SimulationConfig settings = config.copy();
+            settings.setWorkers(1);
+            World world = compute.submit(settings::createWorld).get();
+
+            for (int done = 0; done < ticks; done += TICKS_PER_BATCH) {
+                int batch = Math.min(TICKS_PER_BATCH, ticks - done);
+                compute.submit(() -> {
+                    for (int i = 0; i < batch; i++)
+                        world.tick();
+                }).get();
+            }
+
+            return compute.submit(() -> SweepResult.measure(run, config, ticks, world, System.nanoTime() - start))
+                    .get();
+        } finally {
+            worlds.release();
+        }
+    }
+
+    /**
+     * Stops the threads, runs that are still going are interrupted.
+     */
+    @Override
+    public void close() {
+        runs.shutdownNow();
+        compute.shutdownNow();
+    }
+}
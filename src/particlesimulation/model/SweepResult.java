@@ -0,0 +1,184 @@
+package particlesimulation.model;
+
+import java.util.Locale;
+
+/**
+ * The summary of one run of a sweep: the settings and a few cheap numbers about the state after the last tick.
+ * Clustering and segregation count the particles in bins of 16 x 16 pixels.
+ * <ul>
+ * <li>clustering: Lloyd's patchiness, the mean amount of other particles in the bin of a particle divided by the
+ * mean amount of particles per bin. 1 means spread like random, bigger means clustered.</li>
+ * <li>kinetic energy: the mean of (vx² + vy²) / 2.</li>
+ * <li>segregation: how often two particles in the same bin have the same type, divided by how often two random
+ * particles have the same type. 1 means mixed, bigger means the types keep to themselves.</li>
+ * </ul>
+ */
+public class SweepResult {
+    private static final int BIN_SIZE = 16;
+
+    private final int run;
+    private final SimulationConfig config;
+    private final int ticks;
+    private final double clustering;
+    private final double kineticEnergy;
+    private final double segregation;
+    private final long nanos;
+
+    /**
+     * Initializes a new SweepResult.
+     *
+     * @param run           the number of the run
+     * @param config        the settings of the run
+     * @param ticks         the amount of ticks
+     * @param clustering    the clustering
+     * @param kineticEnergy the kinetic energy
+     * @param segregation   the segregation
+     * @param nanos         how long the run took, in nanoseconds
+     */
+    public SweepResult(int run, SimulationConfig config, int ticks, double clustering, double kineticEnergy,
+                       double segregation, long nanos) {
+        this.run = run;
+        this.config = config;
+        this.ticks = ticks;
+        this.clustering = clustering;
+        this.kineticEnergy = kineticEnergy;
+        this.segregation = segregation;
+        this.nanos = nanos;
+    }
+
+    /**
+     * Measures the state of a world after a run.
+     *
+     * @param run    the number of the run
+     * @param config the settings of the run
+     * @param ticks  the amount of ticks
+     * @param world  the world after the last tick
+     * @param nanos  how long the run took, in nanoseconds
+     * @return       the result
+     */
+    static SweepResult measure(int run, SimulationConfig config, int ticks, World world, long nanos) {
+        ParticleStore particles = world.getParticleStore();
+        int size = particles.size();
+        int types = world.getTypes();
+        int binsX = (world.getWidth() + BIN_SIZE - 1) / BIN_SIZE;
+        int binsY = (world.getHeight() + BIN_SIZE - 1) / BIN_SIZE;
+        int[] perBin = new int[binsX * binsY];
+        int[] perBinType = new int[binsX * binsY * types];
+        long[] perType = new long[types];
+
+        double energy = 0;
+        for (int i = 0; i < size; i++) {
+            int bin = (int) particles.getY()[i] / BIN_SIZE * binsX + (int) particles.getX()[i] / BIN_SIZE;
+            int type = particles.getType()[i];
+            perBin[bin]++;
+            perBinType[bin * types + type]++;
+            perType[type]++;
+
+            float vx = particles.getVelocityX()[i];
+            float vy = particles.getVelocityY()[i];
+            energy += (vx * vx + vy * vy) / 2.0;
+        }
+
+        // pairs in the same bin, all of them and the ones of the same type
+        double pairs = 0;
+        double sameTypePairs = 0;
+        for (int bin = 0; bin < perBin.length; bin++) {
+            pairs += (double) perBin[bin] * (perBin[bin] - 1);
+            for (int type = 0; type < types; type++) {
+                double n = perBinType[bin * types + type];
+                sameTypePairs += n * (n - 1);
+            }
+        }
+
+        double randomSameType = 0;
+        for (long n : perType)
+            randomSameType += (double) n * (n - 1);
+        randomSameType /= (double) size * (size - 1);
+
+        double clustering = size < 2 ? 0 : pairs / size / ((double) size / perBin.length);
+        double segregation = pairs == 0 || randomSameType == 0 ? 0 : sameTypePairs / pairs / randomSameType;
+
+        return new SweepResult(run, config, ticks, clustering, size == 0 ? 0 : energy / size, segregation, nanos);
+    }
+
+    /**
+     * Returns the header line of the CSV rows.
+     *
+     * @param types the amount of particle types
+     * @return      the header line, without line break
+     */
+    public static String csvHeader(int types) {
+        StringBuilder header = new StringBuilder("run,seed");
+        for (int i = 0; i < types * types; i++)
+            header.append(",rule").append(i);
+        for (int i = 0; i < types; i++)
+            header.append(",range").append(i);
+        for (int i = 0; i < types; i++)
+            header.append(",cap").append(i);
+
+        return header.append(",ticks,clustering,kinetic_energy,segregation,millis").toString();
+    }
+
+    /**
+     * Returns the result as CSV row, the columns are described by csvHeader().
+     *
+     * @return the row, without line break
+     */
+    public String toCsv() {
+        StringBuilder row = new StringBuilder().append(run).append(',').append(config.getSeed());
+        for (int rule : config.getRules())
+            row.append(',').append(rule);
+        for (int range : config.getRanges())
+            row.append(',').append(range);
+        for (int velocityCap : config.getVelocityCaps())
+            row.append(',').append(velocityCap);
+
+        return row.append(String.format(Locale.ROOT, ",%d,%.4f,%.4f,%.4f,%.1f", ticks, clustering, kineticEnergy,
+                segregation, nanos / 1e6)).toString();
+    }
+
+    /**
+     * Returns the number of the run.
+     *
+     * @return the number of the run
+     */
+    public int getRun() {
+        return run;
+    }
+
+    /**
+     * Returns the settings of the run.
+     *
+     * @return the settings
+     */
+    public SimulationConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Returns the clustering.
+     *
+     * @return the clustering, 1 means random
+     */
+    public double getClustering() {
+        return clustering;
+    }
+
+    /**
+     * Returns the mean kinetic energy of a particle.
+     *
+     * @return the kinetic energy
+     */
+    public double getKineticEnergy() {
+        return kineticEnergy;
+    }
+
+    /**
+     * Returns the segregation.
+     *
+     * @return the segregation, 1 means mixed
+     */
+    public double getSegregation() {
+        return segregation;
+    }
+}
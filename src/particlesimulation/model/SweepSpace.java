@@ -0,0 +1,142 @@
+package particlesimulation.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Creates the settings of the runs of a sweep from base settings, either as a grid over a few parameters or as a
+ * random sample of all rules, ranges and velocity caps.
+ * A grid parameter is named like "rule:7" for one rule, "range:2" or "cap:2" for one particle type, or "rule",
+ * "range" and "cap" for all of them at once.
+ */
+public final class SweepSpace {
+
+    private SweepSpace() {
+    }
+
+    /**
+     * Creates one run for every combination of the values of the parameters. The last parameter changes fastest.
+     *
+     * @param base                      the settings every run starts from
+     * @param names                     the names of the parameters
+     * @param values                    the values of every parameter
+     * @return                          the settings of the runs
+     * @throws IllegalArgumentException if a name is unknown or an index is out of bounds
+     */
+    public static List<SimulationConfig> grid(SimulationConfig base, List<String> names, List<int[]> values) {
+        if (names.size() != values.size())
+            throw new IllegalArgumentException("expected values for " + names.size() + " parameters, got "
+                    + values.size());
+
+        for (String name : names)
+            set(base.copy(), name, 0);    // checks the name before creating any run
+
+        List<SimulationConfig> configs = new ArrayList<>();
+        configs.add(base.copy());
+
+        for (int axis = 0; axis < names.size(); axis++) {
+            List<SimulationConfig> next = new ArrayList<>();
+            for (SimulationConfig config : configs)
+                for (int value : values.get(axis)) {
+                    SimulationConfig copy = config.copy();
+                    set(copy, names.get(axis), value);
+                    next.add(copy);
+                }
+            configs = next;
+        }
+
+        return configs;
+    }
+
+    /**
+     * Creates runs with random rules, ranges and velocity caps, every value uniform between its bounds.
+     *
+     * @param base        the settings every run starts from
+     * @param samples     the amount of runs
+     * @param seed        the seed of the random values, not of the particle placement
+     * @param ruleBounds  the smallest and biggest rule strength
+     * @param rangeBounds the smallest and biggest range
+     * @param capBounds   the smallest and biggest velocity cap
+     * @return            the settings of the runs
+     */
+    public static List<SimulationConfig> random(SimulationConfig base, int samples, long seed, int[] ruleBounds,
+                                                int[] rangeBounds, int[] capBounds) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<SimulationConfig> configs = new ArrayList<>(samples);
+
+        for (int i = 0; i < samples; i++) {
+            SimulationConfig config = base.copy();
+            fill(config.getRules(), random, ruleBounds);
+            fill(config.getRanges(), random, rangeBounds);
+            fill(config.getVelocityCaps(), random, capBounds);
+            configs.add(config);
+        }
+
+        return configs;
+    }
+
+    /**
+     * Repeats every run with other particle placements: repeat k uses the seed of the run plus k.
+     *
+     * @param configs the settings of the runs
+     * @param repeats how often every run is done
+     * @return        the settings of the repeated runs
+     */
+    public static List<SimulationConfig> repeat(List<SimulationConfig> configs, int repeats) {
+        List<SimulationConfig> repeated = new ArrayList<>(configs.size() * repeats);
+
+        for (SimulationConfig config : configs)
+            for (int k = 0; k < repeats; k++) {
+                SimulationConfig copy = config.copy();
+                copy.setSeed(config.getSeed() + k);
+                repeated.add(copy);
+            }
+
+        return repeated;
+    }
+
+    /**
+     * Fills values with random values between bounds.
+     *
+     * @param values the values
+     * @param random the random generator
+     * @param bounds the smallest and biggest value
+     */
+    private static void fill(int[] values, SplittableRandom random, int[] bounds) {
+        for (int i = 0; i < values.length; i++)
+            values[i] = random.nextInt(bounds[0], bounds[1] + 1);
+    }
+
+    /**
+     * Sets a grid parameter.
+     *
+     * @param config                    the settings
+     * @param name                      the name of the parameter
+     * @param value                     the value
+     * @throws IllegalArgumentException if the name is unknown or the index is out of bounds
+     */
+    private static void set(SimulationConfig config, String name, int value) {
+        int colon = name.indexOf(':');
+        String kind = colon < 0 ? name : name.substring(0, colon);
+
+        int[] values = switch (kind) {
+            case "rule" -> config.getRules();
+            case "range" -> config.getRanges();
+            case "cap" -> config.getVelocityCaps();
+            default -> throw new IllegalArgumentException("unknown parameter " + name
+                    + ", expected rule, range or cap with an optional :index");
+        };
+
+        if (colon < 0) {
+            Arrays.fill(values, value);
+            return;
+        }
+
+        int index = Integer.parseInt(name.substring(colon + 1));
+        if (index < 0 || index >= values.length)
+            throw new IllegalArgumentException("index of " + name + " must be between 0 and " + (values.length - 1));
+        values[index] = value;
+    }
+}
@@ -0,0 +1,26 @@
+package particlesimulation.model;
+
+/**
+ * The phases of a World tick, in the order they run.
+ */
+public enum TickPhase {
+    /**
+     * Sorting the particles into the spatial grid or the quadtrees.
+     */
+    GRID,
+
+    /**
+     * Computing the forces of all rules.
+     */
+    FORCES,
+
+    /**
+     * Applying the forces to the velocities.
+     */
+    INTEGRATION,
+
+    /**
+     * Moving the particles and applying friction.
+     */
+    MOVEMENT
+}
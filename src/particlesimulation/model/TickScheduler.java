@@ -0,0 +1,129 @@
+package particlesimulation.model;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Splits the particles of a tick into balanced slot ranges and runs them on a bounded ForkJoinPool.
+ * A call only returns after every range is finished, so the phases of a tick can't overlap.
+ */
+public class TickScheduler {
+    private static final int CHUNKS_PER_WORKER = 4;
+    private static final int MIN_CHUNK_SIZE = 256;
+
+    private final ForkJoinPool pool;
+    private final int workers;
+
+    /**
+     * Work that is done for a range of slots.
+     */
+    @FunctionalInterface
+    public interface RangeTask {
+        /**
+         * Does the work for a range of slots.
+         *
+         * @param from the first slot
+         * @param to   the slot after the last slot
+         */
+        void run(int from, int to);
+    }
+
+    /**
+     * Initializes a new TickScheduler.
+     *
+     * @param workers the amount of worker threads
+     */
+    public TickScheduler(int workers) {
+        this.workers = Math.max(1, workers);
+        pool = new ForkJoinPool(this.workers);
+    }
+
+    /**
+     * Initializes a new TickScheduler with one worker per available processor.
+     */
+    public TickScheduler() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Runs a task for all slots from 0 to size, split into ranges, and waits until all ranges are finished.
+     * Every slot is part of exactly one range.
+     *
+     * @param size the amount of slots
+     * @param task the task
+     */
+    public void forEachRange(int size, RangeTask task) {
+        if (size == 0)
+            return;
+
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, (size + workers * CHUNKS_PER_WORKER - 1) / (workers * CHUNKS_PER_WORKER));
+
+        if (workers == 1 || size <= chunkSize)
+            task.run(0, size);
+        else
+            pool.invoke(new RangeAction(task, 0, size, chunkSize));
+    }
+
+    /**
+     * Returns the amount of worker threads.
+     *
+     * @return the amount of worker threads
+     */
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Stops the worker threads after the current tick.
+     */
+    public void shutdown() {
+        pool.shutdown();
+        try {
+            pool.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Splits a range in halves until it is not bigger than the chunk size.
+     */
+    private static class RangeAction extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final RangeTask task;
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+
+        /**
+         * Initializes a new RangeAction.
+         *
+         * @param task      the task
+         * @param from      the first slot
+         * @param to        the slot after the last slot
+         * @param chunkSize the biggest range that doesn't get split
+         */
+        RangeAction(RangeTask task, int from, int to, int chunkSize) {
+            this.task = task;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+        }
+
+        /**
+         * Runs the task or splits the range.
+         */
+        @Override
+        protected void compute() {
+            if (to - from <= chunkSize) {
+                task.run(from, to);
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new RangeAction(task, from, middle, chunkSize), new RangeAction(task, middle, to, chunkSize));
+        }
+    }
+}
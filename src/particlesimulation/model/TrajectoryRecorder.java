@@ -0,0 +1,537 @@
+package particlesimulation.model;
+
+import particlesimulation.controller.WorldDeltaListener;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+ * Records the frames of a world to a trajectory file, attached as delta listener of the Model.
+ * The simulation thread only copies the changed cells into a free entry of a bounded pool, a writer thread encodes
+ * and compresses them. If the writer falls behind and no entry is free, the frame is dropped and the next recorded
+ * frame is a keyframe, so the file always replays correctly.
+ * The recorder keeps only the occupied cells, so its memory grows with the particles and not with the area of the
+ * world. In a continuous world particles can share a cell, a keyframe holds every occupied cell once.
+ *
+ * <pre>
+ * header   int magic, int version, int width, int height
+ * record   byte kind, int frame, int compressed length, int raw length, deflated payload
+ * keyframe varint particles, per particle in cell order: varint gap to the previous cell, byte type
+ * delta    varint changes, per change: byte kind, then for a move varint old cell and zigzag varint dx and dy,
+ *          for an add varint new cell and byte type, for a remove varint old cell
+ * </pre>
+ * Moves are stored relative to the old cell, wrapped around the world, so a move of a few pixels takes a few bytes.
+ */
+public class TrajectoryRecorder implements WorldDeltaListener, Closeable {
+    static final int MAGIC = 0x5054524A;   // "PTRJ"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_HEADER_SIZE = 13;
+    static final byte KEYFRAME = 0;
+    static final byte DELTA = 1;
+    static final byte MOVE = 0;
+    static final byte ADD = 1;
+    static final byte REMOVE = 2;
+
+    private static final int DEFAULT_QUEUE_SIZE = 64;
+    private static final int DEFAULT_KEYFRAME_INTERVAL = 100;
+
+    private final int width;
+    private final int height;
+    private final int keyframeInterval;
+    private final Cells cells;
+    private final BlockingQueue<Entry> free;
+    private final BlockingQueue<Entry> full;
+    private final DataOutputStream out;
+    private final Thread writer;
+    private Metrics metrics;
+    private int frame;
+    private boolean needKeyframe;
+    private volatile long recordedFrames;
+    private volatile long droppedFrames;
+    private volatile long bytesWritten;
+    private volatile IOException error;
+    private volatile boolean closed;
+
+    /**
+     * Initializes a new TrajectoryRecorder with a queue of 64 frames and a keyframe every 100 frames.
+     *
+     * @param path         the file, an existing file gets replaced
+     * @param width        the width of the world
+     * @param height       the height of the world
+     * @throws IOException if the file can't be created
+     */
+    public TrajectoryRecorder(Path path, int width, int height) throws IOException {
+        this(path, width, height, DEFAULT_QUEUE_SIZE, DEFAULT_KEYFRAME_INTERVAL);
+    }
+
+    /**
+     * Initializes a new TrajectoryRecorder.
+     *
+     * @param path             the file, an existing file gets replaced
+     * @param width            the width of the world
+     * @param height           the height of the world
+     * @param queueSize        the amount of frames that can wait for the writer thread
+     * @param keyframeInterval the amount of frames between two keyframes
+     * @throws IOException     if the file can't be created
+     */
+    public TrajectoryRecorder(Path path, int width, int height, int queueSize, int keyframeInterval)
+            throws IOException {
+        this.width = width;
+        this.height = height;
+        this.keyframeInterval = Math.max(1, keyframeInterval);
+        cells = new Cells();
+        free = new ArrayBlockingQueue<>(queueSize);
+        full = new ArrayBlockingQueue<>(queueSize + 1);    // one more for the entry that stops the writer
+        for (int i = 0; i < queueSize; i++)
+            free.add(new Entry());
+        needKeyframe = true;
+
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(width);
+        out.writeInt(height);
+
+        writer = new Thread(this::write, "trajectory writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Records the changes of a frame. Called on the simulation thread, never waits for the writer thread.
+     *
+     * @param delta the changed cells
+     */
+    @Override
+    public void worldChanged(FrameDelta delta) {
+        if (closed)
+            return;
+
+        Entry entry = free.poll();
+        boolean keyframe = entry == null || needKeyframe || frame % keyframeInterval == 0;
+        if (!keyframe)
+            entry.size = 0;
+
+        for (int i = 0; i < delta.size(); i++) {
+            int oldCell = delta.getOldCell(i);
+            int newCell = delta.getNewCell(i);
+            byte type = (byte) delta.getType(i);
+            if (oldCell == newCell)
+                continue;    // moved inside its cell, nothing to record
+
+            // a particle that leaves a cell another particle still is on must not clear it in the replay
+            if (oldCell != -1 && cells.remove(oldCell))
+                oldCell = -1;
+            if (newCell != -1)
+                cells.add(newCell, type);
+
+            if (!keyframe && (oldCell != -1 || newCell != -1))
+                entry.addChange(oldCell, newCell, type);
+        }
+
+        if (entry == null) {
+            droppedFrames++;
+            if (metrics != null)
+                metrics.add(MetricCounter.RECORDER_FRAMES_DROPPED, 1);
+            needKeyframe = true;
+        } else {
+            entry.frame = frame;
+            entry.keyframe = keyframe;
+            if (keyframe)
+                cells.copyTo(entry);
+
+            needKeyframe = false;
+            full.add(entry);
+        }
+
+        frame++;
+    }
+
+    /**
+     * Encodes and writes the entries until the recorder gets closed. Runs on the writer thread.
+     */
+    private void write() {
+        Buffer raw = new Buffer();
+        Buffer compressed = new Buffer();
+        byte[] chunk = new byte[1 << 16];
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+        try {
+            while (true) {
+                Entry entry = full.take();
+                if (entry.frame == -1)
+                    break;
+
+                int frameNumber = entry.frame;
+                boolean isKeyframe = entry.keyframe;
+                raw.reset();
+                if (isKeyframe)
+                    encodeKeyframe(entry, raw);
+                else
+                    encodeDelta(entry, raw);
+                free.add(entry);    // the simulation thread can reuse the entry from now on
+
+                deflater.reset();
+                deflater.setInput(raw.array(), 0, raw.size());
+                deflater.finish();
+                compressed.reset();
+                while (!deflater.finished())
+                    compressed.write(chunk, 0, deflater.deflate(chunk));
+
+                out.writeByte(isKeyframe ? KEYFRAME : DELTA);
+                out.writeInt(frameNumber);
+                out.writeInt(compressed.size());
+                out.writeInt(raw.size());
+                out.write(compressed.array(), 0, compressed.size());
+
+                bytesWritten += RECORD_HEADER_SIZE + compressed.size();
+                recordedFrames++;
+            }
+        } catch (IOException e) {
+            error = e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Encodes all particles of a keyframe in cell order.
+     *
+     * @param entry the entry
+     * @param raw   the buffer the keyframe is written to
+     */
+    private void encodeKeyframe(Entry entry, Buffer raw) {
+        long[] occupied = entry.occupied;
+        Arrays.sort(occupied, 0, entry.size);
+
+        raw.writeVarint(entry.size);
+        int last = 0;
+        for (int i = 0; i < entry.size; i++) {
+            int cell = (int) (occupied[i] >>> 8);
+            raw.writeVarint(cell - last);
+            raw.write((byte) occupied[i]);
+            last = cell;
+        }
+    }
+
+    /**
+     * Encodes the changes of a delta frame.
+     *
+     * @param entry the entry
+     * @param raw   the buffer the delta is written to
+     */
+    private void encodeDelta(Entry entry, Buffer raw) {
+        raw.writeVarint(entry.size);
+
+        for (int i = 0; i < entry.size; i++) {
+            int oldCell = entry.oldCells[i];
+            int newCell = entry.newCells[i];
+
+            if (oldCell == -1) {
+                raw.write(ADD);
+                raw.writeVarint(newCell);
+                raw.write(entry.types[i]);
+            } else if (newCell == -1) {
+                raw.write(REMOVE);
+                raw.writeVarint(oldCell);
+            } else {
+                raw.write(MOVE);
+                raw.writeVarint(oldCell);
+                raw.writeVarint(zigzag(wrap(newCell % width - oldCell % width, width)));
+                raw.writeVarint(zigzag(wrap(newCell / width - oldCell / width, height)));
+            }
+        }
+    }
+
+    /**
+     * Wraps a difference of cell coordinates to the shortest way around the world.
+     *
+     * @param delta   the difference
+     * @param mapSize the size of the world in that dimension
+     * @return        the wrapped difference
+     */
+    private static int wrap(int delta, int mapSize) {
+        if (delta > mapSize / 2)
+            return delta - mapSize;
+        if (delta < -mapSize / 2)
+            return delta + mapSize;
+
+        return delta;
+    }
+
+    /**
+     * Maps a signed value to an unsigned one, so small negative values get small varints.
+     *
+     * @param value the signed value
+     * @return      the unsigned value
+     */
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    /**
+     * Sets the metrics the dropped frames are counted in, besides getDroppedFrames().
+     *
+     * @param metrics the metrics, null to not count them there
+     */
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the amount of frames that were written.
+     *
+     * @return the amount of written frames
+     */
+    public long getRecordedFrames() {
+        return recordedFrames;
+    }
+
+    /**
+     * Returns the amount of frames that were dropped because the writer thread fell behind.
+     *
+     * @return the amount of dropped frames
+     */
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    /**
+     * Returns the amount of bytes written, without the file header.
+     *
+     * @return the amount of bytes
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Writes the waiting frames and closes the file. Must not be called while worldChanged() runs, detach the
+     * recorder from the Model first.
+     *
+     * @throws IOException if writing failed
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+
+        closed = true;
+        Entry stop = new Entry();
+        stop.frame = -1;
+        full.add(stop);
+
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        out.close();
+        if (error != null)
+            throw error;
+    }
+
+    /**
+     * A frame that waits for the writer thread.
+     */
+    private static class Entry {
+        private int frame;
+        private boolean keyframe;
+        private int size;
+        private int[] oldCells = new int[0];
+        private int[] newCells = new int[0];
+        private byte[] types = new byte[0];
+        private long[] occupied = new long[0];
+
+        /**
+         * Adds a change of a delta frame.
+         *
+         * @param oldCell the cell the particle left, -1 if it got added or another particle stays on the cell
+         * @param newCell the cell the particle entered, -1 if it got removed
+         * @param type    the particle type as used in the frame, starting at 1
+         */
+        private void addChange(int oldCell, int newCell, byte type) {
+            if (size == oldCells.length) {
+                int length = Math.max(64, size * 2);
+                oldCells = Arrays.copyOf(oldCells, length);
+                newCells = Arrays.copyOf(newCells, length);
+                types = Arrays.copyOf(types, length);
+            }
+
+            oldCells[size] = oldCell;
+            newCells[size] = newCell;
+            types[size] = type;
+            size++;
+        }
+    }
+
+    /**
+     * The occupied cells, an open addressing hash table from a cell to its type and the amount of particles on it.
+     * A cell stays occupied until its last particle leaves.
+     */
+    private static class Cells {
+        private int[] keys = new int[64];    // cell + 1, 0 if empty
+        private byte[] types = new byte[64];
+        private int[] counts = new int[64];
+        private int size;
+
+        /**
+         * Puts a particle on a cell.
+         *
+         * @param cell the cell
+         * @param type the particle type as used in the frame, starting at 1
+         */
+        private void add(int cell, byte type) {
+            if (size * 2 >= keys.length)
+                grow();
+
+            int index = find(cell);
+            if (keys[index] == 0) {
+                keys[index] = cell + 1;
+                counts[index] = 0;
+                size++;
+            }
+            types[index] = type;
+            counts[index]++;
+        }
+
+        /**
+         * Takes a particle off a cell.
+         *
+         * @param cell the cell
+         * @return     true if another particle stays on the cell
+         */
+        private boolean remove(int cell) {
+            int index = find(cell);
+            if (keys[index] == 0)
+                return false;
+            if (--counts[index] > 0)
+                return true;
+
+            keys[index] = 0;
+            size--;
+
+            // moves the following entries back, so no lookup stops at the hole
+            int mask = keys.length - 1;
+            for (int next = (index + 1) & mask; keys[next] != 0; next = (next + 1) & mask) {
+                int home = hash(keys[next] - 1) & mask;
+                if (((next - home) & mask) < ((next - index) & mask))
+                    continue;
+
+                keys[index] = keys[next];
+                types[index] = types[next];
+                counts[index] = counts[next];
+                keys[next] = 0;
+                index = next;
+            }
+
+            return false;
+        }
+
+        /**
+         * Copies the occupied cells into an entry for a keyframe, unsorted, as cell << 8 | type.
+         *
+         * @param entry the entry
+         */
+        private void copyTo(Entry entry) {
+            if (entry.occupied.length < size)
+                entry.occupied = new long[Math.max(size, entry.occupied.length * 2)];
+
+            int count = 0;
+            for (int i = 0; i < keys.length; i++)
+                if (keys[i] != 0)
+                    entry.occupied[count++] = (long) (keys[i] - 1) << 8 | types[i] & 0xFF;
+            entry.size = count;
+        }
+
+        /**
+         * Returns the index of a cell, or the empty index where it would go.
+         *
+         * @param cell the cell
+         * @return     the index
+         */
+        private int find(int cell) {
+            int mask = keys.length - 1;
+            int index = hash(cell) & mask;
+
+            while (keys[index] != 0 && keys[index] != cell + 1)
+                index = (index + 1) & mask;
+
+            return index;
+        }
+
+        /**
+         * Doubles the table.
+         */
+        private void grow() {
+            int[] oldKeys = keys;
+            byte[] oldTypes = types;
+            int[] oldCounts = counts;
+            keys = new int[oldKeys.length * 2];
+            types = new byte[keys.length];
+            counts = new int[keys.length];
+
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] == 0)
+                    continue;
+
+                int index = find(oldKeys[i] - 1);
+                keys[index] = oldKeys[i];
+                types[index] = oldTypes[i];
+                counts[index] = oldCounts[i];
+            }
+        }
+
+        /**
+         * Spreads the cells over the table, neighboring cells would otherwise fill long runs.
+         *
+         * @param cell the cell
+         * @return     the hash
+         */
+        private static int hash(int cell) {
+            int hash = cell * 0x9E3779B1;
+
+            return hash ^ (hash >>> 16);
+        }
+    }
+
+    /**
+     * ByteArrayOutputStream that gives access to its array, so it can be reused without copying.
+     */
+    private static class Buffer extends ByteArrayOutputStream {
+        /**
+         * Returns the array that holds the written bytes.
+         *
+         * @return the array
+         */
+        byte[] array() {
+            return buf;
+        }
+
+        /**
+         * Writes an unsigned value in 7-bit groups, small values take one byte.
+         *
+         * @param value the value
+         */
+        void writeVarint(int value) {
+            while ((value & ~0x7F) != 0) {
+                write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            write(value);
+        }
+    }
+}
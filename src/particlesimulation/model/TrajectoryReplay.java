@@ -0,0 +1,373 @@
+package particlesimulation.model;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Plays back a trajectory file written by a TrajectoryRecorder, frame by frame or from any frame.
+ * Opening the file only reads the record headers, the frames are decoded when they are needed. Seeking decodes the
+ * closest keyframe before the frame and applies the delta frames after it.
+ */
+public class TrajectoryReplay implements Closeable {
+    private final FileChannel channel;
+    private final int width;
+    private final int height;
+    private final byte[] cells;
+    private final int[][][] frames;
+    private final Inflater inflater;
+    private int records;
+    private long[] offsets;
+    private boolean[] keyframe;
+    private int[] frameNumbers;
+    private int position;
+    private int currentFrame;
+    private byte[] compressed;
+    private byte[] raw;
+    private int read;
+
+    /**
+     * Opens a trajectory file and reads its index. The replay starts before the first frame.
+     *
+     * @param path         the file
+     * @throws IOException if the file can't be read or is not a trajectory
+     */
+    public TrajectoryReplay(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+
+        try {
+            ByteBuffer header = readFully(0, TrajectoryRecorder.HEADER_SIZE);
+            if (header.getInt() != TrajectoryRecorder.MAGIC)
+                throw new IOException(path + " is not a trajectory");
+            if (header.getInt() != TrajectoryRecorder.VERSION)
+                throw new IOException("unsupported trajectory version");
+
+            width = header.getInt();
+            height = header.getInt();
+            if (width <= 0 || height <= 0)
+                throw new IOException(path + " is corrupt");
+
+            readIndex();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+
+        cells = new byte[width * height];
+        frames = new int[2][height][width];
+        inflater = new Inflater();
+        compressed = new byte[0];
+        raw = new byte[0];
+        position = -1;
+    }
+
+    /**
+     * Reads the header of every record. A record that was cut off at the end of the file is ignored.
+     *
+     * @throws IOException if the file can't be read
+     */
+    private void readIndex() throws IOException {
+        offsets = new long[256];
+        keyframe = new boolean[256];
+        frameNumbers = new int[256];
+
+        long offset = TrajectoryRecorder.HEADER_SIZE;
+        long size = channel.size();
+
+        while (offset + TrajectoryRecorder.RECORD_HEADER_SIZE <= size) {
+            ByteBuffer header = readFully(offset, TrajectoryRecorder.RECORD_HEADER_SIZE);
+            byte kind = header.get();
+            int frame = header.getInt();
+            int compressedLength = header.getInt();
+
+            long next = offset + TrajectoryRecorder.RECORD_HEADER_SIZE + compressedLength;
+            if (compressedLength < 0 || next > size)
+                break;
+
+            if (records == offsets.length) {
+                offsets = Arrays.copyOf(offsets, records * 2);
+                keyframe = Arrays.copyOf(keyframe, records * 2);
+                frameNumbers = Arrays.copyOf(frameNumbers, records * 2);
+            }
+            offsets[records] = offset;
+            keyframe[records] = kind == TrajectoryRecorder.KEYFRAME;
+            frameNumbers[records] = frame;
+            records++;
+            offset = next;
+        }
+
+        if (records > 0 && !keyframe[0])
+            throw new IOException("trajectory doesn't start with a keyframe");
+    }
+
+    /**
+     * Reads bytes at a position of the file.
+     *
+     * @param offset       the position in the file
+     * @param length       the amount of bytes
+     * @return             buffer with the bytes, ready to be read
+     * @throws IOException if the file ends before
+     */
+    private ByteBuffer readFully(long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+
+        while (buffer.hasRemaining())
+            if (channel.read(buffer, offset + buffer.position()) < 0)
+                throw new EOFException();
+
+        return buffer.flip();
+    }
+
+    /**
+     * Returns the width of the recorded world.
+     *
+     * @return the width
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the recorded world.
+     *
+     * @return the height
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the amount of recorded frames. Dropped frames are not counted.
+     *
+     * @return the amount of frames
+     */
+    public int getFrameCount() {
+        return records;
+    }
+
+    /**
+     * Returns the index of the current frame.
+     *
+     * @return the index of the current frame, -1 before the first frame
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * Returns the frame number the recorder gave the current frame. Gaps between numbers are dropped frames.
+     *
+     * @return the frame number
+     */
+    public int getFrameNumber() {
+        return position < 0 ? -1 : frameNumbers[position];
+    }
+
+    /**
+     * Moves to the next frame.
+     *
+     * @return true if there was a next frame, false at the end
+     * @throws IOException if the frame can't be read
+     */
+    public boolean next() throws IOException {
+        if (position + 1 >= records)
+            return false;
+
+        apply(++position);
+        return true;
+    }
+
+    /**
+     * Moves to a frame. Starts from the closest keyframe before it, unless the frame is a bit after the current one.
+     *
+     * @param index        the index of the frame, clamped to the recorded frames
+     * @throws IOException if a frame can't be read
+     */
+    public void seek(int index) throws IOException {
+        if (records == 0)
+            return;
+
+        index = Math.max(0, Math.min(index, records - 1));
+        int key = keyframeBefore(index);
+
+        if (index < position || key > position)
+            position = key - 1;
+
+        while (position < index)
+            apply(++position);
+    }
+
+    /**
+     * Moves to the closest keyframe before a frame.
+     *
+     * @param index        the index of the frame
+     * @throws IOException if the keyframe can't be read
+     */
+    public void seekKeyframe(int index) throws IOException {
+        if (records == 0)
+            return;
+
+        position = keyframeBefore(Math.max(0, Math.min(index, records - 1)));
+        apply(position);
+    }
+
+    /**
+     * Returns the index of the closest keyframe at or before a frame.
+     *
+     * @param index the index of the frame
+     * @return      the index of the keyframe
+     */
+    private int keyframeBefore(int index) {
+        while (!keyframe[index])
+            index--;
+
+        return index;
+    }
+
+    /**
+     * Returns the current frame in the format of World.particleArrayToIntArray(). The two frames returned one after
+     * another are different arrays, so a renderer sees that the frame changed.
+     *
+     * @return two-dimensional int array that represents the world
+     */
+    public int[][] getFrame() {
+        int[][] frame = frames[currentFrame];
+        currentFrame ^= 1;
+
+        for (int y = 0; y < height; y++) {
+            int[] row = frame[y];
+            int offset = y * width;
+            for (int x = 0; x < width; x++)
+                row[x] = cells[offset + x];
+        }
+
+        return frame;
+    }
+
+    /**
+     * Decodes a record and applies it to the cells.
+     *
+     * @param index        the index of the record
+     * @throws IOException if the record can't be read or is corrupt
+     */
+    private void apply(int index) throws IOException {
+        ByteBuffer header = readFully(offsets[index] + 5, 8);
+        int compressedLength = header.getInt();
+        int rawLength = header.getInt();
+
+        if (compressed.length < compressedLength)
+            compressed = new byte[compressedLength];
+        if (raw.length < rawLength)
+            raw = new byte[rawLength];
+
+        ByteBuffer payload = ByteBuffer.wrap(compressed, 0, compressedLength);
+        while (payload.hasRemaining())
+            if (channel.read(payload, offsets[index] + TrajectoryRecorder.RECORD_HEADER_SIZE + payload.position()) < 0)
+                throw new EOFException();
+
+        try {
+            inflater.reset();
+            inflater.setInput(compressed, 0, compressedLength);
+            if (inflater.inflate(raw, 0, rawLength) != rawLength)
+                throw new IOException("frame " + index + " is corrupt");
+        } catch (DataFormatException e) {
+            throw new IOException("frame " + index + " is corrupt", e);
+        }
+
+        read = 0;
+        try {
+            if (keyframe[index])
+                applyKeyframe();
+            else
+                applyDelta();
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("frame " + index + " is corrupt", e);
+        }
+    }
+
+    /**
+     * Replaces the cells with the particles of a keyframe.
+     */
+    private void applyKeyframe() {
+        Arrays.fill(cells, (byte) 0);
+
+        int particles = readVarint();
+        int cell = 0;
+        for (int i = 0; i < particles; i++) {
+            cell += readVarint();
+            cells[cell] = raw[read++];
+        }
+    }
+
+    /**
+     * Applies the changes of a delta frame to the cells.
+     */
+    private void applyDelta() {
+        int changes = readVarint();
+
+        for (int i = 0; i < changes; i++) {
+            byte kind = raw[read++];
+
+            if (kind == TrajectoryRecorder.ADD) {
+                int cell = readVarint();
+                cells[cell] = raw[read++];
+            } else if (kind == TrajectoryRecorder.REMOVE) {
+                cells[readVarint()] = 0;
+            } else {
+                int oldCell = readVarint();
+                int x = Math.floorMod(oldCell % width + unzigzag(readVarint()), width);
+                int y = Math.floorMod(oldCell / width + unzigzag(readVarint()), height);
+
+                cells[y * width + x] = cells[oldCell];
+                cells[oldCell] = 0;
+            }
+        }
+    }
+
+    /**
+     * Reads an unsigned value written in 7-bit groups.
+     *
+     * @return the value
+     */
+    private int readVarint() {
+        int value = 0;
+        int shift = 0;
+        byte b;
+
+        do {
+            b = raw[read++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+
+        return value;
+    }
+
+    /**
+     * Maps an unsigned zigzag value back to the signed value.
+     *
+     * @param value the unsigned value
+     * @return      the signed value
+     */
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Closes the file.
+     *
+     * @throws IOException if closing failed
+     */
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        channel.close();
+    }
+}
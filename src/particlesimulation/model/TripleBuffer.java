@@ -0,0 +1,70 @@
+package particlesimulation.model;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free triple buffer between one writer and one reader. The writer fills the back buffer and publishes it,
+ * the reader takes the latest published buffer. Neither side ever waits for the other and the reader never sees a
+ * buffer that is being written.
+ *
+ * @param <T> the type of the buffers
+ */
+public class TripleBuffer<T> {
+    private static final int INDEX = 3;
+    private static final int NEW = 4;
+
+    private final Object[] buffers;
+    private final AtomicInteger middle;
+    private int back;
+    private int front;
+
+    /**
+     * Initializes a new TripleBuffer.
+     *
+     * @param first  the first buffer
+     * @param second the second buffer
+     * @param third  the third buffer
+     */
+    public TripleBuffer(T first, T second, T third) {
+        buffers = new Object[]{first, second, third};
+        back = 0;
+        middle = new AtomicInteger(1);
+        front = 2;
+    }
+
+    /**
+     * Returns the buffer the writer fills. Only called by the writer.
+     *
+     * @return the back buffer
+     */
+    @SuppressWarnings("unchecked")
+    public T getBackBuffer() {
+        return (T) buffers[back];
+    }
+
+    /**
+     * Publishes the back buffer and gives the writer a new back buffer. Only called by the writer.
+     *
+     * @return true if the buffer published before was replaced without the reader taking it
+     */
+    public boolean publish() {
+        int old = middle.getAndSet(back | NEW);
+        back = old & INDEX;
+
+        return (old & NEW) != 0;
+    }
+
+    /**
+     * Takes the latest published buffer, if there is one the reader doesn't have yet. Only called by the reader.
+     *
+     * @return the latest buffer, or null if nothing new was published
+     */
+    @SuppressWarnings("unchecked")
+    public T takeLatest() {
+        if ((middle.get() & NEW) == 0)
+            return null;
+
+        front = middle.getAndSet(front) & INDEX;
+        return (T) buffers[front];
+    }
+}
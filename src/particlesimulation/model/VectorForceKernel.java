@@ -0,0 +1,133 @@
+package particlesimulation.model;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Computes the force of as many particles at once as fit into a SIMD register. The wrap around the world and the
+ * range test are done with masks instead of branches. Only loaded by ForceKernel.create() if the
+ * jdk.incubator.vector module is present.
+ */
+final class VectorForceKernel implements ForceKernel {
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    private final int width;
+    private final int height;
+    private final ScalarForceKernel tail;
+
+    /**
+     * Initializes a new VectorForceKernel.
+     *
+     * @param width  the width of the world
+     * @param height the height of the world
+     */
+    VectorForceKernel(int width, int height) {
+        this.width = width;
+        this.height = height;
+        tail = new ScalarForceKernel(width, height);
+    }
+
+    /**
+     * Adds the force of the particles from index from to index to to the force array. The particles that don't fill
+     * a whole vector are done by the scalar kernel.
+     *
+     * @param x               x coordinate of the position
+     * @param y               y coordinate of the position
+     * @param xs              x coordinates of the particles
+     * @param ys              y coordinates of the particles
+     * @param from            the first index
+     * @param to              the index after the last index
+     * @param rangeMinSquared the squared minimum range, exclusive
+     * @param rangeMaxSquared the squared maximum range, exclusive
+     * @param force           array the force gets added to
+     */
+    @Override
+    public void accumulate(float x, float y, float[] xs, float[] ys, int from, int to, float rangeMinSquared,
+                           float rangeMaxSquared, float[] force) {
+        accumulate(x, y, xs, ys, from, to, rangeMinSquared, rangeMaxSquared, force, false);
+    }
+
+    /**
+     * Adds the force like accumulate() and counts the particles in range.
+     *
+     * @param x               x coordinate of the position
+     * @param y               y coordinate of the position
+     * @param xs              x coordinates of the particles
+     * @param ys              y coordinates of the particles
+     * @param from            the first index
+     * @param to              the index after the last index
+     * @param rangeMinSquared the squared minimum range, exclusive
+     * @param rangeMaxSquared the squared maximum range, exclusive
+     * @param force           array the force gets added to
+     * @return                the amount of particles in range
+     */
+    @Override
+    public int accumulateCounting(float x, float y, float[] xs, float[] ys, int from, int to, float rangeMinSquared,
+                                  float rangeMaxSquared, float[] force) {
+        return accumulate(x, y, xs, ys, from, to, rangeMinSquared, rangeMaxSquared, force, true);
+    }
+
+    /**
+     * Adds the force of the particles from index from to index to to the force array and counts the particles in
+     * range if asked to. The count is the same for every iteration, so the loop is compiled without it when it is
+     * off.
+     *
+     * @param x               x coordinate of the position
+     * @param y               y coordinate of the position
+     * @param xs              x coordinates of the particles
+     * @param ys              y coordinates of the particles
+     * @param from            the first index
+     * @param to              the index after the last index
+     * @param rangeMinSquared the squared minimum range, exclusive
+     * @param rangeMaxSquared the squared maximum range, exclusive
+     * @param force           array the force gets added to
+     * @param count           true to count the particles in range
+     * @return                the amount of particles in range, only complete if counted
+     */
+    private int accumulate(float x, float y, float[] xs, float[] ys, int from, int to, float rangeMinSquared,
+                           float rangeMaxSquared, float[] force, boolean count) {
+        int inRangeCount = 0;
+        int end = from + SPECIES.loopBound(to - from);
+
+        if (end > from) {
+            float halfWidth = width / 2F;
+            float halfHeight = height / 2F;
+            FloatVector sumX = FloatVector.zero(SPECIES);
+            FloatVector sumY = FloatVector.zero(SPECIES);
+
+            for (int i = from; i < end; i += SPECIES.length()) {
+                FloatVector dx = FloatVector.fromArray(SPECIES, xs, i).sub(x);
+                FloatVector dy = FloatVector.fromArray(SPECIES, ys, i).sub(y);
+
+                // shortest way around the world
+                dx = dx.sub(width, dx.compare(VectorOperators.GT, halfWidth))
+                        .add(width, dx.compare(VectorOperators.LE, -halfWidth));
+                dy = dy.sub(height, dy.compare(VectorOperators.GT, halfHeight))
+                        .add(height, dy.compare(VectorOperators.LE, -halfHeight));
+
+                FloatVector distanceSquared = dx.mul(dx).add(dy.mul(dy));
+                VectorMask<Float> inRange = distanceSquared.compare(VectorOperators.GT, rangeMinSquared)
+                        .and(distanceSquared.compare(VectorOperators.LT, rangeMaxSquared));
+
+                FloatVector distance = distanceSquared.sqrt();
+
+                // lanes out of range, including a distance of 0, keep the old sum
+                sumX = sumX.add(dx.div(distance), inRange);
+                sumY = sumY.add(dy.div(distance), inRange);
+
+                if (count)
+                    inRangeCount += inRange.trueCount();
+            }
+
+            force[0] += sumX.reduceLanes(VectorOperators.ADD);
+            force[1] += sumY.reduceLanes(VectorOperators.ADD);
+        }
+
+        if (end < to)
+            inRangeCount += tail.accumulateCounting(x, y, xs, ys, end, to, rangeMinSquared, rangeMaxSquared, force);
+
+        return inRangeCount;
+    }
+}
@@ -0,0 +1,59 @@
+package particlesimulation.model;
+
+/**
+ * Velocity Verlet in its leapfrog form: the closing half kick of a step and the opening half kick of the next one
+ * use the same force, so they are merged into one kick of (previousDt + dt) / 2. That needs one force per step and
+ * no stored accelerations, and stays second order when the adaptive step changes dt. The stored velocity is the one
+ * half a step ahead of the position.
+ */
+public class VerletIntegrator implements Integrator {
+    /**
+     * The name of the integrator.
+     */
+    public static final String NAME = "verlet";
+
+    private float dt;
+    private float kick;
+
+    /**
+     * Prepares a step.
+     *
+     * @param dt         the length of the step
+     * @param previousDt the length of the step before, 0 for the first step
+     */
+    @Override
+    public void prepare(float dt, float previousDt) {
+        this.dt = dt;
+        kick = (previousDt + dt) / 2;
+    }
+
+    /**
+     * Applies the force to the velocity and moves the tendency by the velocity.
+     *
+     * @param particles   the particles
+     * @param slot        the slot of the particle
+     * @param fx          the force x
+     * @param fy          the force y
+     * @param velocityCap the velocity cap of the particle type, -1 means no cap
+     */
+    @Override
+    public void integrate(ParticleStore particles, int slot, float fx, float fy, float velocityCap) {
+        float[] velocityX = particles.getVelocityX();
+        float[] velocityY = particles.getVelocityY();
+        velocityX[slot] = ParticleStore.capVelocity(velocityX[slot] + fx * kick, velocityCap);
+        velocityY[slot] = ParticleStore.capVelocity(velocityY[slot] + fy * kick, velocityCap);
+
+        particles.getTendencyX()[slot] += velocityX[slot] * dt;
+        particles.getTendencyY()[slot] += velocityY[slot] * dt;
+    }
+
+    /**
+     * Returns the name, which Integrator.forName() turns back into an integrator.
+     *
+     * @return the name
+     */
+    @Override
+    public String getName() {
+        return NAME;
+    }
+}
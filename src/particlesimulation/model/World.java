@@ -1,25 +1,65 @@
 package particlesimulation.model;
 
-import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.SplittableRandom;
 
 /**
  * Represents the world, containing the particles. Creates update with threads.
  */
 public class World {
-    private ExecutorService executor;
-    private ThreadPoolExecutor pool;
-    private List<Rule> ruleThreads;
+    /**
+     * The amount of particle types a world has if nothing else is chosen.
+     */
+    public static final int DEFAULT_TYPES = 5;
+
+    /**
+     * The biggest amount of particle types, the type of a particle is stored in a byte.
+     */
+    public static final int MAX_TYPES = 127;
+
+    private static final MetricTimer[] PHASE_TIMERS = {MetricTimer.GRID, MetricTimer.FORCES, MetricTimer.INTEGRATION,
+            MetricTimer.MOVEMENT};
+
+    private volatile TickScheduler scheduler;
     private Rule[] rules;
+    private FusedRule fusedRule;
     private int width;
     private int height;
-    private Particle[][] worldArray;
-    private ArrayList<ArrayList <Particle>> particles;
+    private int[] slots;
+    private FreeCells freeCells;
+    private ParallelMovement movement;
+    private CollisionGrid collisionGrid;
+    private float collisionRadius;
+    private ParticleStore particles;
     private ParticleType[] particleTypes;
+    private SpatialGrid grid;
+    private BarnesHutTree[] trees;
+    private ForceBuffers forces;
+    private NeighborSearch neighborSearch;
+    private ForceKernel kernel;
+    private boolean vectorKernel;
+    private boolean deterministic;
+    private final Object tableLock;
+    private final float[] strengths;
+    private volatile InteractionTable table;
+    private InteractionTable tickTable;
+    private SplittableRandom random;
+    private final long[] phaseNanos;
+    private final Metrics metrics;
+    private int collisions;
+    private Integrator integrator;
+    private float friction;
+    private float timeStep;
+    private StepController stepController;
+    private float tickDt;
+    private float previousDt;
+    private double simulatedTime;
+    private FramePool framePool;
+    private FrameDelta[] deltas;
+    private FrameDelta delta;
 
     /**
      * Initializes a new World.
@@ -28,30 +68,121 @@ public class World {
      * @param height the height of the world
      */
     public World(int width, int height) {
-        executor = Executors.newCachedThreadPool();
-        pool = (ThreadPoolExecutor) executor;
+        this(width, height, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Initializes a new World.
+     *
+     * @param width   the width of the world
+     * @param height  the height of the world
+     * @param workers the amount of threads used to compute a tick
+     */
+    public World(int width, int height, int workers) {
+        this(width, height, workers, DEFAULT_TYPES);
+    }
+
+    /**
+     * Initializes a new World.
+     *
+     * @param width   the width of the world
+     * @param height  the height of the world
+     * @param workers the amount of threads used to compute a tick
+     * @param types   the amount of particle types, from 1 to MAX_TYPES
+     */
+    public World(int width, int height, int workers, int types) {
+        this(width, height, workers, types, 0);
+    }
+
+    /**
+     * Initializes a new World. With a collision radius the world is continuous: particles keep float positions and
+     * only collide with particles closer than the radius, and nothing is stored per pixel, so a big world with few
+     * particles needs little memory. Recording the changes, encodeFrame() for remote viewers and a TrajectoryRecorder
+     * stay that way; only full frames from particleArrayToIntArray() and exportFrame(), which the window draws, have
+     * a cell for every pixel. Without a radius every particle has a pixel of its own.
+     *
+     * @param width           the width of the world
+     * @param height          the height of the world
+     * @param workers         the amount of threads used to compute a tick
+     * @param types           the amount of particle types, from 1 to MAX_TYPES
+     * @param collisionRadius the collision radius, 0 for one particle per pixel
+     */
+    public World(int width, int height, int workers, int types, float collisionRadius) {
+        if (types < 1 || types > MAX_TYPES)
+            throw new IllegalArgumentException("types must be between 1 and " + MAX_TYPES + ", got " + types);
+        if ((long) width * height > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("the world can have at most " + Integer.MAX_VALUE + " pixels, got "
+                    + width + " x " + height);
+
+        scheduler = new TickScheduler(workers);
+        random = new SplittableRandom();
+        phaseNanos = new long[TickPhase.values().length];
+        metrics = new Metrics();
 
         this.width = width;
         this.height = height;
-        worldArray = new Particle[height][width];
+        framePool = new FramePool(width, height);
+        deltas = new FrameDelta[]{new FrameDelta(width), new FrameDelta(width)};
+        this.collisionRadius = collisionRadius;
+        if (collisionRadius > 0) {
+            collisionGrid = new CollisionGrid(width, height, collisionRadius);
+        } else {
+            slots = new int[width * height];
+            Arrays.fill(slots, -1);
+            freeCells = new FreeCells(width * height);
+            movement = new ParallelMovement(width, height);
+        }
+        neighborSearch = NeighborSearch.UNIFORM_GRID;
+        integrator = new RelaxationIntegrator();
+        friction = 0.9F;
+        timeStep = 1;
+        tickDt = 1;
+        vectorKernel = true;
+        kernel = ForceKernel.create(width, height, true);
+        tableLock = new Object();
+        strengths = new float[types * types];
 
-        createParticleLists();
+        createParticleLists(types);
         createRuleThreads();
+        synchronized (tableLock) {
+            compileTable();
+        }
+        useTable();
     }
 
 
     /**
-     * Creates threads that are used to generade world update.
+     * Creates the rules that are used to generade world update, one per type pair, and the fused rule that computes
+     * all of them at once.
      */
     private void createRuleThreads() {
-        ruleThreads = new LinkedList<>();
-        rules = new Rule[25];
+        int types = particleTypes.length;
+        rules = new Rule[types * types];
 
-        for (int i = 0; i < 5; i++)
-            for (int j = 0; j < 5; j++) {
-                rules[i * 5 + j] = new Rule(particles.get(i), particles.get(j), 0, width, height);
-                ruleThreads.add(rules[i * 5 + j]);
-            }
+        for (int i = 0; i < types; i++)
+            for (int j = 0; j < types; j++)
+                rules[i * types + j] = new Rule(particles, particleTypes[i], particleTypes[j], width, height, grid,
+                        trees[j], forces);
+
+        fusedRule = new FusedRule(particles, width, height, grid, forces);
+        fusedRule.setMetrics(metrics);
+
+        for (var rule : rules) {
+            rule.setForceKernel(kernel);
+            rule.setMetrics(metrics);
+        }
+    }
+
+    /**
+     * Changes the amount of threads used to compute a tick. Synchronized like tick(), so the old threads are only
+     * shut down between ticks.
+     *
+     * @param workers the amount of threads
+     */
+    public synchronized void setWorkers(int workers) {
+        TickScheduler old = scheduler;
+        scheduler = new TickScheduler(workers);
+        old.shutdown();
     }
 
     /**
@@ -61,44 +192,400 @@ public class World {
      * @param value the new strength of g
      */
     public void changeRule(int rule, int value) {
-        rules[rule].setG((float) value / 200);
+        synchronized (tableLock) {
+            strengths[rule] = (float) value / 200;
+            compileTable();
+        }
+    }
+
+    /**
+     * Changes the strengths of all rules at once, so the interaction table is compiled once instead of once per rule.
+     *
+     * @param values the new strengths, row by row like changeRule()
+     */
+    public void setRules(int[] values) {
+        checkLength(values, strengths.length, "rules");
+
+        synchronized (tableLock) {
+            for (int rule = 0; rule < values.length; rule++)
+                strengths[rule] = (float) values[rule] / 200;
+            compileTable();
+        }
+    }
+
+    /**
+     * Changes the ranges of all particle types at once.
+     *
+     * @param values the new ranges, one per type
+     */
+    public void setRanges(int[] values) {
+        checkLength(values, particleTypes.length, "ranges");
+
+        synchronized (tableLock) {
+            for (int i = 0; i < values.length; i++)
+                particleTypes[i].setRangeMax(values[i]);
+            compileTable();
+        }
+    }
+
+    /**
+     * Changes the velocity caps of all particle types at once.
+     *
+     * @param values the new velocity caps, one per type
+     */
+    public void setVelocityCaps(int[] values) {
+        checkLength(values, particleTypes.length, "velocity caps");
+
+        synchronized (tableLock) {
+            for (int i = 0; i < values.length; i++)
+                particleTypes[i].setVelocityCap(values[i]);
+            compileTable();
+        }
+    }
+
+    /**
+     * Checks the length of bulk values.
+     *
+     * @param values                    the values
+     * @param length                    the expected length
+     * @param name                      the name used in the error message
+     * @throws IllegalArgumentException if the length is wrong
+     */
+    private static void checkLength(int[] values, int length, String name) {
+        if (values.length != length)
+            throw new IllegalArgumentException("expected " + length + " " + name + ", got " + values.length);
+    }
+
+    /**
+     * Compiles the rule strengths and the settings of the particle types into a new interaction table and publishes
+     * it. The next tick uses the new table. Only called while holding the table lock, so no change gets lost.
+     */
+    private void compileTable() {
+        table = new InteractionTable(particleTypes, strengths);
+    }
+
+    /**
+     * Takes the latest interaction table for the next tick and hands it to the rules.
+     */
+    private void useTable() {
+        tickTable = table;
+
+        for (var rule : rules)
+            rule.setInteractionTable(tickTable);
+        fusedRule.setInteractionTable(tickTable);
+    }
+
+    /**
+     * Changes how the rules find particles that are in range. Brute force is kept as reference for the uniform grid.
+     *
+     * @param neighborSearch the neighbor search
+     */
+    public synchronized void setNeighborSearch(NeighborSearch neighborSearch) {
+        this.neighborSearch = neighborSearch;
+
+        for (var rule : rules)
+            rule.setNeighborSearch(neighborSearch);
+    }
+
+    /**
+     * Chooses between the SIMD and the scalar kernel for the uniform grid. The SIMD kernel needs the
+     * jdk.incubator.vector module, without it the scalar kernel is used anyway. In deterministic mode the scalar
+     * kernel is always used.
+     *
+     * @param vector true to use the SIMD kernel if possible
+     */
+    public synchronized void setVectorKernel(boolean vector) {
+        vectorKernel = vector;
+        chooseKernel();
+    }
+
+    /**
+     * Turns on or off the deterministic mode. A tick never depends on the amount of threads: every particle gets its
+     * force from one thread, the forces are summed in a fixed order and particles move one after another in slot
+     * order. The deterministic mode additionally uses the scalar kernel, because the result of the SIMD kernel
+     * depends on the vector size of the processor. Together with setSeed() two runs with the same settings give
+     * bit-identical states, see stateHash().
+     *
+     * @param deterministic true to turn on the deterministic mode
+     */
+    public synchronized void setDeterministic(boolean deterministic) {
+        this.deterministic = deterministic;
+        chooseKernel();
+    }
+
+    /**
+     * Returns if the deterministic mode is on.
+     *
+     * @return true if the deterministic mode is on
+     */
+    public boolean isDeterministic() {
+        return deterministic;
+    }
+
+    /**
+     * Creates the kernel for the current settings and hands it to the rules.
+     */
+    private void chooseKernel() {
+        kernel = ForceKernel.create(width, height, vectorKernel && !deterministic);
+
+        for (var rule : rules)
+            rule.setForceKernel(kernel);
+    }
+
+    /**
+     * Returns if the SIMD kernel is used.
+     *
+     * @return true if the SIMD kernel is used, false if the scalar kernel is used
+     */
+    public boolean isVectorKernel() {
+        return !(kernel instanceof ScalarForceKernel);
+    }
+
+    /**
+     * Changes how the forces move the particles, see Integrator. The default is the RelaxationIntegrator.
+     *
+     * @param integrator the integrator, only used by this world
+     */
+    public synchronized void setIntegrator(Integrator integrator) {
+        this.integrator = integrator;
+        previousDt = 0;
+    }
+
+    /**
+     * Returns the integrator.
+     *
+     * @return the integrator
+     */
+    public synchronized Integrator getIntegrator() {
+        return integrator;
+    }
+
+    /**
+     * Changes the friction, the factor the velocity is multiplied with after a step of length 1. A step of length dt
+     * multiplies with friction^dt.
+     *
+     * @param friction the friction, from 0 to 1 (0.9)
+     */
+    public synchronized void setFriction(float friction) {
+        if (!(friction >= 0 && friction <= 1))
+            throw new IllegalArgumentException("friction must be between 0 and 1, got " + friction);
+
+        this.friction = friction;
+    }
+
+    /**
+     * Returns the friction.
+     *
+     * @return the friction
+     */
+    public synchronized float getFriction() {
+        return friction;
+    }
+
+    /**
+     * Changes the length of a step, used while no StepController chooses it.
+     *
+     * @param timeStep the length of a step in ticks of the original scheme (1)
+     */
+    public synchronized void setTimeStep(float timeStep) {
+        if (!(timeStep > 0))
+            throw new IllegalArgumentException("the time step must be above 0, got " + timeStep);
+
+        this.timeStep = timeStep;
+    }
+
+    /**
+     * Lets a StepController choose the length of every step, or goes back to the fixed time step.
+     *
+     * @param stepController the controller, null for the fixed time step
+     */
+    public synchronized void setStepController(StepController stepController) {
+        this.stepController = stepController;
+    }
+
+    /**
+     * Returns the length of the next step.
+     *
+     * @return the length of the next step
+     */
+    public synchronized float getTimeStep() {
+        return stepController != null ? stepController.getDt() : timeStep;
+    }
+
+    /**
+     * Returns the time simulated by all ticks so far, the sum of their steps.
+     *
+     * @return the simulated time, in ticks of the original scheme
+     */
+    public synchronized double getSimulatedTime() {
+        return simulatedTime;
+    }
+
+    /**
+     * Returns the factor the velocities get multiplied with after the particles of the last step moved.
+     *
+     * @return friction^dt of the last step
+     */
+    synchronized float getDamping() {
+        return (float) Math.pow(friction, tickDt);    // exactly friction for a step of 1
+    }
+
+    /**
+     * Changes the opening angle of the Barnes-Hut neighbor search. 0 is exact, bigger values are faster but less
+     * exact.
+     *
+     * @param openingAngle the opening angle
+     */
+    public synchronized void setOpeningAngle(float openingAngle) {
+        for (var rule : rules)
+            rule.setOpeningAngle(openingAngle);
+    }
+
+    /**
+     * Builds the structures the current neighbor search needs.
+     */
+    private void buildNeighborSearch() {
+        if (neighborSearch == NeighborSearch.UNIFORM_GRID)
+            grid.rebuild(particles, tickTable.getMaxRange());
+        else if (neighborSearch == NeighborSearch.FUSED_GRID)
+            grid.rebuildAllTypes(particles, tickTable.getMaxRange());
+        else if (neighborSearch == NeighborSearch.BARNES_HUT)
+            for (int i = 0; i < trees.length; i++)
+                trees[i].rebuild(particles, i);
+
+        forces.ensureCapacity(particles.size(), neighborSearch == NeighborSearch.FUSED_GRID ? 1 : trees.length);
+    }
+
+    /**
+     * Compares the forces of the current neighbor search with the forces of a reference neighbor search, without
+     * changing the world.
+     *
+     * @param reference the neighbor search that is used as reference, should be exact
+     * @return          the root mean square of the force errors, relative to the root mean square of the reference
+     *                  forces
+     */
+    public synchronized double measureForceError(NeighborSearch reference) {
+        NeighborSearch current = neighborSearch;
+        int size = particles.size();
+        float[] currentX = new float[size];
+        float[] currentY = new float[size];
+
+        useTable();
+        buildNeighborSearch();
+        scheduler.forEachRange(size, this::gravity);
+        for (int i = 0; i < size; i++) {
+            currentX[i] = forces.sumX(i);
+            currentY[i] = forces.sumY(i);
+        }
+
+        setNeighborSearch(reference);
+        buildNeighborSearch();
+        scheduler.forEachRange(size, this::gravity);
+        setNeighborSearch(current);
+
+        double error = 0;
+        double total = 0;
+        for (int i = 0; i < size; i++) {
+            double dx = currentX[i] - forces.sumX(i);
+            double dy = currentY[i] - forces.sumY(i);
+            error += dx * dx + dy * dy;
+            total += (double) forces.sumX(i) * forces.sumX(i) + (double) forces.sumY(i) * forces.sumY(i);
+        }
+
+        return total == 0 ? 0 : Math.sqrt(error / total);
     }
 
     /**
      * Checks if a particle wants to move.
      * If yes, moves it and return true, otherwise return false.
      *
-     * @param p the particle
-     * @return  true of particle moved, no otherwise
+     * @param slot the slot of the particle
+     * @return     true of particle moved, no otherwise
      */
-    private boolean didMove(Particle p) {
-        int currentX = (int) p.getX();
-        int currentY = (int) p.getY();
+    private boolean didMove(int slot) {
+        int currentX = (int) particles.getX()[slot];
+        int currentY = (int) particles.getY()[slot];
 
         // used to find a bug
         // int tx = (int) p.getTendencyX();
         // int ty = (int) p.getTendencyY();
 
-        int targetX = fitFloatToWorldWidth(p.getTendencyX());
-        int targetY = fitFloatToWorldHeight(p.getTendencyY());
+        int targetX = fitFloatToWorldWidth(particles.getTendencyX()[slot]);
+        int targetY = fitFloatToWorldHeight(particles.getTendencyY()[slot]);
 
         // used to find a bug
         // if (targetX < 0 || targetX > width - 1) System.out.println("tx " + tx + " -> " + targetX);
         // if (targetY < 0 || targetY > height - 1) System.out.println("ty " + ty + " -> " + targetY);
 
         // move
-        if (worldArray[targetY][targetX] == null) {
-            worldArray[currentY][currentX] = null;
-            worldArray[targetY][targetX] = p;
-            p.setYX(targetX, targetY);
+        int currentCell = currentY * width + currentX;
+        int targetCell = targetY * width + targetX;
+
+        if (slots[targetCell] == -1) {
+            slots[currentCell] = -1;
+            slots[targetCell] = slot;
+            freeCells.move(currentCell, targetCell);
+            particles.setYX(slot, targetX, targetY);
+
+            if (delta != null)
+                delta.add(currentCell, targetCell, particleTypes[particles.getType()[slot]].getType());
 
             return true;
         }
 
-        // collision
+        // collision, unless the particle stays where it is
+        if (targetCell != currentCell)
+            collisions++;
+
         return false;
     }
 
+    /**
+     * Checks if a particle of a continuous world wants to move, and moves it if no other particle is closer to the
+     * target than the collision radius. The recorded changes only see the pixels the particle is on.
+     *
+     * @param slot the slot of the particle
+     * @return     true of particle moved, no otherwise
+     */
+    private boolean didMoveContinuous(int slot) {
+        float currentX = particles.getX()[slot];
+        float currentY = particles.getY()[slot];
+        float targetX = wrapContinuous(particles.getTendencyX()[slot], width);
+        float targetY = wrapContinuous(particles.getTendencyY()[slot], height);
+
+        if (targetX == currentX && targetY == currentY)
+            return false;
+
+        if (!collisionGrid.isFree(targetX, targetY, slot, particles)) {
+            collisions++;
+            return false;
+        }
+
+        collisionGrid.move(slot, currentX, currentY, targetX, targetY);
+        particles.setYX(slot, targetX, targetY);
+
+        if (delta != null)
+            delta.add((int) currentY * width + (int) currentX, (int) targetY * width + (int) targetX,
+                    particleTypes[particles.getType()[slot]].getType());
+
+        return true;
+    }
+
+    /**
+     * Wraps a coordinate of a continuous world around the world.
+     *
+     * @param value    the coordinate
+     * @param maxValue the size of the world on the axis
+     * @return         the coordinate, at least 0 and less than maxValue
+     */
+    static float wrapContinuous(float value, int maxValue) {
+        float wrapped = value % maxValue;
+        if (wrapped < 0)
+            wrapped += maxValue;
+
+        return wrapped < maxValue ? wrapped : 0;    // a tiny negative value rounds up to maxValue
+    }
+
     /**
      * Calls method to correct the x coordinate of a particle, so it doesn't move outside of the world.
      *
@@ -126,7 +613,7 @@ public class World {
      * @param maxValue the biggest value possible of the coordinate
      * @return         the corrected coordinate
      */
-    private int fitFloatToWorld(float value, int maxValue) {
+    static int fitFloatToWorld(float value, int maxValue) {
         int i = (int) value;
 
         if (i < 0) i = maxValue + i % maxValue;
@@ -136,45 +623,253 @@ public class World {
     }
 
     /**
-     * Creates a update of the world.
-     * Starts the threads to update the world. Call method to move particles and create friction.
+     * Applies the forces of all rules to the velocity of a range of particles through the integrator. The forces are
+     * summed in the same order every tick, so the result doesn't depend on which rule finished first.
+     *
+     * @param from the first slot
+     * @param to   the slot after the last slot
      */
-    public void tick() {
-        for (var thread : ruleThreads)
-            executor.execute(thread);
+    private void integrate(int from, int to) {
+        byte[] type = particles.getType();
 
-        while (pool.getActiveCount() > 0) {
-            try {
-                Thread.sleep(1);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-            //System.out.println("Current threads in pool: " + pool.getActiveCount());
+        for (int i = from; i < to; i++)
+            integrator.integrate(particles, i, forces.sumX(i), forces.sumY(i), tickTable.getVelocityCap(type[i]));
+    }
+
+    /**
+     * Computes the forces of all rules on a range of particles.
+     *
+     * @param from the first slot
+     * @param to   the slot after the last slot
+     */
+    private void gravity(int from, int to) {
+        if (neighborSearch == NeighborSearch.FUSED_GRID) {
+            fusedRule.gravity(from, to);
+            return;
         }
 
+        for (var rule : rules)
+            rule.gravity(from, to);
+    }
+
+    /**
+     * Creates a update of the world.
+     * Computes the forces in parallel, then applies them in parallel. Call method to move particles and create
+     * friction. The whole tick uses the interaction table that was published when it started.
+     * The result doesn't depend on the amount of workers: each particle is written by one worker only, the rules add
+     * their forces in rule order and the particles move as if one after another in slot order, so a collision is
+     * always won by the particle in the lower slot. With more than one worker the movement runs in parallel through
+     * ParallelMovement, which gives exactly the result of the serial loop. A continuous world always moves its
+     * particles serially.
+     * A tick is one step of the integrator; with a StepController its length follows the velocities the particles
+     * moved with.
+     */
+    public synchronized void tick() {
+        TickScheduler scheduler = this.scheduler;
+        long tickStart = System.nanoTime();
+        long start = computeTendencies(scheduler);
+        float damping = getDamping();
+
         try {
-            for (int i = 0; i < particles.size(); i++)
-                for (var p : particles.get(i)) {
-                    didMove(p);
-                    p.friction(0.9F);
+            collisions = 0;
+            if (stepController != null)
+                stepController.observe(particles);
+
+            if (collisionGrid != null) {
+                for (int i = 0; i < particles.size(); i++) {
+                    didMoveContinuous(i);
+                    particles.friction(i, damping);
                 }
+            } else if (scheduler.getWorkers() > 1) {
+                collisions = movement.move(scheduler, particles, slots, freeCells, damping);
+                recordMoves();
+            } else {
+                for (int i = 0; i < particles.size(); i++) {
+                    didMove(i);
+                    particles.friction(i, damping);
+                }
+            }
         } catch (Exception e) {
             e.printStackTrace();
         }
+        simulatedTime += tickDt;
+        long end = addPhaseTime(TickPhase.MOVEMENT, start);
+
+        metrics.add(MetricCounter.COLLISIONS, collisions);
+        metrics.record(MetricTimer.TICK, end - tickStart);
     }
 
+    /**
+     * Computes the forces of a tick and applies them to the velocities and tendencies, without moving the particles.
+     * A strip worker of a distributed world only runs this part on its slice, the coordinator moves the particles.
+     *
+     * @return the time the integration finished, in nanoseconds
+     */
+    synchronized long computeTendencies() {
+        return computeTendencies(scheduler);
+    }
+
+    /**
+     * Computes the forces of a tick and applies them to the velocities and tendencies, without moving the particles.
+     *
+     * @param scheduler the scheduler of the tick, read once so the whole tick uses the same threads
+     * @return          the time the integration finished, in nanoseconds
+     */
+    private long computeTendencies(TickScheduler scheduler) {
+        long start = System.nanoTime();
+
+        useTable();
+        buildNeighborSearch();
+        start = addPhaseTime(TickPhase.GRID, start);
+
+        scheduler.forEachRange(particles.size(), this::gravity);
+        start = addPhaseTime(TickPhase.FORCES, start);
+
+        tickDt = getTimeStep();
+        integrator.prepare(tickDt, previousDt);
+        scheduler.forEachRange(particles.size(), this::integrate);
+        previousDt = tickDt;
+        return addPhaseTime(TickPhase.INTEGRATION, start);
+    }
 
     /**
-     * Created the particle lists.
+     * Adds the moves of the parallel movement to the recorded changes, in slot order like the serial movement.
      */
-    private void createParticleLists() {
+    private void recordMoves() {
+        if (delta == null)
+            return;
+
+        byte[] type = particles.getType();
+        for (int i = 0; i < particles.size(); i++)
+            if (movement.moved(i))
+                delta.add(movement.getSource(i), movement.getTarget(i), particleTypes[type[i]].getType());
+    }
+
+    /**
+     * Adds the time since the start of a phase to the total time of the phase.
+     *
+     * @param phase the phase
+     * @param start the time the phase started, in nanoseconds
+     * @return      the current time, which is the start of the next phase
+     */
+    private long addPhaseTime(TickPhase phase, long start) {
+        long now = System.nanoTime();
+        phaseNanos[phase.ordinal()] += now - start;
+        metrics.record(PHASE_TIMERS[phase.ordinal()], now - start);
+
+        return now;
+    }
+
+    /**
+     * Returns the time spent in a phase over all ticks.
+     *
+     * @param phase the phase
+     * @return      the time in nanoseconds
+     */
+    public long getPhaseNanos(TickPhase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    /**
+     * Returns the particles, for a strip worker that fills its slice itself.
+     *
+     * @return the particles
+     */
+    ParticleStore getParticleStore() {
+        return particles;
+    }
+
+    /**
+     * Returns the biggest maximum range of the latest interaction table, which decides the cell size of the grid.
+     *
+     * @return the biggest maximum range
+     */
+    int getMaxRange() {
+        return table.getMaxRange();
+    }
+
+    /**
+     * Returns the metrics of this world. They are turned off until enabled.
+     *
+     * @return the metrics
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the seed used to place new particles, so the same seed places particles at the same coordinates.
+     *
+     * @param seed the seed
+     */
+    public synchronized void setSeed(long seed) {
+        random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Computes a hash over the state of every particle: type, position, tendency and velocity, bit by bit. Two worlds
+     * with the same hash after the same amount of ticks took the same trajectory.
+     *
+     * @return the hash
+     */
+    public synchronized long stateHash() {
+        return stateHash(particles);
+    }
+
+    /**
+     * Computes the hash of stateHash() over particles that are not in a world, like the particles a distributed world
+     * collects from its workers.
+     *
+     * @param particles the particles
+     * @return          the hash
+     */
+    static long stateHash(ParticleStore particles) {
+        int size = particles.size();
+        long hash = size;
+
+        for (int i = 0; i < size; i++) {
+            hash = mix(hash, particles.getType()[i]);
+            hash = mix(hash, Float.floatToRawIntBits(particles.getX()[i]));
+            hash = mix(hash, Float.floatToRawIntBits(particles.getY()[i]));
+            hash = mix(hash, Float.floatToRawIntBits(particles.getTendencyX()[i]));
+            hash = mix(hash, Float.floatToRawIntBits(particles.getTendencyY()[i]));
+            hash = mix(hash, Float.floatToRawIntBits(particles.getVelocityX()[i]));
+            hash = mix(hash, Float.floatToRawIntBits(particles.getVelocityY()[i]));
+        }
+
+        return hash;
+    }
+
+    /**
+     * Mixes a value into a hash.
+     *
+     * @param hash  the hash
+     * @param value the value
+     * @return      the new hash
+     */
+    private static long mix(long hash, int value) {
+        hash ^= value;
+        hash *= 0x9E3779B97F4A7C15L;
+
+        return hash ^ (hash >>> 29);
+    }
+
+    /**
+     * Created the particle store.
+     *
+     * @param types the amount of particle types
+     */
+    private void createParticleLists(int types) {
         int n = 0;
-        particles = new ArrayList<>(5);
-        particleTypes = new ParticleType[5];
+        particles = new ParticleStore();
+        particleTypes = new ParticleType[types];
+        grid = new SpatialGrid(width, height, particleTypes.length);
+        trees = new BarnesHutTree[particleTypes.length];
+        forces = new ForceBuffers(particleTypes.length);
 
-        for (int i = 0; i < 5; i++) {
-            particles.add(new ArrayList<>());
+        for (int i = 0; i < types; i++) {
             particleTypes[i] = new ParticleType(i + 1, 5, 0, 90);
+            trees[i] = new BarnesHutTree(width, height);
             addParticles(i, n);
         }
     }
@@ -185,43 +880,88 @@ public class World {
      * @param index  the particle type
      * @param amount the amount to be removed
      */
-    public void removeParticles(int index, int amount) {
-        amount = Math.min(amount, particles.get(index).size());
+    public synchronized void removeParticles(int index, int amount) {
+        byte[] type = particles.getType();
 
-        for (int i = 0; i < amount; i++)
-            particles.get(index).remove(0);
+        for (int slot = particles.size() - 1; slot >= 0 && amount > 0; slot--) {
+            if (type[slot] != index)
+                continue;
 
-        // clear worldarray
-        for (int y= 0; y < worldArray.length; y++)
-            for (int x = 0; x < worldArray[y].length; x++)
-                worldArray[y][x] = null;
+            int x = (int) particles.getX()[slot];
+            int y = (int) particles.getY()[slot];
+            if (collisionGrid != null) {
+                collisionGrid.remove(slot, particles.getX()[slot], particles.getY()[slot]);
+            } else {
+                slots[y * width + x] = -1;
+                freeCells.vacate(y * width + x);
+            }
 
-        // rebuild worldarray
-        for (int i = 0; i < particles.size(); i++)
-            for (var p : particles.get(i))
-                if (worldArray[(int) p.getY()][(int) p.getY()] == null)
-                    worldArray[(int) p.getY()][(int) p.getX()] = p;
+            if (delta != null)
+                delta.add(y * width + x, -1, particleTypes[index].getType());
+
+            // the last particle got moved into the slot
+            int moved = particles.remove(slot);
+            if (moved != -1 && collisionGrid != null)
+                collisionGrid.renumber(moved, slot, particles.getX()[slot], particles.getY()[slot]);
+            else if (moved != -1)
+                slots[(int) particles.getY()[slot] * width + (int) particles.getX()[slot]] = slot;
+
+            amount--;
+        }
+    }
+
+    /**
+     * Adds a certain amount of particles of a specific type on random free pixels. If there are less free pixels than
+     * particles, only as many particles as fit are added. A continuous world places them on random free positions
+     * and stops once it doesn't find one after a few tries.
+     *
+     * @param index  type of particle
+     * @param amount amount to be added
+     */
+    public synchronized void addParticles(int index, int amount) {
+        if (collisionGrid != null) {
+            addParticlesContinuous(index, amount);
+            return;
+        }
+
+        for (int i = 0; i < amount; i++) {
+            int cell = freeCells.sample(random);
+            if (cell == -1)
+                return;
+
+            int x = cell % width;
+            int y = cell / width;
+            slots[cell] = particles.add(index, x, y);
+            freeCells.occupy(cell);
+
+            if (delta != null)
+                delta.add(-1, cell, particleTypes[index].getType());
+        }
     }
 
     /**
-     * Adds a certain amount of particles of a specific type.
+     * Adds particles on random free positions of a continuous world.
      *
      * @param index  type of particle
      * @param amount amount to be added
      */
-    public void addParticles(int index, int amount) {
+    private void addParticlesContinuous(int index, int amount) {
         for (int i = 0; i < amount; i++) {
-            float x;
-            float y;
-            do {
-                x = randomInt(width - 1);
-                y = randomInt(height - 1);
-            } while (worldArray[(int) y][(int) x] != null);
+            float x = 0;
+            float y = 0;
+            boolean free = false;
+            for (int attempt = 0; attempt < 100 && !free; attempt++) {
+                x = wrapContinuous((float) (random.nextDouble() * width), width);
+                y = wrapContinuous((float) (random.nextDouble() * height), height);
+                free = collisionGrid.isFree(x, y, -1, particles);
+            }
+            if (!free)
+                return;
+
+            collisionGrid.insert(particles.add(index, x, y), x, y);
 
-            //int type = index + 1;
-            Particle p = new Particle(particleTypes[index], x, y);
-            particles.get(index).add(p);
-            worldArray[(int) y][(int) x] = p;
+            if (delta != null)
+                delta.add(-1, (int) y * width + (int) x, particleTypes[index].getType());
         }
     }
 
@@ -230,39 +970,161 @@ public class World {
      *
      * @return two-dimensional int array that represents the world
      */
-    public int[][] compute() {
+    public synchronized int[][] compute() {
         tick();
 
         return particleArrayToIntArray();
     }
 
     /**
-     * Converts the particle lists to an int array to make it usable for the Controller.
+     * Converts the particle store to an int array to make it usable for the Controller.
+     * The array is reused two calls later, so a consumer has to be done with it by then.
      *
      * @return two-dimensional int array that represents the world
      */
-    private int[][] particleArrayToIntArray() {
-        int[][] array = new int[height][width];
+    public synchronized int[][] particleArrayToIntArray() {
+        long start = metrics.start();
+        int[][] frame = framePool.fill(freeCells, slots, particles, particleTypes);
+        metrics.stop(MetricTimer.EXPORT, start);
+
+        return frame;
+    }
+
+    /**
+     * Fills a frame with the particles, so the caller decides how frames are reused.
+     *
+     * @param frame the frame
+     */
+    public synchronized void exportFrame(Frame frame) {
+        long start = metrics.start();
+        frame.fill(freeCells, slots, particles, particleTypes);
+        metrics.stop(MetricTimer.EXPORT, start);
+    }
 
-        for (int y = 0; y < height; y++)
-            for (int x = 0; x < width; x++) {
-                if (worldArray[y][x] == null)
-                    array[y][x] = 0;
-                else
-                    array[y][x] = worldArray[y][x].getType().getType();
+    /**
+     * Writes the particles in the keyframe format of trajectory files: the amount of particles, then per particle in
+     * cell order the gap to the previous cell and the type. The occupancy bitmap is walked like a crowded Frame fill.
+     * A continuous world has no bitmap, its particles are sorted by pixel instead, and of particles that share a pixel
+     * only one is written, so the amount is the amount of occupied pixels.
+     *
+     * @param buffer the buffer, with room for maxEncodedBytes()
+     */
+    synchronized void encodeFrame(ByteBuffer buffer) {
+        long start = metrics.start();
+        if (collisionGrid != null) {
+            encodeContinuousFrame(buffer);
+            metrics.stop(MetricTimer.EXPORT, start);
+            return;
+        }
+
+        long[] occupied = freeCells.getOccupied();
+        byte[] type = particles.getType();
+        int cells = width * height;
+
+        putVarint(buffer, particles.size());
+        int last = 0;
+        for (int word = 0; word < occupied.length; word++) {
+            long bits = occupied[word];
+            if (word == occupied.length - 1 && cells % 64 != 0)
+                bits &= -1L >>> (64 - cells % 64);    // the bits after the last cell are not cells
+
+            for (; bits != 0; bits &= bits - 1) {
+                int cell = word * 64 + Long.numberOfTrailingZeros(bits);
+                putVarint(buffer, cell - last);
+                buffer.put((byte) particleTypes[type[slots[cell]]].getType());
+                last = cell;
             }
+        }
+        metrics.stop(MetricTimer.EXPORT, start);
+    }
 
-        return array;
+    /**
+     * Writes the particles of a continuous world in the format of encodeFrame().
+     *
+     * @param buffer the buffer, with room for maxEncodedBytes()
+     */
+    private void encodeContinuousFrame(ByteBuffer buffer) {
+        byte[] type = particles.getType();
+        long[] sorted = new long[particles.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            long cell = (int) particles.getY()[i] * width + (int) particles.getX()[i];
+            sorted[i] = cell << 8 | particleTypes[type[i]].getType();
+        }
+        Arrays.sort(sorted);
+
+        int pixels = 0;
+        for (int i = 0; i < sorted.length; i++)
+            if (i == 0 || sorted[i] >>> 8 != sorted[i - 1] >>> 8)
+                pixels++;
+
+        putVarint(buffer, pixels);
+        int last = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            int cell = (int) (sorted[i] >>> 8);
+            if (i > 0 && cell == (int) (sorted[i - 1] >>> 8))
+                continue;
+
+            putVarint(buffer, cell - last);
+            buffer.put((byte) sorted[i]);
+            last = cell;
+        }
     }
 
     /**
-     * Creates a random value.
+     * Returns the most bytes encodeFrame() can write with the current particles.
      *
-     * @param max the maximum of the value
-     * @return    a random value
+     * @return the amount of bytes
      */
-    private int randomInt(int max) {
-        return (int) (Math.random() * (max + 1));
+    synchronized int maxEncodedBytes() {
+        return 5 + particles.size() * 6;
+    }
+
+    /**
+     * Puts an unsigned value in 7-bit groups.
+     *
+     * @param buffer the buffer
+     * @param value  the value
+     */
+    private static void putVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Turns on or off recording the changed cells. While it is off, getChanges() returns no changes.
+     * The first changes after turning it on contain every particle as added, so they can be applied to an empty frame.
+     *
+     * @param recordChanges true to record changes
+     */
+    public synchronized void setRecordChanges(boolean recordChanges) {
+        deltas[0].clear();
+        deltas[1].clear();
+        delta = recordChanges ? deltas[0] : null;
+
+        if (delta != null)
+            for (int i = 0; i < particles.size(); i++)
+                delta.add(-1, (int) particles.getY()[i] * width + (int) particles.getX()[i],
+                        particleTypes[particles.getType()[i]].getType());
+    }
+
+    /**
+     * Returns the cells that changed since the last call and starts recording the next changes.
+     * The returned FrameDelta is reused by the next call, so a consumer has to be done with it by then.
+     *
+     * @return the changed cells
+     */
+    public synchronized FrameDelta getChanges() {
+        FrameDelta changes = delta == null ? deltas[0] : delta;
+
+        if (delta != null) {
+            delta = changes == deltas[0] ? deltas[1] : deltas[0];
+            delta.clear();
+        }
+
+        return changes;
     }
 
     /**
@@ -272,7 +1134,10 @@ public class World {
      * @param value the new velocity cap
      */
     public void changeVelocityCap(int index, int value) {
-        particleTypes[index].setVelocityCap(value);
+        synchronized (tableLock) {
+            particleTypes[index].setVelocityCap(value);
+            compileTable();
+        }
     }
 
     /**
@@ -282,6 +1147,178 @@ public class World {
      * @param value the new range
      */
     public void changeRange(int index, int value) {
-        particleTypes[index].setRangeMax(value);
+        synchronized (tableLock) {
+            particleTypes[index].setRangeMax(value);
+            compileTable();
+        }
+    }
+
+    /**
+     * Returns the width of the world.
+     *
+     * @return the width of the world
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the world.
+     *
+     * @return the height of the world
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the amount of particle types.
+     *
+     * @return the amount of particle types
+     */
+    public int getTypes() {
+        return particleTypes.length;
+    }
+
+    /**
+     * Returns the collision radius of a continuous world.
+     *
+     * @return the collision radius, 0 if every particle has a pixel of its own
+     */
+    public float getCollisionRadius() {
+        return collisionRadius;
+    }
+
+    /**
+     * Returns the strength of a rule, in the values of the spinners of the View.
+     *
+     * @param rule the rule
+     * @return     the strength
+     */
+    public int getRule(int rule) {
+        return Math.round(table.getStrength(rule) * 200);
+    }
+
+    /**
+     * Returns the range of a certain particle type.
+     *
+     * @param index the type of the particle
+     * @return      the range
+     */
+    public int getRange(int index) {
+        return (int) table.getRangeMax(index * particleTypes.length + index);
+    }
+
+    /**
+     * Returns the velocity cap of a certain particle type.
+     *
+     * @param index the type of the particle
+     * @return      the velocity cap
+     */
+    public int getVelocityCap(int index) {
+        return (int) table.getVelocityCap(index);
+    }
+
+    /**
+     * Saves the rules, the particle types and all particles with their velocity to a snapshot file.
+     *
+     * @param path         the file
+     * @throws IOException if the file can't be written
+     */
+    public synchronized void save(Path path) throws IOException {
+        synchronized (tableLock) {
+            Snapshot.write(path, width, height, collisionRadius, strengths, particleTypes, particles);
+        }
+    }
+
+    /**
+     * Replaces the rules, the particle types and all particles with the ones of a snapshot file. The snapshot must
+     * have the same size and collision radius as the world.
+     *
+     * @param path         the file
+     * @throws IOException if the file can't be read, is not a valid snapshot or has a different size
+     */
+    public synchronized void restore(Path path) throws IOException {
+        Snapshot snapshot = Snapshot.open(path);
+
+        if (snapshot.getWidth() != width || snapshot.getHeight() != height
+                || snapshot.getTypes() != particleTypes.length)
+            throw new IOException("the snapshot is " + snapshot.getWidth() + "x" + snapshot.getHeight() + " with "
+                    + snapshot.getTypes() + " types, the world is " + width + "x" + height + " with "
+                    + particleTypes.length + " types");
+        if (snapshot.getCollisionRadius() != collisionRadius)
+            throw new IOException("the snapshot has the collision radius " + snapshot.getCollisionRadius()
+                    + ", the world " + collisionRadius);
+
+        restore(snapshot);
+    }
+
+    /**
+     * Creates a World with the size, the types and the collision radius of a snapshot file and restores the snapshot
+     * into it.
+     *
+     * @param path         the file
+     * @param workers      the amount of threads used to compute a tick
+     * @return             the World
+     * @throws IOException if the file can't be read or is not a valid snapshot
+     */
+    public static World load(Path path, int workers) throws IOException {
+        Snapshot snapshot = Snapshot.open(path);
+        if (snapshot.getTypes() > MAX_TYPES)
+            throw new IOException("the snapshot has " + snapshot.getTypes() + " types, at most " + MAX_TYPES
+                    + " are supported");
+
+        World world = new World(snapshot.getWidth(), snapshot.getHeight(), workers, snapshot.getTypes(),
+                snapshot.getCollisionRadius());
+
+        synchronized (world) {
+            world.restore(snapshot);
+        }
+
+        return world;
+    }
+
+    /**
+     * Replaces the state of the world with a snapshot that was already checked.
+     *
+     * @param snapshot the snapshot
+     */
+    private void restore(Snapshot snapshot) {
+        byte[] type = particles.getType();
+
+        for (int i = 0; i < particles.size(); i++) {
+            int x = (int) particles.getX()[i];
+            int y = (int) particles.getY()[i];
+            if (slots != null)
+                slots[y * width + x] = -1;
+
+            if (delta != null)
+                delta.add(y * width + x, -1, particleTypes[type[i]].getType());
+        }
+        if (freeCells != null)
+            freeCells.clear();
+
+        synchronized (tableLock) {
+            snapshot.readStrengths(strengths);
+            snapshot.readParticleTypes(particleTypes);
+            compileTable();
+        }
+        snapshot.readParticles(particles);
+
+        if (collisionGrid != null)
+            collisionGrid.rebuild(particles);
+
+        type = particles.getType();
+        for (int i = 0; i < particles.size(); i++) {
+            int x = (int) particles.getX()[i];
+            int y = (int) particles.getY()[i];
+            if (slots != null) {
+                slots[y * width + x] = i;
+                freeCells.occupy(y * width + x);
+            }
+
+            if (delta != null)
+                delta.add(-1, y * width + x, particleTypes[type[i]].getType());
+        }
     }
 }
@@ -0,0 +1,37 @@
+package particlesimulation.view;
+
+import java.awt.*;
+
+/**
+ * Draws every particle with its own fillOval call.
+ */
+public class OvalRenderer implements ParticleRenderer {
+    private final int particleDiameter;
+
+    /**
+     * Initializes a new OvalRenderer.
+     *
+     * @param particleDiameter the diameter used to display a particle
+     */
+    public OvalRenderer(int particleDiameter) {
+        this.particleDiameter = particleDiameter;
+    }
+
+    /**
+     * Draws the particles.
+     *
+     * @param g2D   the Graphics object of the ParticlePanel
+     * @param world two-dimensional array that contains the particle types, 0 means empty
+     */
+    @Override
+    public void paint(Graphics2D g2D, int[][] world) {
+        for (int y = 0; y < world.length; y++)
+            for (int x = 0; x < world[y].length; x++) {
+                if (world[y][x] == 0)
+                    continue;
+
+                g2D.setColor(ParticleRenderer.getColor(world[y][x]));
+                g2D.fillOval(x, y, particleDiameter, particleDiameter);
+            }
+    }
+}
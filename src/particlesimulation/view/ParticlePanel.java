@@ -4,6 +4,7 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.List;
 
 /**
  * JPanel where the particles get displayed.
@@ -15,7 +16,13 @@ public class ParticlePanel extends JPanel {
     private final int particleDiameter;
     private Timer timer;
     private int framesPerSecond;
-    private int[][] world;
+    private volatile int[][] world;
+    private ParticleRenderer ovalRenderer;
+    private ParticleRenderer rasterRenderer;
+    private ParticleRenderer renderer;
+    private long paintNanos;
+    private int paintCount;
+    private List<String> overlay;
 
     /**
      * Creates a new instance of ParticlePanel
@@ -26,10 +33,14 @@ public class ParticlePanel extends JPanel {
      * @param particleDiameter the diameter used to display a particle
      */
     public ParticlePanel(View view, int width, int height, int particleDiameter) {
+        this.view = view;
         this.width = width;
         this.height = height;
         this.particleDiameter = particleDiameter;
         framesPerSecond = 24;
+        ovalRenderer = new OvalRenderer(particleDiameter);
+        rasterRenderer = new RasterRenderer(width, height, particleDiameter);
+        renderer = rasterRenderer;
 
         this.setPreferredSize(new Dimension(this.width, this.height));
         this.setBackground(Color.BLACK);
@@ -44,7 +55,7 @@ public class ParticlePanel extends JPanel {
     }
 
     /**
-     * Overriden to display the particles.
+     * Overriden to display the particles and the metrics overlay.
      *
      * @param g the Graphics object to protect
      */
@@ -52,26 +63,73 @@ public class ParticlePanel extends JPanel {
     public void paintComponent(Graphics g) {
         super.paintComponent(g);
 
+        int[][] world = this.world;
         if (world == null) return;
 
-        Graphics2D g2D = (Graphics2D) g;
+        long start = System.nanoTime();
+        renderer.paint((Graphics2D) g, world);
+        long nanos = System.nanoTime() - start;
+        paintNanos += nanos;
+        paintCount++;
+        view.paintFinished(nanos);
 
-        for (int y = 0; y < world.length; y++)
-            for (int x = 0; x < world[y].length; x++) {
-                if (world[y][x] == 0)
-                    continue;
+        if (overlay != null)
+            paintOverlay(g, overlay);
+    }
 
-                Color color = switch (world[y][x]) {
-                    case 1 -> Color.YELLOW;
-                    case 2 -> Color.RED;
-                    case 3 -> Color.GREEN;
-                    case 4 -> Color.LIGHT_GRAY;
-                    case 5 -> Color.CYAN;
-                    default -> Color.BLACK;
-                };
-                g2D.setColor(color);
-                g2D.fillOval(x, y, particleDiameter, particleDiameter);
-            }
+    /**
+     * Draws lines of text on a dark box in the top left corner.
+     *
+     * @param g     the Graphics object
+     * @param lines the lines
+     */
+    private void paintOverlay(Graphics g, List<String> lines) {
+        g.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        FontMetrics fontMetrics = g.getFontMetrics();
+        int lineHeight = fontMetrics.getHeight();
+        int boxWidth = 0;
+        for (var line : lines)
+            boxWidth = Math.max(boxWidth, fontMetrics.stringWidth(line));
+
+        g.setColor(new Color(0, 0, 0, 160));
+        g.fillRect(4, 4, boxWidth + 8, lines.size() * lineHeight + 8);
+        g.setColor(Color.WHITE);
+        for (int i = 0; i < lines.size(); i++)
+            g.drawString(lines.get(i), 8, 8 + fontMetrics.getAscent() + i * lineHeight);
+    }
+
+    /**
+     * Sets the lines shown on top of the particles. Only called on the event dispatch thread.
+     *
+     * @param overlay the lines, null to show none
+     */
+    public void setOverlay(List<String> overlay) {
+        this.overlay = overlay;
+        repaint();
+    }
+
+    /**
+     * Switches between the raster renderer and the oval renderer.
+     *
+     * @param raster true to use the raster renderer, false to use the oval renderer
+     */
+    public void setRasterRenderer(boolean raster) {
+        renderer = raster ? rasterRenderer : ovalRenderer;
+        repaint();
+    }
+
+    /**
+     * Returns the average time a paint took since the last call and starts a new average.
+     * Only called on the event dispatch thread.
+     *
+     * @return the average paint time in milliseconds, 0 if nothing was painted
+     */
+    public double takeAveragePaintMillis() {
+        double average = paintCount == 0 ? 0 : paintNanos / 1e6 / paintCount;
+        paintNanos = 0;
+        paintCount = 0;
+
+        return average;
     }
 
     /**
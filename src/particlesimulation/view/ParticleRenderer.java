@@ -0,0 +1,35 @@
+package particlesimulation.view;
+
+import java.awt.*;
+
+/**
+ * Draws the particles of a world update onto the ParticlePanel.
+ */
+public interface ParticleRenderer {
+
+    /**
+     * Draws the particles.
+     *
+     * @param g2D   the Graphics object of the ParticlePanel
+     * @param world two-dimensional array that contains the particle types, 0 means empty
+     */
+    void paint(Graphics2D g2D, int[][] world);
+
+    /**
+     * Returns the color of a particle type. Types after the fifth get hues spread by the golden ratio, so
+     * neighboring types look different.
+     *
+     * @param type the particle type, starting at 1
+     * @return     the color
+     */
+    static Color getColor(int type) {
+        return switch (type) {
+            case 1 -> Color.YELLOW;
+            case 2 -> Color.RED;
+            case 3 -> Color.GREEN;
+            case 4 -> Color.LIGHT_GRAY;
+            case 5 -> Color.CYAN;
+            default -> type > 5 ? Color.getHSBColor((type * 0.618034F) % 1, 0.75F, 1) : Color.BLACK;
+        };
+    }
+}
@@ -0,0 +1,145 @@
+package particlesimulation.view;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * Writes the particles straight into the pixels of a BufferedImage and draws it with a single drawImage call.
+ * Every particle is drawn with a precomputed round stamp. Only the stamps of the last frame get cleared.
+ */
+public class RasterRenderer implements ParticleRenderer {
+    private final int width;
+    private final int height;
+    private final int particleDiameter;
+    private final BufferedImage image;
+    private final int[] pixels;
+    private final boolean[] stamp;
+    private final int[] colors;
+    private int[] drawn;
+    private int drawnCount;
+    private int[][] lastWorld;
+
+    /**
+     * Initializes a new RasterRenderer.
+     *
+     * @param width            the width of the panel
+     * @param height           the height of the panel
+     * @param particleDiameter the diameter used to display a particle
+     */
+    public RasterRenderer(int width, int height, int particleDiameter) {
+        this.width = width;
+        this.height = height;
+        this.particleDiameter = particleDiameter;
+        image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        stamp = createStamp(particleDiameter);
+
+        colors = new int[128];    // the type of a particle is stored in a byte
+        for (int type = 1; type < colors.length; type++)
+            colors[type] = ParticleRenderer.getColor(type).getRGB() & 0xFFFFFF;
+
+        drawn = new int[1024];
+    }
+
+    /**
+     * Creates a round stamp that covers about the same pixels as fillOval.
+     *
+     * @param diameter the diameter of the stamp
+     * @return         diameter * diameter values, true where the stamp has color
+     */
+    private static boolean[] createStamp(int diameter) {
+        boolean[] stamp = new boolean[diameter * diameter];
+        float radius = diameter / 2F;
+
+        for (int y = 0; y < diameter; y++)
+            for (int x = 0; x < diameter; x++) {
+                float dx = x + 0.5F - radius;
+                float dy = y + 0.5F - radius;
+                stamp[y * diameter + x] = dx * dx + dy * dy <= radius * radius;
+            }
+
+        return stamp;
+    }
+
+    /**
+     * Draws the particles. The image only gets updated if the world changed since the last call.
+     *
+     * @param g2D   the Graphics object of the ParticlePanel
+     * @param world two-dimensional array that contains the particle types, 0 means empty
+     */
+    @Override
+    public void paint(Graphics2D g2D, int[][] world) {
+        if (world != lastWorld) {
+            clear();
+            draw(world);
+            lastWorld = world;
+        }
+
+        g2D.drawImage(image, 0, 0, null);
+    }
+
+    /**
+     * Clears the pixels of all stamps drawn in the last frame.
+     */
+    private void clear() {
+        for (int i = 0; i < drawnCount; i++) {
+            int x = drawn[i] % width;
+            int y = drawn[i] / width;
+            int maxX = Math.min(particleDiameter, width - x);
+            int maxY = Math.min(particleDiameter, height - y);
+
+            for (int sy = 0; sy < maxY; sy++) {
+                int row = (y + sy) * width + x;
+                for (int sx = 0; sx < maxX; sx++)
+                    pixels[row + sx] = 0;
+            }
+        }
+
+        drawnCount = 0;
+    }
+
+    /**
+     * Draws a stamp for every particle and remembers where it was drawn.
+     *
+     * @param world two-dimensional array that contains the particle types, 0 means empty
+     */
+    private void draw(int[][] world) {
+        for (int y = 0; y < world.length && y < height; y++) {
+            int[] row = world[y];
+
+            for (int x = 0; x < row.length && x < width; x++) {
+                if (row[x] == 0)
+                    continue;
+
+                drawStamp(x, y, row[x] < colors.length ? colors[row[x]] : 0);
+
+                if (drawnCount == drawn.length)
+                    drawn = Arrays.copyOf(drawn, drawnCount * 2);
+                drawn[drawnCount++] = y * width + x;
+            }
+        }
+    }
+
+    /**
+     * Writes a stamp into the pixels, clipped at the right and bottom edge.
+     *
+     * @param x     x coordinate of the top left corner
+     * @param y     y coordinate of the top left corner
+     * @param color the RGB color
+     */
+    private void drawStamp(int x, int y, int color) {
+        int maxX = Math.min(particleDiameter, width - x);
+        int maxY = Math.min(particleDiameter, height - y);
+
+        for (int sy = 0; sy < maxY; sy++) {
+            int row = (y + sy) * width + x;
+            int stampRow = sy * particleDiameter;
+
+            for (int sx = 0; sx < maxX; sx++)
+                if (stamp[stampRow + sx])
+                    pixels[row + sx] = color;
+        }
+    }
+}
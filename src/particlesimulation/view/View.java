@@ -21,8 +21,10 @@ public class View {
     private JSpinner[] gravitySpinners;
     private JSpinner[] gravityRangeSpinners;
     private JPanel uiPanel;
+    private JCheckBox record;
     private int width;
     private int height;
+    private int types;
 
 
     /**
@@ -33,12 +35,14 @@ public class View {
      * @param width            width of ParticlePanel
      * @param height           height of ParticlePanel
      * @param particleDiameter diameter used to display the particles
+     * @param types            the amount of particle types
      */
-    public View(Controller controller, String windowTitle, int width, int height, int particleDiameter) {
+    public View(Controller controller, String windowTitle, int width, int height, int particleDiameter, int types) {
         this.controller = controller;
         this.windowTitle = windowTitle;
         this.width = width;
         this.height = height;
+        this.types = types;
 
         frame = createFrame();
         uiPanel = createUIPanel();
@@ -97,14 +101,17 @@ public class View {
         JPanel p = new JPanel(new GridBagLayout());
         GridBagConstraints constraints = new GridBagConstraints();
 
-        JLabel[] particleLabels = new JLabel[5];
-        String[] particleNames = {"Yellow", "Red", "Green", "Gray", "Cyan"};
+        JLabel[] particleLabels = new JLabel[types];
+        String[] colorNames = {"Yellow", "Red", "Green", "Gray", "Cyan"};
+        String[] particleNames = new String[types];
+        for (int i = 0; i < types; i++)
+            particleNames[i] = i < colorNames.length ? colorNames[i] : "Type " + (i + 1);
 
-        velocityCapSpinners = new JSpinner[5];
+        velocityCapSpinners = new JSpinner[types];
         SpinnerNumberModel[] velocityCapModel = new SpinnerNumberModel[velocityCapSpinners.length];
         JLabel[] velocityCapLabels = new JLabel[velocityCapSpinners.length];
 
-        gravityRangeSpinners = new JSpinner[5];
+        gravityRangeSpinners = new JSpinner[types];
         SpinnerNumberModel[] rangeModel = new SpinnerNumberModel[gravityRangeSpinners.length];
         JLabel[] gravityRangeLabels = new JLabel[gravityRangeSpinners.length];
 
@@ -112,15 +119,15 @@ public class View {
         SpinnerNumberModel[] gravityModel = new SpinnerNumberModel[gravitySpinners.length];
         JLabel[] gravitySpinnerLabels = new JLabel[gravitySpinners.length];
 
-        for (int l = 0; l < 5; l++) {
+        for (int l = 0; l < types; l++) {
             particleLabels[l] = new JLabel(particleNames[l]);
             constraints.gridx = 0;
             constraints.gridwidth = 2;
             p.add(particleLabels[l], constraints);
 
 
-            for (int s = 0; s < 5; s++) {
-                int spinnerIndex = l * 5 + s;
+            for (int s = 0; s < types; s++) {
+                int spinnerIndex = l * types + s;
 
                 gravityModel[spinnerIndex] = new SpinnerNumberModel(0, -999, 999, 1);
 
@@ -198,8 +205,188 @@ public class View {
         });
         p.add(addParticles, constraints);
 
+        JFileChooser fileChooser = new JFileChooser();
+
+        JButton saveSnapshot = new JButton("save snapshot");
+        constraints.gridx = 0;
+        constraints.gridwidth = 1;
+        saveSnapshot.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (fileChooser.showSaveDialog(frame) == JFileChooser.APPROVE_OPTION)
+                    controller.saveSnapshot(fileChooser.getSelectedFile());
+            }
+        });
+        p.add(saveSnapshot, constraints);
+
+        JButton loadSnapshot = new JButton("load snapshot");
+        constraints.gridx = 1;
+        constraints.gridwidth = 1;
+        loadSnapshot.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (fileChooser.showOpenDialog(frame) == JFileChooser.APPROVE_OPTION)
+                    controller.loadSnapshot(fileChooser.getSelectedFile());
+            }
+        });
+        p.add(loadSnapshot, constraints);
+
+        record = new JCheckBox("record");
+        constraints.gridx = 0;
+        constraints.gridwidth = 1;
+        record.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (!record.isSelected())
+                    controller.stopRecording();
+                else if (fileChooser.showSaveDialog(frame) == JFileChooser.APPROVE_OPTION)
+                    controller.startRecording(fileChooser.getSelectedFile());
+                else
+                    record.setSelected(false);
+            }
+        });
+        p.add(record, constraints);
+
+        JButton replay = new JButton("replay");
+        constraints.gridx = 1;
+        constraints.gridwidth = 1;
+        replay.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (fileChooser.showOpenDialog(frame) == JFileChooser.APPROVE_OPTION)
+                    controller.startReplay(fileChooser.getSelectedFile());
+            }
+        });
+        p.add(replay, constraints);
+
+        JLabel replaySpeedLabel = new JLabel("Replay frames/s");
+        constraints.gridx = 0;
+        constraints.gridwidth = 1;
+        p.add(replaySpeedLabel, constraints);
+
+        JSpinner replaySpeed = new JSpinner(new SpinnerNumberModel(24, 1, 9999, 1));
+        constraints.gridx = 1;
+        constraints.gridwidth = 1;
+        replaySpeed.addChangeListener(new ChangeListener() {
+            @Override
+            public void stateChanged(ChangeEvent e) {
+                controller.changeReplaySpeed((int) replaySpeed.getValue());
+            }
+        });
+        p.add(replaySpeed, constraints);
+
+        JSlider replayPosition = new JSlider(0, 1000, 0);
+        constraints.gridx = 0;
+        constraints.gridwidth = 1;
+        replayPosition.addChangeListener(new ChangeListener() {
+            @Override
+            public void stateChanged(ChangeEvent e) {
+                if (!replayPosition.getValueIsAdjusting())
+                    controller.seekReplay(replayPosition.getValue());
+            }
+        });
+        p.add(replayPosition, constraints);
+
+        JButton stopReplay = new JButton("stop replay");
+        constraints.gridx = 1;
+        constraints.gridwidth = 1;
+        stopReplay.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                controller.stopReplay();
+            }
+        });
+        p.add(stopReplay, constraints);
+
+        JLabel ticksPerSecondLabel = new JLabel("Ticks/s (0 = max)");
+        constraints.gridx = 0;
+        constraints.gridwidth = 1;
+        p.add(ticksPerSecondLabel, constraints);
+
+        JSpinner ticksPerSecond = new JSpinner(new SpinnerNumberModel(0, 0, 9999, 1));
+        constraints.gridx = 1;
+        constraints.gridwidth = 1;
+        ticksPerSecond.addChangeListener(new ChangeListener() {
+            @Override
+            public void stateChanged(ChangeEvent e) {
+                controller.changeTicksPerSecond((int) ticksPerSecond.getValue());
+            }
+        });
+        p.add(ticksPerSecond, constraints);
+
+        JLabel ticksPerFrameLabel = new JLabel("Ticks/frame");
+        constraints.gridx = 0;
+        constraints.gridwidth = 1;
+        p.add(ticksPerFrameLabel, constraints);
+
+        JSpinner ticksPerFrame = new JSpinner(new SpinnerNumberModel(1, 1, 999, 1));
+        constraints.gridx = 1;
+        constraints.gridwidth = 1;
+        ticksPerFrame.addChangeListener(new ChangeListener() {
+            @Override
+            public void stateChanged(ChangeEvent e) {
+                controller.changeTicksPerFrame((int) ticksPerFrame.getValue());
+            }
+        });
+        p.add(ticksPerFrame, constraints);
+
+        JCheckBox rasterRenderer = new JCheckBox("raster renderer", true);
+        constraints.gridx = 0;
+        constraints.gridwidth = 1;
+        rasterRenderer.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                particlePanel.setRasterRenderer(rasterRenderer.isSelected());
+            }
+        });
+        p.add(rasterRenderer, constraints);
+
+        JLabel paintTime = new JLabel("paint: - ms");
+        constraints.gridx = 1;
+        constraints.gridwidth = 1;
+        p.add(paintTime, constraints);
+
+        JCheckBox metricsOverlay = new JCheckBox("metrics overlay");
+        constraints.gridx = 0;
+        constraints.gridwidth = 2;
+        metricsOverlay.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                controller.setMetricsEnabled(metricsOverlay.isSelected());
+                particlePanel.setOverlay(metricsOverlay.isSelected() ? controller.getMetricsSummary() : null);
+            }
+        });
+        p.add(metricsOverlay, constraints);
+
+        JLabel recordingStatus = new JLabel(" ");
+        constraints.gridx = 0;
+        constraints.gridwidth = 2;
+        p.add(recordingStatus, constraints);
+
+        new Timer(1000, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                paintTime.setText(String.format("paint: %.2f ms", particlePanel.takeAveragePaintMillis()));
+                String status = controller.getRecordingStatus();
+                recordingStatus.setText(status.isEmpty() ? " " : status);
+
+                if (metricsOverlay.isSelected())
+                    particlePanel.setOverlay(controller.getMetricsSummary());
+            }
+        }).start();
+
         p.setVisible(true);
-        frame.add(p, BorderLayout.EAST);
+        if (types > colorNames.length) {
+            // the spinners of many types don't fit next to the particles
+            JScrollPane scrollPane = new JScrollPane(p, ScrollPaneConstants.VERTICAL_SCROLLBAR_ALWAYS,
+                    ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
+            scrollPane.getVerticalScrollBar().setUnitIncrement(16);
+            scrollPane.setPreferredSize(new Dimension(p.getPreferredSize().width
+                    + scrollPane.getVerticalScrollBar().getPreferredSize().width, height));
+            frame.add(scrollPane, BorderLayout.EAST);
+        } else {
+            frame.add(p, BorderLayout.EAST);
+        }
 
         return p;
     }
@@ -257,6 +444,50 @@ public class View {
             }
     }
 
+    /**
+     * Shows the settings of a loaded world in the spinners.
+     *
+     * @param rules        the strength of every rule
+     * @param ranges       the range of every particle type
+     * @param velocityCaps the velocity cap of every particle type
+     */
+    public void showSettings(int[] rules, int[] ranges, int[] velocityCaps) {
+        for (int i = 0; i < gravitySpinners.length; i++)
+            gravitySpinners[i].setValue(rules[i]);
+
+        for (int i = 0; i < gravityRangeSpinners.length; i++) {
+            gravityRangeSpinners[i].setValue(ranges[i]);
+            velocityCapSpinners[i].setValue(velocityCaps[i]);
+        }
+    }
+
+    /**
+     * Shows if the world is recorded.
+     *
+     * @param recording true if the world is recorded
+     */
+    public void showRecording(boolean recording) {
+        record.setSelected(recording);
+    }
+
+    /**
+     * Shows an error message.
+     *
+     * @param message the message
+     */
+    public void showError(String message) {
+        JOptionPane.showMessageDialog(frame, message, windowTitle, JOptionPane.ERROR_MESSAGE);
+    }
+
+    /**
+     * Informs the Controller how long painting a frame took.
+     *
+     * @param nanos the time in nanoseconds
+     */
+    public void paintFinished(long nanos) {
+        controller.recordPaintTime(nanos);
+    }
+
     /**
      * Requests a updated world from the Controller.
      */